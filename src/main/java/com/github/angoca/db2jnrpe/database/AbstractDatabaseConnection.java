@@ -1,6 +1,10 @@
 package com.github.angoca.db2jnrpe.database;
 
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
 
 /**
  * Object that contains all properties to establish a connection.
@@ -10,6 +14,14 @@ import java.util.Properties;
  */
 @SuppressWarnings("PMD.CommentSize")
 public abstract class AbstractDatabaseConnection {
+    /**
+     * Last generation of the connection objects.
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+    /**
+     * Connection pool of this connection, once it has been retrieved.
+     */
+    private transient volatile AbstractConnectionPool connectionPool;
     /**
      * Associated connection pool.
      */
@@ -19,10 +31,30 @@ public abstract class AbstractDatabaseConnection {
      * Connection properties.
      */
     private final transient Properties connProperties;
+    /**
+     * Generation of this object. Each connection object has its own data
+     * source, thus the data source of a replaced object is closed without
+     * affecting the data source of the new one.
+     */
+    private final transient long generation = AbstractDatabaseConnection.GENERATIONS
+            .incrementAndGet();
     /**
      * Password.
      */
     private final String password;
+    /**
+     * Key of the data source of this connection, calculated once.
+     */
+    private transient volatile String poolKey;
+    /**
+     * Profile of the connection pool.
+     */
+    private PoolProfile profile;
+    /**
+     * Connection object that replaced this one, when the password or the
+     * profile changed.
+     */
+    private transient volatile AbstractDatabaseConnection replacement;
     /**
      * URL to connect to the database.
      */
@@ -53,6 +85,7 @@ public abstract class AbstractDatabaseConnection {
         this.connProperties = defaultProperties;
         this.username = user;
         this.password = passwd;
+        this.profile = PoolProfile.DEFAULT;
     }
 
     /**
@@ -64,6 +97,17 @@ public abstract class AbstractDatabaseConnection {
         return this.connProperties;
     }
 
+    /**
+     * Returns the connection pool of this connection, if it has been
+     * retrieved from the {@link
+     * com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager}.
+     *
+     * @return Connection pool, or null.
+     */
+    public final AbstractConnectionPool getConnectionPool() {
+        return this.connectionPool;
+    }
+
     /**
      * Returns the associated connection pool.
      *
@@ -73,6 +117,22 @@ public abstract class AbstractDatabaseConnection {
         return this.connectionsPool;
     }
 
+    /**
+     * Returns the most recent connection object of the same user and
+     * database. A connection object is replaced when the password changes,
+     * or when the checks use another profile than the targets file; the
+     * holders of the old object use the new password or profile.
+     *
+     * @return This object, or the object that replaced it.
+     */
+    public final AbstractDatabaseConnection getCurrent() {
+        AbstractDatabaseConnection ret = this;
+        while (ret.replacement != null) {
+            ret = ret.replacement;
+        }
+        return ret;
+    }
+
     /**
      * Returns the class to load the driver.
      *
@@ -89,6 +149,36 @@ public abstract class AbstractDatabaseConnection {
         return this.password;
     }
 
+    /**
+     * Returns the key of the data source of this connection in the pools:
+     * the profile, the user, the URL and the generation of this object. The
+     * password is not part of the key, because the connection object is
+     * replaced when it changes; the new object has another generation, thus
+     * another data source, and the data source of the old one can be closed
+     * while the new one is used. The pools should use the key of
+     * {@link #getCurrent()}.
+     *
+     * @return Key of the data source.
+     */
+    public final String getPoolKey() {
+        String ret = this.poolKey;
+        if (ret == null) {
+            ret = this.profile.getName() + ':' + this.username + '@'
+                    + this.url + '#' + this.generation;
+            this.poolKey = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the profile of the connection pool: its size and timeouts.
+     *
+     * @return Profile of the pool.
+     */
+    public final PoolProfile getProfile() {
+        return this.profile;
+    }
+
     /**
      * Returns the URL to connect to the database.
      *
@@ -107,6 +197,38 @@ public abstract class AbstractDatabaseConnection {
         return this.username;
     }
 
+    /**
+     * Keeps the connection pool of this connection, thus the next retrievals
+     * do not look it up.
+     *
+     * @param connPool
+     *            Connection pool.
+     */
+    public final void setConnectionPool(final AbstractConnectionPool connPool) {
+        this.connectionPool = connPool;
+    }
+
+    /**
+     * Establishes the profile of the connection pool.
+     *
+     * @param poolProfile
+     *            Profile of the pool.
+     */
+    public final void setProfile(final PoolProfile poolProfile) {
+        this.profile = poolProfile;
+        this.poolKey = null;
+    }
+
+    /**
+     * Establishes the connection object that replaces this one.
+     *
+     * @param dbConn
+     *            New connection object.
+     */
+    final void setReplacement(final AbstractDatabaseConnection dbConn) {
+        this.replacement = dbConn;
+    }
+
     /**
      * Establishes the complete URL to connect to the database.
      *
@@ -115,6 +237,7 @@ public abstract class AbstractDatabaseConnection {
      */
     public final void setUrl(final String dbUrl) {
         this.url = dbUrl;
+        this.poolKey = null;
     }
 
     /*
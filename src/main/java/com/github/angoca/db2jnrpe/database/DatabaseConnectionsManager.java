@@ -2,20 +2,38 @@ package com.github.angoca.db2jnrpe.database;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
 
 /**
  * Controls the constructors for the different Database Connection. Each RDBMS
  * can have a different properties to connect to the database, and this class
  * wraps these properties to pass them to the connection pool.
+ * <p>
+ * The manager is accessed concurrently, thus the connections are kept in a
+ * concurrent map, and there is only one connection object per user, database
+ * and profile.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
  */
 @SuppressWarnings("PMD.CommentSize")
 public final class DatabaseConnectionsManager {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(DatabaseConnectionsManager.class);
     /**
      * Singleton instance.
      */
@@ -26,7 +44,7 @@ public final class DatabaseConnectionsManager {
      *
      * @return Singleton instance.
      */
-    public static DatabaseConnectionsManager getInstance() {
+    public static synchronized DatabaseConnectionsManager getInstance() {
         if (DatabaseConnectionsManager.instance == null) {
             DatabaseConnectionsManager.instance = new DatabaseConnectionsManager();
         }
@@ -37,13 +55,13 @@ public final class DatabaseConnectionsManager {
      * Set of connections to the database.
      */
     @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
-    private final transient Map<String, AbstractDatabaseConnection> connectionProps;
+    private final transient ConcurrentMap<String, AbstractDatabaseConnection> connectionProps;
 
     /**
      * Constructors to access the database.
      */
     @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
-    private final transient Map<String, Constructor<AbstractDatabaseConnection>> constructors;
+    private final transient ConcurrentMap<String, Constructor<AbstractDatabaseConnection>> constructors;
 
     /**
      * Properties to connect to the databases.
@@ -55,8 +73,8 @@ public final class DatabaseConnectionsManager {
      * Creates the singleton instance.
      */
     public DatabaseConnectionsManager() {
-        this.connectionProps = new HashMap<String, AbstractDatabaseConnection>();
-        this.constructors = new HashMap<String, Constructor<AbstractDatabaseConnection>>();
+        this.connectionProps = new ConcurrentHashMap<String, AbstractDatabaseConnection>();
+        this.constructors = new ConcurrentHashMap<String, Constructor<AbstractDatabaseConnection>>();
         this.defaultProperties = new Properties();
     }
 
@@ -82,8 +100,8 @@ public final class DatabaseConnectionsManager {
                         .getConstructor(String.class, Properties.class,
                                 String.class, Integer.TYPE, String.class,
                                 String.class, String.class);
-                this.constructors.put(dbConnName, constructor);
-                constructor = this.constructors.get(dbConnName);
+                // The constructor is the same for all threads.
+                this.constructors.putIfAbsent(dbConnName, constructor);
             } catch (final ClassNotFoundException e) {
                 throw new DatabaseConnectionException(e);
             } catch (final NoSuchMethodException e) {
@@ -97,7 +115,8 @@ public final class DatabaseConnectionsManager {
 
     /**
      * Returns a connection object with all the parameters inside after using
-     * the related constructor.
+     * the related constructor. The pool uses the sizes and timeouts of the
+     * default profile.
      *
      * @param connectionsPool
      *            Associated connection pool.
@@ -123,27 +142,183 @@ public final class DatabaseConnectionsManager {
             final String hostname, final int portNumber,
             final String databaseName, final String username,
             final String password) throws DatabaseConnectionException {
-        final String connKey = username + '@' + hostname + ':' + portNumber
-                + '/' + databaseName;
+        return this.getDatabaseConnection(
+                PoolProfile.DEFAULT.withImplementation(connectionsPool),
+                dbConnn, hostname, portNumber, databaseName, username,
+                password);
+    }
+
+    /**
+     * Returns a connection object with all the parameters inside after using
+     * the related constructor. The connection object is created once per
+     * user, database and profile, or when the password changes; when several
+     * threads create it at the same time, all of them receive the same
+     * object. When a connection object is replaced, the data source of the
+     * old one is closed; the new object has its own data source, because the
+     * generation of the object is part of the pool key.
+     *
+     * @param profile
+     *            Profile of the connection pool.
+     * @param dbConnn
+     *            Name of the class that contains the properties for the
+     *            database.
+     * @param hostname
+     *            Name of the server or IP.
+     * @param portNumber
+     *            Port of the instance.
+     * @param databaseName
+     *            DB2Database name.
+     * @param username
+     *            Connection user.
+     * @param password
+     *            Password.
+     * @return An object that contains all related properties of the connection.
+     * @throws DatabaseConnectionException
+     *             If any error occurs that instantiating the constructor.
+     */
+    public AbstractDatabaseConnection getDatabaseConnection(
+            final PoolProfile profile, final String dbConnn,
+            final String hostname, final int portNumber,
+            final String databaseName, final String username,
+            final String password) throws DatabaseConnectionException {
+        final String connKey = profile.getName() + ':' + username + '@'
+                + hostname + ':' + portNumber + '/' + databaseName;
         AbstractDatabaseConnection dbConn = this.connectionProps.get(connKey);
-        if (dbConn == null || dbConn.getPassword().compareTo(password) != 0) {
-            final Constructor<AbstractDatabaseConnection> constructor = this
-                    .getConstructor(dbConnn);
-            try {
-                dbConn = constructor.newInstance(connectionsPool,
-                        this.defaultProperties, hostname, portNumber,
-                        databaseName, username, password);
-                this.connectionProps.put(connKey, dbConn);
-            } catch (final InstantiationException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final IllegalAccessException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final IllegalArgumentException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final InvocationTargetException e) {
-                throw new DatabaseConnectionException(e);
+        AbstractDatabaseConnection created = null;
+        while (dbConn == null || dbConn.getPassword().compareTo(password) != 0
+                || !dbConn.getProfile().equals(profile)) {
+            if (created == null) {
+                created = this.newDatabaseConnection(
+                        profile.getImplementation(), dbConnn, hostname,
+                        portNumber, databaseName, username, password);
+                created.setProfile(profile);
+            }
+            if (dbConn == null) {
+                dbConn = this.connectionProps.putIfAbsent(connKey, created);
+                if (dbConn == null) {
+                    dbConn = created;
+                }
+            } else if (this.connectionProps.replace(connKey, dbConn, created)) {
+                dbConn.setReplacement(created);
+                DatabaseConnectionsManager.release(dbConn);
+                dbConn = created;
+            } else {
+                // Other thread changed the connection; checks it again.
+                dbConn = this.connectionProps.get(connKey);
             }
         }
         return dbConn;
     }
+
+    /**
+     * Closes the data source of a connection object that was replaced,
+     * because its connections were established with the old password or
+     * profile. This is the only place where a data source is closed, apart
+     * from the eviction of the database.
+     *
+     * @param dbConn
+     *            Replaced connection object.
+     */
+    private static void release(final AbstractDatabaseConnection dbConn) {
+        try {
+            ConnectionPoolsManager.getInstance().close(dbConn);
+        } catch (final DatabaseConnectionException e) {
+            DatabaseConnectionsManager.LOGGER.warn(
+                    "{}::Error closing the replaced connections",
+                    dbConn.getUrl(), e);
+        }
+    }
+
+    /**
+     * Replaces a connection object by another one of the same user and
+     * database, with another profile. The holders of the old object use the
+     * new one, and the data source of the old one is closed. This is used
+     * when the checks do not use the profile of the targets file.
+     *
+     * @param dbConn
+     *            Connection object that is not used anymore.
+     * @param replacement
+     *            Connection object used by the checks.
+     * @return True if the old object was replaced, false if it was already
+     *         replaced or removed.
+     */
+    public boolean replaceDatabaseConnection(
+            final AbstractDatabaseConnection dbConn,
+            final AbstractDatabaseConnection replacement) {
+        final boolean ret = this.connectionProps.values().remove(dbConn);
+        if (ret) {
+            dbConn.setReplacement(replacement);
+            DatabaseConnectionsManager.release(dbConn);
+        }
+        return ret;
+    }
+
+    /**
+     * Removes the connection objects of a database, for all users. This is
+     * used when the database is not monitored anymore; the caller should
+     * release the resources of the removed connections in their pools.
+     *
+     * @param url
+     *            URL of the database.
+     * @return Removed connection objects.
+     */
+    public List<AbstractDatabaseConnection> removeDatabaseConnections(
+            final String url) {
+        final List<AbstractDatabaseConnection> ret = new ArrayList<AbstractDatabaseConnection>();
+        final Iterator<AbstractDatabaseConnection> iter = this.connectionProps
+                .values().iterator();
+        while (iter.hasNext()) {
+            final AbstractDatabaseConnection dbConn = iter.next();
+            if (url.equals(dbConn.getUrl())) {
+                iter.remove();
+                ret.add(dbConn);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Creates a connection object with the related constructor.
+     *
+     * @param connectionsPool
+     *            Associated connection pool.
+     * @param dbConnn
+     *            Name of the class that contains the properties for the
+     *            database.
+     * @param hostname
+     *            Name of the server or IP.
+     * @param portNumber
+     *            Port of the instance.
+     * @param databaseName
+     *            DB2Database name.
+     * @param username
+     *            Connection user.
+     * @param password
+     *            Password.
+     * @return A new object that contains all related properties of the
+     *         connection.
+     * @throws DatabaseConnectionException
+     *             If any error occurs that instantiating the constructor.
+     */
+    private AbstractDatabaseConnection newDatabaseConnection(
+            final String connectionsPool, final String dbConnn,
+            final String hostname, final int portNumber,
+            final String databaseName, final String username,
+            final String password) throws DatabaseConnectionException {
+        final Constructor<AbstractDatabaseConnection> constructor = this
+                .getConstructor(dbConnn);
+        try {
+            return constructor.newInstance(connectionsPool,
+                    this.defaultProperties, hostname, portNumber,
+                    databaseName, username, password);
+        } catch (final InstantiationException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final IllegalAccessException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final IllegalArgumentException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final InvocationTargetException e) {
+            throw new DatabaseConnectionException(e);
+        }
+    }
 }
@@ -1,12 +1,24 @@
 package com.github.angoca.db2jnrpe.database.pools;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 
 /**
- * Structure of a connection pool.
+ * Structure of a connection pool. The pool also keeps the prepared statements
+ * of the monitoring queries per physical connection, thus each query is
+ * prepared once per connection instead of once per execution.
+ * <p>
+ * The size and the timeouts of the pool are given by the {@link PoolProfile}
+ * of each connection.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
@@ -15,19 +27,69 @@ import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 public abstract class AbstractConnectionPool {
 
     /**
-     * Maximum size of the pool.
+     * Returns the physical connection of a pooled connection. The statements
+     * prepared with the pooled connection are closed when the connection is
+     * returned to the pool, but the ones of the physical connection are kept.
+     *
+     * @param connection
+     *            Connection retrieved from the pool.
+     * @return The physical connection, or the same connection if the pool
+     *         does not provide it.
+     */
+    private static Connection getPhysicalConnection(final Connection connection) {
+        Connection ret = connection;
+        try {
+            if (connection.isWrapperFor(Connection.class)) {
+                ret = connection.unwrap(Connection.class);
+            }
+        } catch (final SQLException e) {
+            // Uses the pooled connection.
+            ret = connection;
+        }
+        return ret;
+    }
+
+    /**
+     * Prepared statements per physical connection and query.
      */
-    protected static final int MAX_POOL_SIZE = 5;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient ConcurrentMap<Connection, ConcurrentMap<String, PreparedStatement>> statements;
+
+    /**
+     * Quantity of statements that have been prepared.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient AtomicLong statementsPrepared;
+
     /**
-     * Minimum size of the pool.
+     * Quantity of executions that reused a prepared statement.
      */
-    protected static final int MIN_POOL_SIZE = 1;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient AtomicLong statementsReused;
 
     /**
      * Empty constructor.
      */
     protected AbstractConnectionPool() {
-        // Nothing.
+        this.statements = new ConcurrentHashMap<Connection, ConcurrentMap<String, PreparedStatement>>();
+        this.statementsPrepared = new AtomicLong();
+        this.statementsReused = new AtomicLong();
+    }
+
+    /**
+     * Releases the resources of a database that is not monitored anymore,
+     * for example the data source of its URL. The statements of the closed
+     * connections are dropped. The next connection to the same database
+     * creates the resources again.
+     *
+     * @param dbConn
+     *            Configuration parameters of the database.
+     * @throws DatabaseConnectionException
+     *             If any error occurs while closing the resources.
+     */
+    public void close(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        this.purgeStatements();
     }
 
     /**
@@ -57,6 +119,24 @@ public abstract class AbstractConnectionPool {
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException;
 
+    /**
+     * Returns the quantity of statements that have been prepared.
+     *
+     * @return Prepared statements.
+     */
+    public final long getStatementsPrepared() {
+        return this.statementsPrepared.get();
+    }
+
+    /**
+     * Returns the quantity of executions that reused a prepared statement.
+     *
+     * @return Reused statements.
+     */
+    public final long getStatementsReused() {
+        return this.statementsReused.get();
+    }
+
     /**
      * Initialize the Connection Pool.
      *
@@ -69,4 +149,69 @@ public abstract class AbstractConnectionPool {
     public abstract AbstractConnectionPool initialize(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException;
+
+    /**
+     * Returns a prepared statement for the given query. The statement is
+     * prepared once per physical connection, and then it is reused. The
+     * returned statement should not be closed by the caller, only its result
+     * sets; it is closed when the physical connection is closed.
+     * <p>
+     * The statement can only be used while the given connection is retrieved
+     * from the pool, because the physical connection is shared.
+     *
+     * @param connection
+     *            Connection retrieved from this pool.
+     * @param sql
+     *            Query to prepare.
+     * @return Prepared statement.
+     * @throws SQLException
+     *             If any error occurs while preparing the statement.
+     */
+    @SuppressWarnings("resource")
+    public final PreparedStatement prepareStatement(
+            final Connection connection, final String sql)
+            throws SQLException {
+        final Connection physical = AbstractConnectionPool
+                .getPhysicalConnection(connection);
+        ConcurrentMap<String, PreparedStatement> cached = this.statements
+                .get(physical);
+        if (cached == null) {
+            // A new physical connection, maybe others were evicted.
+            this.purgeStatements();
+            final ConcurrentMap<String, PreparedStatement> newCache = new ConcurrentHashMap<String, PreparedStatement>();
+            cached = this.statements.putIfAbsent(physical, newCache);
+            if (cached == null) {
+                cached = newCache;
+            }
+        }
+        PreparedStatement stmt = cached.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = physical.prepareStatement(sql);
+            cached.put(sql, stmt);
+            this.statementsPrepared.incrementAndGet();
+        } else {
+            this.statementsReused.incrementAndGet();
+        }
+        return stmt;
+    }
+
+    /**
+     * Drops the statements of the physical connections that have been closed,
+     * for example when the pool evicts an idle connection.
+     */
+    public final void purgeStatements() {
+        final Iterator<Entry<Connection, ConcurrentMap<String, PreparedStatement>>> iter = this.statements
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            boolean closed;
+            try {
+                closed = iter.next().getKey().isClosed();
+            } catch (final SQLException e) {
+                closed = true;
+            }
+            if (closed) {
+                iter.remove();
+            }
+        }
+    }
 }
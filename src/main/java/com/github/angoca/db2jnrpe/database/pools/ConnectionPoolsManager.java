@@ -1,8 +1,8 @@
 package com.github.angoca.db2jnrpe.database.pools;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
@@ -11,6 +11,9 @@ import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
  * Controls the singleton instance for the pool managers. There could be
  * multiple pool managers (c3p0, Hikari, etc.) and this class control the
  * instance for each pool.
+ * <p>
+ * The pools are accessed concurrently by the plugins; each pool is created and
+ * initialized only once, even if several threads ask for it at the same time.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
@@ -22,12 +25,44 @@ public final class ConnectionPoolsManager {
      */
     private static ConnectionPoolsManager instance;
 
+    /**
+     * Instantiates a connection pool by its class name.
+     *
+     * @param poolName
+     *            Name of the class of the connection pool.
+     * @return New connection pool, not initialized.
+     * @throws DatabaseConnectionException
+     *             Any exception is wrapped in this exception.
+     */
+    private static AbstractConnectionPool newConnectionPool(
+            final String poolName) throws DatabaseConnectionException {
+        try {
+            final Class<?> clazz = Class.forName(poolName);
+            return (AbstractConnectionPool) clazz.getConstructor()
+                    .newInstance();
+        } catch (final ClassNotFoundException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final NoSuchMethodException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final SecurityException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final IllegalAccessException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final IllegalArgumentException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final InvocationTargetException e) {
+            throw new DatabaseConnectionException(e);
+        } catch (final InstantiationException e) {
+            throw new DatabaseConnectionException(e);
+        }
+    }
+
     /**
      * Instantiate and returns the singleton.
      *
      * @return Returns the singleton instance.
      */
-    public static ConnectionPoolsManager getInstance() {
+    public static synchronized ConnectionPoolsManager getInstance() {
         if (ConnectionPoolsManager.instance == null) {
             ConnectionPoolsManager.instance = new ConnectionPoolsManager();
         }
@@ -38,17 +73,36 @@ public final class ConnectionPoolsManager {
      * List of connection pools, matching the name with itself.
      */
     @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
-    private final transient Map<String, AbstractConnectionPool> connPools;
+    private final transient ConcurrentMap<String, AbstractConnectionPool> connPools;
 
     /**
      * Creates the singleton.
      */
     private ConnectionPoolsManager() {
-        this.connPools = new HashMap<String, AbstractConnectionPool>();
+        this.connPools = new ConcurrentHashMap<String, AbstractConnectionPool>();
+    }
+
+    /**
+     * Releases the resources of a database in its connection pool, if the
+     * pool has been created.
+     *
+     * @param dbConn
+     *            Properties for the connection.
+     * @throws DatabaseConnectionException
+     *             Any exception is wrapped in this exception.
+     */
+    public void close(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        final AbstractConnectionPool connPool = this.connPools.get(dbConn
+                .getConnectionsPoolName());
+        if (connPool != null) {
+            connPool.close(dbConn);
+        }
     }
 
     /**
-     * Retrieves a connection from the connection pool.
+     * Retrieves a connection from the connection pool. The pool is kept in
+     * the connection object, thus the next calls only read it.
      *
      * @param dbConn
      *            Properties for the connection.
@@ -59,30 +113,21 @@ public final class ConnectionPoolsManager {
     public AbstractConnectionPool getConnectionPool(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        final String poolName = dbConn.getConnectionsPoolName();
-        AbstractConnectionPool coonPool = this.connPools.get(poolName);
+        AbstractConnectionPool coonPool = dbConn.getConnectionPool();
         if (coonPool == null) {
-            try {
-                final Class<?> clazz = Class.forName(poolName);
-                coonPool = (AbstractConnectionPool) clazz.getConstructor()
-                        .newInstance();
-            } catch (final ClassNotFoundException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final NoSuchMethodException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final SecurityException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final IllegalAccessException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final IllegalArgumentException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final InvocationTargetException e) {
-                throw new DatabaseConnectionException(e);
-            } catch (final InstantiationException e) {
-                throw new DatabaseConnectionException(e);
+            final String poolName = dbConn.getConnectionsPoolName();
+            coonPool = this.connPools.get(poolName);
+            if (coonPool == null) {
+                synchronized (this.connPools) {
+                    coonPool = this.connPools.get(poolName);
+                    if (coonPool == null) {
+                        coonPool = ConnectionPoolsManager.newConnectionPool(
+                                poolName).initialize(dbConn);
+                        this.connPools.put(poolName, coonPool);
+                    }
+                }
             }
-            coonPool.initialize(dbConn);
-            this.connPools.put(poolName, coonPool);
+            dbConn.setConnectionPool(coonPool);
         }
         return coonPool;
     }
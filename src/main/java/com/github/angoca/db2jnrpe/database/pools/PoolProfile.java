@@ -0,0 +1,433 @@
+package com.github.angoca.db2jnrpe.database.pools;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.pools.c3p0.DbcpC3p0;
+import com.github.angoca.db2jnrpe.database.pools.db2direct.DbcpDb2Direct;
+import com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari;
+
+/**
+ * Profile of the connection pool of a database: the implementation, the size,
+ * and the timeouts of the connections. Each database uses a profile, thus the
+ * quantity of connections in the server can be tuned for each class of
+ * database: the big instances need more parallel collectors, and hundreds of
+ * small databases should keep at most one connection.
+ * <p>
+ * There are some predefined profiles: {@link #DEFAULT}, {@link #SMALL},
+ * {@link #LARGE} and {@link #DIRECT}. Other profiles can be defined in a
+ * properties file given by the system property db2jnrpe.profiles, for
+ * example -Ddb2jnrpe.profiles=/etc/db2jnrpe/profiles.properties, with the
+ * following keys per profile (all of them are optional):
+ *
+ * <pre>
+ * batch.pool=hikari
+ * batch.min=0
+ * batch.max=2
+ * batch.idle=120
+ * batch.lifetime=1800
+ * batch.connect=10
+ * </pre>
+ *
+ * The pool is hikari, c3p0, direct or the name of a class that extends
+ * {@link AbstractConnectionPool}. The times are in seconds.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class PoolProfile {
+
+    /**
+     * Profile for most databases: Hikari with one to five connections.
+     */
+    public static final PoolProfile DEFAULT = new PoolProfile("default",
+            DbcpHikari.class.getName(), 1, 5, 600000, 1800000, 30000);
+    /**
+     * Profile for a single connection without pool, that is validated before
+     * each use.
+     */
+    public static final PoolProfile DIRECT = new PoolProfile("direct",
+            DbcpDb2Direct.class.getName(), 0, 1, 600000, 1800000, 30000);
+    /**
+     * Profile for the big instances, with more parallel collectors.
+     */
+    public static final PoolProfile LARGE = new PoolProfile("large",
+            DbcpHikari.class.getName(), 2, 10, 600000, 1800000, 30000);
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(PoolProfile.class);
+    /**
+     * Milliseconds in a second.
+     */
+    private static final long MILLISECONDS_PER_SECOND = 1000;
+    /**
+     * System property with the name of the file of the profiles.
+     */
+    public static final String PROPERTY = "db2jnrpe.profiles";
+    /**
+     * Profile for small databases: at most one connection, that is closed
+     * after one minute without use.
+     */
+    public static final PoolProfile SMALL = new PoolProfile("small",
+            DbcpHikari.class.getName(), 0, 1, 60000, 1800000, 30000);
+    /**
+     * Profiles by name. It is loaded the first time a profile is requested.
+     */
+    private static Map<String, PoolProfile> profiles;
+
+    /**
+     * Returns the profile with the given name. If there is no profile with
+     * the name, the default profile is used.
+     *
+     * @param name
+     *            Name of the profile, or null for the default profile.
+     * @return Profile.
+     */
+    public static PoolProfile getProfile(final String name) {
+        PoolProfile ret = PoolProfile.DEFAULT;
+        if (name != null) {
+            final PoolProfile profile = PoolProfile.getProfiles().get(name);
+            if (profile == null) {
+                PoolProfile.LOGGER.warn("Unknown pool profile {}", name);
+            } else {
+                ret = profile;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the profiles by name: the predefined ones and the ones of the
+     * file. The file is read only once.
+     *
+     * @return Map of profiles.
+     */
+    private static synchronized Map<String, PoolProfile> getProfiles() {
+        if (PoolProfile.profiles == null) {
+            final Map<String, PoolProfile> map = new ConcurrentHashMap<String, PoolProfile>();
+            for (final PoolProfile profile : new PoolProfile[] {
+                    PoolProfile.DEFAULT, PoolProfile.DIRECT, PoolProfile.LARGE,
+                    PoolProfile.SMALL }) {
+                map.put(profile.getName(), profile);
+            }
+            final String file = System.getProperty(PoolProfile.PROPERTY);
+            if (file != null && file.length() > 0) {
+                PoolProfile.load(file, map);
+            }
+            PoolProfile.profiles = map;
+        }
+        return PoolProfile.profiles;
+    }
+
+    /**
+     * Converts the name of a pool in the name of its class.
+     *
+     * @param pool
+     *            Short name (hikari, c3p0, direct) or name of the class.
+     * @return Name of the class.
+     */
+    private static String getImplementation(final String pool) {
+        String ret = pool;
+        if ("hikari".equals(pool)) {
+            ret = DbcpHikari.class.getName();
+        } else if ("c3p0".equals(pool)) {
+            ret = DbcpC3p0.class.getName();
+        } else if ("direct".equals(pool)) {
+            ret = DbcpDb2Direct.class.getName();
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the profiles of a properties file. The values that are not
+     * defined are taken from the default profile, and a predefined profile
+     * can be redefined. If the file cannot be
+     * read, only the predefined profiles are available.
+     *
+     * @param file
+     *            Name of the file.
+     * @param map
+     *            Map where the profiles are added.
+     */
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    private static void load(final String file,
+            final Map<String, PoolProfile> map) {
+        final Properties props = new Properties();
+        InputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            props.load(input);
+        } catch (final IOException e) {
+            PoolProfile.LOGGER.warn("Error reading the pool profiles {}", file,
+                    e);
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (final IOException e) {
+                    PoolProfile.LOGGER.warn("Error closing {}", file, e);
+                }
+            }
+        }
+        final Set<String> names = new HashSet<String>();
+        for (final String key : props.stringPropertyNames()) {
+            final int dot = key.lastIndexOf('.');
+            if (dot > 0 && names.add(key.substring(0, dot))) {
+                final String name = key.substring(0, dot);
+                try {
+                    final PoolProfile profile = new PoolProfile(name,
+                            PoolProfile.getImplementation(props.getProperty(
+                                    name + ".pool", "hikari")),
+                            Integer.parseInt(props.getProperty(name + ".min",
+                                    String.valueOf(PoolProfile.DEFAULT.minSize))),
+                            Integer.parseInt(props.getProperty(name + ".max",
+                                    String.valueOf(PoolProfile.DEFAULT.maxSize))),
+                            PoolProfile.seconds(props, name + ".idle",
+                                    PoolProfile.DEFAULT.idleTimeout),
+                            PoolProfile.seconds(props, name + ".lifetime",
+                                    PoolProfile.DEFAULT.maxLifetime),
+                            PoolProfile.seconds(props, name + ".connect",
+                                    PoolProfile.DEFAULT.connectTimeout));
+                    map.put(name, profile);
+                    PoolProfile.LOGGER.info("Pool profile {}", profile);
+                } catch (final NumberFormatException e) {
+                    PoolProfile.LOGGER.warn("Invalid pool profile {}", name, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a time in seconds of the properties.
+     *
+     * @param props
+     *            Properties.
+     * @param key
+     *            Key of the time.
+     * @param defaultValue
+     *            Value if the key is not defined, in milliseconds.
+     * @return Time in milliseconds.
+     */
+    private static long seconds(final Properties props, final String key,
+            final long defaultValue) {
+        long ret = defaultValue;
+        final String value = props.getProperty(key);
+        if (value != null) {
+            ret = Long.parseLong(value) * PoolProfile.MILLISECONDS_PER_SECOND;
+        }
+        return ret;
+    }
+
+    /**
+     * Maximal time to establish a connection, in milliseconds.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final long connectTimeout;
+
+    /**
+     * Time before closing an idle connection, in milliseconds.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final long idleTimeout;
+
+    /**
+     * Name of the class of the connection pool.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final String implementation;
+
+    /**
+     * Maximal life of a connection, in milliseconds.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final long maxLifetime;
+
+    /**
+     * Maximal quantity of connections.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final int maxSize;
+
+    /**
+     * Minimal quantity of idle connections.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final int minSize;
+
+    /**
+     * Name of the profile.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final String name;
+
+    /**
+     * Creates a profile. The maximal size is at least one, and at least the
+     * minimal size.
+     *
+     * @param profileName
+     *            Name of the profile.
+     * @param poolClass
+     *            Name of the class of the connection pool.
+     * @param min
+     *            Minimal quantity of idle connections.
+     * @param max
+     *            Maximal quantity of connections.
+     * @param idle
+     *            Time before closing an idle connection, in milliseconds.
+     * @param lifetime
+     *            Maximal life of a connection, in milliseconds.
+     * @param connect
+     *            Maximal time to establish a connection, in milliseconds.
+     */
+    public PoolProfile(final String profileName, final String poolClass,
+            final int min, final int max, final long idle,
+            final long lifetime, final long connect) {
+        this.name = profileName;
+        this.implementation = poolClass;
+        this.minSize = Math.max(0, min);
+        this.maxSize = Math.max(Math.max(1, max), this.minSize);
+        this.idleTimeout = idle;
+        this.maxLifetime = lifetime;
+        this.connectTimeout = connect;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public boolean equals(final Object obj) {
+        boolean ret = this == obj;
+        if (!ret && obj instanceof PoolProfile) {
+            final PoolProfile other = (PoolProfile) obj;
+            ret = this.name.equals(other.name)
+                    && this.implementation.equals(other.implementation)
+                    && this.minSize == other.minSize
+                    && this.maxSize == other.maxSize
+                    && this.idleTimeout == other.idleTimeout
+                    && this.maxLifetime == other.maxLifetime
+                    && this.connectTimeout == other.connectTimeout;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the maximal time to establish a connection.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Returns the time before closing an idle connection.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    /**
+     * Returns the name of the class of the connection pool.
+     *
+     * @return Name of the class.
+     */
+    public String getImplementation() {
+        return this.implementation;
+    }
+
+    /**
+     * Returns the maximal life of a connection.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getMaxLifetime() {
+        return this.maxLifetime;
+    }
+
+    /**
+     * Returns the maximal quantity of connections.
+     *
+     * @return Maximal size of the pool.
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Returns the minimal quantity of idle connections.
+     *
+     * @return Minimal size of the pool.
+     */
+    public int getMinSize() {
+        return this.minSize;
+    }
+
+    /**
+     * Returns the name of the profile.
+     *
+     * @return Name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public int hashCode() {
+        return this.name.hashCode() * 31 + this.implementation.hashCode();
+    }
+
+    /**
+     * Returns a profile with the same sizes and timeouts, but with another
+     * connection pool.
+     *
+     * @param poolClass
+     *            Name of the class of the connection pool.
+     * @return This profile if it has the same pool, or a new profile.
+     */
+    public PoolProfile withImplementation(final String poolClass) {
+        PoolProfile ret = this;
+        if (!this.implementation.equals(poolClass)) {
+            ret = new PoolProfile(this.name, poolClass, this.minSize,
+                    this.maxSize, this.idleTimeout, this.maxLifetime,
+                    this.connectTimeout);
+        }
+        return ret;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return '[' + this.name + ':' + this.implementation + ',' + this.minSize
+                + '-' + this.maxSize + ",idle:" + this.idleTimeout
+                + ",life:" + this.maxLifetime + ",connect:"
+                + this.connectTimeout + ']';
+    }
+}
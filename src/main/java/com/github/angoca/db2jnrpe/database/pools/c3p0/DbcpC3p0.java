@@ -3,13 +3,15 @@ package com.github.angoca.db2jnrpe.database.pools.c3p0;
 import java.beans.PropertyVetoException;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 /**
@@ -21,9 +23,11 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
 public final class DbcpC3p0 extends AbstractConnectionPool {
 
     /**
-     * Map of URL and its associated pool.
+     * Map of pool key (profile, user, URL and generation of the connection
+     * object) and its associated pool. The pools are shared by all the
+     * threads, and there is only one pool per key.
      */
-    private static Map<String, ComboPooledDataSource> pools;
+    private static final ConcurrentMap<String, ComboPooledDataSource> pools = new ConcurrentHashMap<String, ComboPooledDataSource>();
 
     /**
      * Tester.
@@ -82,6 +86,20 @@ public final class DbcpC3p0 extends AbstractConnectionPool {
         System.out.println("Client Information: " + conn.getClientInfo());
     }
 
+    /**
+     * Returns the name of the pool of a connection.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @return Name with the pool key of the connection. The name is also
+     *         used in JMX, thus it has only letters, digits and some symbols.
+     */
+    private static String getDataSourceName(
+            final AbstractDatabaseConnection dbConn) {
+        return ("db2jnrpe-" + dbConn.getPoolKey()).replaceAll("[^\\w.-]",
+                "_");
+    }
+
     /**
      * Empty constructor.
      */
@@ -89,6 +107,27 @@ public final class DbcpC3p0 extends AbstractConnectionPool {
         super();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#close
+     * (com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public void close(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        final ComboPooledDataSource pool;
+        synchronized (DbcpC3p0.pools) {
+            pool = DbcpC3p0.pools.remove(dbConn.getPoolKey());
+        }
+        if (pool != null) {
+            pool.close();
+        }
+        super.close(dbConn);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -121,43 +160,69 @@ public final class DbcpC3p0 extends AbstractConnectionPool {
     @SuppressWarnings("PMD.CommentRequired")
     public Connection getConnection(final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        if (DbcpC3p0.pools == null) {
-            throw new DatabaseConnectionException(new Exception(
-                    "Pool not initialized"));
-        }
-        final String username = dbConn.getUsername();
-        final String password = dbConn.getPassword();
+        // A replaced connection object uses the data source and the password
+        // of the most recent one.
+        AbstractDatabaseConnection current = dbConn.getCurrent();
         Connection connection;
         try {
-            ComboPooledDataSource pool = DbcpC3p0.pools.get(dbConn.getUrl());
+            ComboPooledDataSource pool = DbcpC3p0.pools.get(current
+                    .getPoolKey());
             if (pool == null) {
-                pool = new ComboPooledDataSource();
-                try {
-                    pool.setDriverClass(dbConn.getDriverClass());
-                } catch (final PropertyVetoException e) {
-                    pool.close();
-                    throw new DatabaseConnectionException(e);
-                }
-                pool.setJdbcUrl(dbConn.getUrl());
-                pool.setMinPoolSize(AbstractConnectionPool.MIN_POOL_SIZE);
-                pool.setAcquireIncrement(5);
-                pool.setMaxPoolSize(AbstractConnectionPool.MAX_POOL_SIZE);
-                pool.setProperties(dbConn.getConnectionProperties());
-                try {
-                    pool.setDriverClass(dbConn.getDriverClass());
-                } catch (final PropertyVetoException e) {
-                    pool.close();
-                    throw new DatabaseConnectionException(e);
+                synchronized (DbcpC3p0.pools) {
+                    // The replacement is read again under the lock of the
+                    // close.
+                    current = dbConn.getCurrent();
+                    final String key = current.getPoolKey();
+                    pool = DbcpC3p0.pools.get(key);
+                    if (pool == null) {
+                        pool = DbcpC3p0.newDataSource(current);
+                        DbcpC3p0.pools.put(key, pool);
+                    }
                 }
-                DbcpC3p0.pools.put(dbConn.getUrl(), pool);
             }
-            connection = pool.getConnection(username, password);
+            connection = pool.getConnection(current.getUsername(),
+                    current.getPassword());
         } catch (final SQLException e) {
             throw new DatabaseConnectionException(e);
         }
         return connection;
     }
 
+    /**
+     * Creates the pool of a profile, user and URL.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @return New pool.
+     * @throws DatabaseConnectionException
+     *             If the driver cannot be set.
+     */
+    private static ComboPooledDataSource newDataSource(
+            final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        final PoolProfile profile = dbConn.getProfile();
+        final ComboPooledDataSource pool = new ComboPooledDataSource();
+        pool.setDataSourceName(DbcpC3p0.getDataSourceName(dbConn));
+        try {
+            pool.setDriverClass(dbConn.getDriverClass());
+        } catch (final PropertyVetoException e) {
+            pool.close();
+            throw new DatabaseConnectionException(e);
+        }
+        pool.setJdbcUrl(dbConn.getUrl());
+        pool.setMinPoolSize(profile.getMinSize());
+        pool.setInitialPoolSize(profile.getMinSize());
+        pool.setAcquireIncrement(Math.min(5, profile.getMaxSize()));
+        pool.setMaxPoolSize(profile.getMaxSize());
+        pool.setMaxIdleTime((int) TimeUnit.MILLISECONDS.toSeconds(profile
+                .getIdleTimeout()));
+        pool.setMaxConnectionAge((int) TimeUnit.MILLISECONDS
+                .toSeconds(profile.getMaxLifetime()));
+        pool.setCheckoutTimeout((int) profile.getConnectTimeout());
+        pool.setProperties(dbConn.getConnectionProperties());
+        return pool;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -170,9 +235,6 @@ public final class DbcpC3p0 extends AbstractConnectionPool {
     public AbstractConnectionPool initialize(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        if (DbcpC3p0.pools == null) {
-            DbcpC3p0.pools = new HashMap<String, ComboPooledDataSource>();
-        }
         return this;
     }
 
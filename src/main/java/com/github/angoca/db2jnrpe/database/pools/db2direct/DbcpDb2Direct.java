@@ -1,35 +1,245 @@
 package com.github.angoca.db2jnrpe.database.pools.db2direct;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
-import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
 
 /**
- * Connection pool using direct DB2 driver.
+ * Connection pool using direct DB2 driver. It keeps a single long-lived
+ * connection per user and database, without housekeeping threads: the
+ * connection is validated when it is borrowed, and it is established again
+ * when it is not valid.
+ * <p>
+ * The holder is lock-free: the idle connection is taken with an atomic
+ * operation. If the connection is already borrowed by another collection, a
+ * temporal connection is established, and it is closed when it is returned.
+ * The borrowed connection is a wrapper whose close returns the physical
+ * connection to the holder.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-04
  */
-public class DbcpDb2Direct extends AbstractConnectionPool {
+@SuppressWarnings("PMD.CommentSize")
+public final class DbcpDb2Direct extends AbstractConnectionPool {
 
     /**
-     * Connection properties.
+     * Wrapper of a borrowed connection. The close returns the physical
+     * connection to its holder; the other methods are delegated.
      */
-    private transient DB2Connection db2Conn;
+    private static final class Borrowed implements InvocationHandler {
+
+        /**
+         * Indicates that the connection was returned.
+         */
+        private final AtomicBoolean closed = new AtomicBoolean();
+        /**
+         * Holder of the idle connection.
+         */
+        private final AtomicReference<Connection> holder;
+        /**
+         * Key of the holder.
+         */
+        private final String key;
+        /**
+         * Physical connection.
+         */
+        private final Connection physical;
+
+        /**
+         * Wraps a physical connection.
+         *
+         * @param holderKey
+         *            Key of the holder.
+         * @param idle
+         *            Holder of the idle connection.
+         * @param connection
+         *            Physical connection.
+         */
+        Borrowed(final String holderKey,
+                final AtomicReference<Connection> idle,
+                final Connection connection) {
+            this.key = holderKey;
+            this.holder = idle;
+            this.physical = connection;
+        }
+
+        /**
+         * Returns the physical connection to the holder. The connection is
+         * closed if there is already an idle connection, or if the holder was
+         * removed because the database is not monitored anymore.
+         *
+         * @throws SQLException
+         *             If the connection cannot be closed.
+         */
+        private void giveBack() throws SQLException {
+            if (DbcpDb2Direct.holders.get(this.key) != this.holder
+                    || !this.holder.compareAndSet(null, this.physical)) {
+                this.physical.close();
+            } else if (DbcpDb2Direct.holders.get(this.key) != this.holder) {
+                // Removed while it was returned.
+                final Connection idle = this.holder.getAndSet(null);
+                if (idle != null) {
+                    idle.close();
+                }
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+         * java.lang.reflect.Method, java.lang.Object[])
+         */
+        @Override
+        @SuppressWarnings({ "PMD.CommentRequired",
+                "PMD.SignatureDeclareThrowsException" })
+        public Object invoke(final Object proxy, final Method method,
+                final Object[] args) throws Throwable {
+            final String name = method.getName();
+            Object ret;
+            if ("close".equals(name)) {
+                if (this.closed.compareAndSet(false, true)) {
+                    this.giveBack();
+                }
+                ret = null;
+            } else if ("isClosed".equals(name)) {
+                ret = this.closed.get() || this.physical.isClosed();
+            } else if ("unwrap".equals(name)
+                    && Connection.class.equals(args[0])) {
+                ret = this.physical;
+            } else if ("isWrapperFor".equals(name)
+                    && Connection.class.equals(args[0])) {
+                ret = Boolean.TRUE;
+            } else if (this.closed.get()) {
+                throw new SQLException("Connection returned to the pool");
+            } else {
+                try {
+                    ret = method.invoke(this.physical, args);
+                } catch (final InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Idle connection of each user and URL. It is null while the connection
+     * is borrowed, or if it has not been established.
+     */
+    private static final ConcurrentMap<String, AtomicReference<Connection>> holders = new ConcurrentHashMap<String, AtomicReference<Connection>>();
+
+    /**
+     * Closes a physical connection, ignoring the errors, because it is not
+     * valid or not needed anymore.
+     *
+     * @param connection
+     *            Physical connection.
+     */
+    private static void discard(final Connection connection) {
+        try {
+            connection.close();
+        } catch (final SQLException e) {
+            // The connection is not used anymore.
+        }
+    }
+
+    /**
+     * Returns the holder of the idle connection of a user and URL, and
+     * creates it if it does not exist.
+     *
+     * @param key
+     *            User and URL.
+     * @return Holder of the idle connection.
+     */
+    private static AtomicReference<Connection> getHolder(final String key) {
+        AtomicReference<Connection> ret = DbcpDb2Direct.holders.get(key);
+        if (ret == null) {
+            final AtomicReference<Connection> created = new AtomicReference<Connection>();
+            ret = DbcpDb2Direct.holders.putIfAbsent(key, created);
+            if (ret == null) {
+                ret = created;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the key of the holder of a connection.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @return User and URL.
+     */
+    private static String getKey(final AbstractDatabaseConnection dbConn) {
+        return dbConn.getUsername() + '@' + dbConn.getUrl();
+    }
+
+    /**
+     * Establishes a physical connection.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @param timeout
+     *            Maximal time to establish the connection, in seconds.
+     * @return New connection.
+     * @throws SQLException
+     *             If the connection cannot be established.
+     */
+    private static Connection open(final AbstractDatabaseConnection dbConn,
+            final int timeout) throws SQLException {
+        // The properties of the connection are shared; they are copied.
+        final Properties props = new Properties();
+        props.putAll(dbConn.getConnectionProperties());
+        props.put("user", dbConn.getUsername());
+        props.put("password", dbConn.getPassword());
+        props.put("loginTimeout", String.valueOf(timeout));
+        return DriverManager.getConnection(dbConn.getUrl(), props);
+    }
 
     /**
      * Empty constructor.
      */
-    protected DbcpDb2Direct() {
+    public DbcpDb2Direct() {
         super();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#close
+     * (com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public void close(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        final AtomicReference<Connection> holder = DbcpDb2Direct.holders
+                .remove(DbcpDb2Direct.getKey(dbConn));
+        if (holder != null) {
+            final Connection idle = holder.getAndSet(null);
+            if (idle != null) {
+                DbcpDb2Direct.discard(idle);
+            }
+        }
+        super.close(dbConn);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -40,7 +250,7 @@ public class DbcpDb2Direct extends AbstractConnectionPool {
      */
     @Override
     @SuppressWarnings("PMD.CommentRequired")
-    public final void closeConnection(final AbstractDatabaseConnection dbConn,
+    public void closeConnection(final AbstractDatabaseConnection dbConn,
             final Connection connection) throws DatabaseConnectionException {
         if (connection != null) {
             try {
@@ -60,20 +270,32 @@ public class DbcpDb2Direct extends AbstractConnectionPool {
      */
     @Override
     @SuppressWarnings("PMD.CommentRequired")
-    public final Connection getConnection(
-            final AbstractDatabaseConnection dbConn)
+    public Connection getConnection(final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        Connection connection = null;
-        final Properties props = this.db2Conn.getConnectionProperties();
-        props.put("user", this.db2Conn.getUsername());
-        props.put("password", this.db2Conn.getPassword());
+        final String key = DbcpDb2Direct.getKey(dbConn);
+        final AtomicReference<Connection> holder = DbcpDb2Direct
+                .getHolder(key);
+        final int timeout = (int) Math.max(1, TimeUnit.MILLISECONDS
+                .toSeconds(dbConn.getProfile().getConnectTimeout()));
+        Connection physical = holder.getAndSet(null);
         try {
-            connection = DriverManager.getConnection(this.db2Conn.getUrl(),
-                    props);
+            if (physical != null && !physical.isValid(timeout)) {
+                DbcpDb2Direct.discard(physical);
+                physical = null;
+            }
+            if (physical == null) {
+                physical = DbcpDb2Direct.open(dbConn, timeout);
+            }
         } catch (final SQLException e) {
+            if (physical != null) {
+                DbcpDb2Direct.discard(physical);
+            }
             throw new DatabaseConnectionException(e);
         }
-        return connection;
+        return (Connection) Proxy.newProxyInstance(
+                DbcpDb2Direct.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Borrowed(key,
+                        holder, physical));
     }
 
     /*
@@ -85,18 +307,11 @@ public class DbcpDb2Direct extends AbstractConnectionPool {
      */
     @Override
     @SuppressWarnings("PMD.CommentRequired")
-    public final AbstractConnectionPool initialize(
+    public AbstractConnectionPool initialize(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
         try {
             Class.forName(dbConn.getDriverClass());
-            if (dbConn instanceof DB2Connection) {
-                this.db2Conn = (DB2Connection) dbConn;
-            } else {
-                throw new DatabaseConnectionException(
-                        new Exception(
-                                "Invalid connection properties (AbstractDatabaseConnection)"));
-            }
         } catch (final ClassNotFoundException e) {
             throw new DatabaseConnectionException(e);
         }
@@ -2,13 +2,14 @@ package com.github.angoca.db2jnrpe.database.pools.hikari;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -21,9 +22,11 @@ import com.zaxxer.hikari.HikariDataSource;
 public final class DbcpHikari extends AbstractConnectionPool {
 
     /**
-     * Map of URL and its associated pool.
+     * Map of pool key (profile, user, URL and generation of the connection
+     * object) and its associated pool. The pools are shared by all the
+     * threads, and there is only one pool per key.
      */
-    private static Map<String, HikariDataSource> pools;
+    private static final ConcurrentMap<String, HikariDataSource> pools = new ConcurrentHashMap<String, HikariDataSource>();
 
     /**
      * Tester.
@@ -91,6 +94,27 @@ public final class DbcpHikari extends AbstractConnectionPool {
         super();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#close
+     * (com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public void close(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        final HikariDataSource datasource;
+        synchronized (DbcpHikari.pools) {
+            datasource = DbcpHikari.pools.remove(dbConn.getPoolKey());
+        }
+        if (datasource != null) {
+            datasource.close();
+        }
+        super.close(dbConn);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -123,24 +147,36 @@ public final class DbcpHikari extends AbstractConnectionPool {
     @SuppressWarnings({ "PMD.CommentRequired", "resource" })
     public Connection getConnection(final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        HikariDataSource datasource = DbcpHikari.pools.get(dbConn.getUrl());
+        // A replaced connection object uses the data source of the most
+        // recent one.
+        HikariDataSource datasource = DbcpHikari.pools.get(dbConn
+                .getCurrent().getPoolKey());
         Connection conn = null;
         if (datasource == null) {
-            final HikariConfig config = new HikariConfig();
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-            config.addDataSourceProperty("useServerPrepStmts", "true");
-            config.addDataSourceProperty("blockingReadConnectionTimeout ",
-                    "1000");
-            config.setJdbcUrl(dbConn.getUrl());
-            config.setUsername(dbConn.getUsername());
-            config.setPassword(dbConn.getPassword());
-            config.setMinimumIdle(AbstractConnectionPool.MIN_POOL_SIZE);
-            config.setMaximumPoolSize(AbstractConnectionPool.MAX_POOL_SIZE);
-            config.setDataSourceProperties(dbConn.getConnectionProperties());
-            datasource = new HikariDataSource(config);
-            DbcpHikari.pools.put(dbConn.getUrl(), datasource);
+            synchronized (DbcpHikari.pools) {
+                // The replacement is read again under the lock of the close.
+                final AbstractDatabaseConnection current = dbConn
+                        .getCurrent();
+                final String key = current.getPoolKey();
+                datasource = DbcpHikari.pools.get(key);
+                if (datasource == null) {
+                    final PoolProfile profile = current.getProfile();
+                    final HikariConfig config = new HikariConfig();
+                    config.setPoolName("db2jnrpe-" + key);
+                    config.setJdbcUrl(current.getUrl());
+                    config.setUsername(current.getUsername());
+                    config.setPassword(current.getPassword());
+                    config.setMinimumIdle(profile.getMinSize());
+                    config.setMaximumPoolSize(profile.getMaxSize());
+                    config.setIdleTimeout(profile.getIdleTimeout());
+                    config.setMaxLifetime(profile.getMaxLifetime());
+                    config.setConnectionTimeout(profile.getConnectTimeout());
+                    config.setDataSourceProperties(current
+                            .getConnectionProperties());
+                    datasource = new HikariDataSource(config);
+                    DbcpHikari.pools.put(key, datasource);
+                }
+            }
         }
 
         try {
@@ -163,9 +199,6 @@ public final class DbcpHikari extends AbstractConnectionPool {
     public AbstractConnectionPool initialize(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        if (DbcpHikari.pools == null) {
-            DbcpHikari.pools = new HashMap<String, HikariDataSource>();
-        }
         return this;
     }
 }
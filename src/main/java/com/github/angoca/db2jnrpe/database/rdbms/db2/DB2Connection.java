@@ -12,10 +12,20 @@ import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
  */
 @SuppressWarnings("PMD.CommentSize")
 public final class DB2Connection extends AbstractDatabaseConnection {
+    /**
+     * Maximum time blocked in a read of the socket, in seconds. This is
+     * greater than the query timeouts.
+     */
+    private static final int BLOCKING_READ_TIMEOUT = 60;
     /**
      * Description of the DB2 driver.
      */
     private static final String DRIVER_CLASS = "com.ibm.db2.jcc.DB2SimpleDataSource";
+    /**
+     * Interrupt processing mode that closes the socket when a query timeout
+     * occurs.
+     */
+    private static final String INTERRUPT_CLOSE_SOCKET = "2";
     /**
      * Connections counter.
      */
@@ -29,6 +39,16 @@ public final class DB2Connection extends AbstractDatabaseConnection {
      * Name of the server.
      */
     private final String hostname;
+    /**
+     * Detected major version of the server, or null if it has not been
+     * detected.
+     */
+    private volatile DB2MajorVersion majorVersion;
+    /**
+     * Detected minor version of the server, or null if it has not been
+     * detected.
+     */
+    private volatile DB2MinorVersion minorVersion;
 
     /**
      * Instance's port.
@@ -65,6 +85,14 @@ public final class DB2Connection extends AbstractDatabaseConnection {
         // Shows descriptive message when errors.
         this.getConnectionProperties().put(
                 "retrieveMessagesFromServerOnGetMessage", "true");
+        // Reads in the socket are not blocked for ever, in seconds.
+        this.getConnectionProperties().put("blockingReadConnectionTimeout",
+                String.valueOf(DB2Connection.BLOCKING_READ_TIMEOUT));
+        // Cancelled statements close the socket, thus the connection is
+        // discarded even if the server does not answer the cancel.
+        this.getConnectionProperties().put(
+                "queryTimeoutInterruptProcessingMode",
+                DB2Connection.INTERRUPT_CLOSE_SOCKET);
 
         this.setUrl("jdbc:db2://" + host + ":" + port + "/" + dbName);
         this.hostname = host;
@@ -103,6 +131,24 @@ public final class DB2Connection extends AbstractDatabaseConnection {
         return this.hostname;
     }
 
+    /**
+     * Returns the cached major version of the server.
+     *
+     * @return Major version, or null if it has not been detected.
+     */
+    DB2MajorVersion getMajorVersion() {
+        return this.majorVersion;
+    }
+
+    /**
+     * Returns the cached minor version of the server.
+     *
+     * @return Minor version, or null if it has not been detected.
+     */
+    DB2MinorVersion getMinorVersion() {
+        return this.minorVersion;
+    }
+
     /**
      * Returns the port number of the instance.
      *
@@ -111,4 +157,29 @@ public final class DB2Connection extends AbstractDatabaseConnection {
     public int getPortNumber() {
         return this.portNumber;
     }
+
+    /**
+     * Forgets the detected versions of the server, thus they are queried
+     * again the next time they are needed. This should be called when the
+     * connection is reestablished or when the instance was restarted, because
+     * the server could have been updated.
+     */
+    public void invalidateVersions() {
+        this.majorVersion = null;
+        this.minorVersion = null;
+    }
+
+    /**
+     * Keeps the detected versions of the server.
+     *
+     * @param major
+     *            Major version.
+     * @param minor
+     *            Minor version.
+     */
+    void setVersions(final DB2MajorVersion major, final DB2MinorVersion minor) {
+        // The minor is set first, because the major indicates a valid cache.
+        this.minorVersion = minor;
+        this.majorVersion = major;
+    }
 }
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,9 +37,51 @@ public final class DB2Helper {
      * Routine was not found SQL0440.
      */
     private static final int NO_ROUTINE = -440;
+    /**
+     * Communication error of the driver SQL4499.
+     */
+    private static final int COMMUNICATION_DRIVER = -4499;
+    /**
+     * Communication error of the protocol SQL30081.
+     */
+    private static final int COMMUNICATION_PROTOCOL = -30081;
+    /**
+     * Class of the SQL states of the connection errors.
+     */
+    private static final String CONNECTION_STATE_CLASS = "08";
+    /**
+     * Processing was cancelled due to an interrupt SQL0952.
+     */
+    private static final int INTERRUPTED = -952;
+    /**
+     * SQL state of a cancelled statement.
+     */
+    private static final String CANCELLED_STATE = "57014";
+    /**
+     * Maximum time of the queries that retrieve the version, in seconds.
+     */
+    private static final int VERSION_QUERY_TIMEOUT = 10;
+    /**
+     * Query to get the release of the server (v9.5 or before).
+     */
+    private static final String QUERY_RELEASE_BEFORE_V97 = "SELECT PROD_RELEASE "
+            + "FROM SYSIBMADM.ENV_PROD_INFO";
+    /**
+     * Query to get the release of the server.
+     */
+    private static final String QUERY_RELEASE_AFTER_V97 = "SELECT PROD_RELEASE "
+            + "FROM TABLE(SYSPROC.ENV_GET_PROD_INFO())";
+    /**
+     * Query to get the service level of the server. Before v9.7, the release
+     * is retrieved instead.
+     */
+    private static final String QUERY_SERVICE_LEVEL = "SELECT SERVICE_LEVEL "
+            + "FROM SYSIBMADM.ENV_INST_INFO";
 
     /**
-     * Returns the corresponding DB2 version of the database server.
+     * Returns the corresponding DB2 version of the database server. The
+     * version is detected once per connection, and then it is kept until the
+     * versions are invalidated.
      *
      * @param dbConn
      *            Connection to db2.
@@ -49,89 +92,18 @@ public final class DB2Helper {
     public static DB2MajorVersion getDB2MajorVersion(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        DB2MajorVersion version = DB2MajorVersion.UNKNOWN;
-        final String queryBeforeV97 = "SELECT PROD_RELEASE "
-                + "FROM SYSIBMADM.ENV_PROD_INFO";
-        final String queryAfterV97 = "SELECT PROD_RELEASE "
-                + "FROM TABLE(SYSPROC.ENV_GET_PROD_INFO())";
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet res = null;
-        try {
-            connection = ConnectionPoolsManager.getInstance()
-                    .getConnectionPool(dbConn).getConnection(dbConn);
-            stmt = connection.prepareStatement(queryAfterV97);
-            try {
-                res = stmt.executeQuery();
-            } catch (final SQLException sqle) {
-                final int code = DB2Helper.getSqlCode(sqle);
-                if (code == DB2Helper.NO_ROUTINE) {
-                    stmt.close();
-                    stmt = connection.prepareStatement(queryBeforeV97);
-                    res = stmt.executeQuery();
-                } else {
-                    throw sqle;
-                }
-            }
-
-            String versionText;
-            while (res.next()) {
-                versionText = res.getString(1);
-                if (versionText.compareTo(DB2MajorVersion.V8_1.getName()) == 0) {
-                    version = DB2MajorVersion.V8_1;
-                } else if (versionText
-                        .compareTo(DB2MajorVersion.V9_1.getName()) == 0) {
-                    version = DB2MajorVersion.V9_1;
-                } else if (versionText
-                        .compareTo(DB2MajorVersion.V9_5.getName()) == 0) {
-                    version = DB2MajorVersion.V9_5;
-                } else if (versionText
-                        .compareTo(DB2MajorVersion.V9_7.getName()) == 0) {
-                    version = DB2MajorVersion.V9_7;
-                } else if (versionText
-                        .compareTo(DB2MajorVersion.V9_8.getName()) == 0) {
-                    version = DB2MajorVersion.V9_8;
-                } else if (versionText.compareTo(DB2MajorVersion.V10_1
-                        .getName()) == 0) {
-                    version = DB2MajorVersion.V10_1;
-                } else if (versionText.compareTo(DB2MajorVersion.V10_5
-                        .getName()) == 0) {
-                    version = DB2MajorVersion.V10_5;
-                } else {
-                    version = DB2MajorVersion.OTHER;
-                }
-            }
-        } catch (final SQLException sqle) {
-            DB2Helper.processException(sqle);
-            throw new DatabaseConnectionException(sqle);
-        } finally {
-            try {
-                if (res != null) {
-                    res.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
-            try {
-                if (stmt != null) {
-                    stmt.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
-            try {
-                if (connection != null) {
-                    connection.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
+        final DB2Connection db2Conn = DB2Helper.toDB2Connection(dbConn);
+        DB2MajorVersion version = db2Conn.getMajorVersion();
+        if (version == null) {
+            version = DB2Helper.loadVersions(db2Conn);
         }
         return version;
     }
 
     /**
-     * Returns the corresponding DB2 version of the database server.
+     * Returns the corresponding DB2 version of the database server. The
+     * version is detected once per connection, and then it is kept until the
+     * versions are invalidated.
      *
      * @param dbConn
      *            Connection to db2.
@@ -142,56 +114,11 @@ public final class DB2Helper {
     public static DB2MinorVersion getDB2MinorVersion(
             final AbstractDatabaseConnection dbConn)
             throws DatabaseConnectionException {
-        DB2MinorVersion version = DB2MinorVersion.UNKNOWN;
-        final String queryBeforeV97 = "SELECT PROD_RELEASE "
-                + "FROM SYSIBMADM.ENV_PROD_INFO";
-        final String queryAfterV97 = "SELECT SERVICE_LEVEL "
-                + "FROM SYSIBMADM.ENV_INST_INFO";
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet res = null;
-        try {
-            connection = ConnectionPoolsManager.getInstance()
-                    .getConnectionPool(dbConn).getConnection(dbConn);
-            stmt = connection.prepareStatement(queryAfterV97);
-            try {
-                res = stmt.executeQuery();
-            } catch (final SQLException sqle) {
-                final int code = DB2Helper.getSqlCode(sqle);
-                if (code == DB2Helper.NO_ROUTINE) {
-                    stmt.close();
-                    stmt = connection.prepareStatement(queryBeforeV97);
-                    res = stmt.executeQuery();
-                } else {
-                    throw sqle;
-                }
-            }
-            version = DB2Helper.processValue(res);
-        } catch (final SQLException sqle) {
-            DB2Helper.processException(sqle);
-            throw new DatabaseConnectionException(sqle);
-        } finally {
-            try {
-                if (res != null) {
-                    res.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
-            try {
-                if (stmt != null) {
-                    stmt.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
-            try {
-                if (connection != null) {
-                    connection.close();
-                }
-            } catch (SQLException e) {
-                throw new DatabaseConnectionException(e);
-            }
+        final DB2Connection db2Conn = DB2Helper.toDB2Connection(dbConn);
+        DB2MinorVersion version = db2Conn.getMinorVersion();
+        if (version == null) {
+            DB2Helper.loadVersions(db2Conn);
+            version = db2Conn.getMinorVersion();
         }
         return version;
     }
@@ -215,6 +142,48 @@ public final class DB2Helper {
         return ret;
     }
 
+    /**
+     * Checks if the exception, or a chained one, was raised because the
+     * connection with the server failed: the SQL states of class 08, and the
+     * communication errors SQL4499 and SQL30081. After these errors, the
+     * connection could be reestablished with another server.
+     *
+     * @param sqle
+     *            Exception to analyze.
+     * @return True if the connection failed.
+     */
+    public static boolean isConnectionError(final SQLException sqle) {
+        boolean ret = false;
+        SQLException current = sqle;
+        while (!ret && current != null) {
+            final String state = current.getSQLState();
+            int code = DB2Helper.getSqlCode(current);
+            if (code == 0) {
+                code = current.getErrorCode();
+            }
+            ret = state != null
+                    && state.startsWith(DB2Helper.CONNECTION_STATE_CLASS)
+                    || code == DB2Helper.COMMUNICATION_DRIVER
+                    || code == DB2Helper.COMMUNICATION_PROTOCOL;
+            current = current.getNextException();
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if the exception was raised because the statement exceeded the
+     * query timeout and it was cancelled.
+     *
+     * @param sqle
+     *            Exception to analyze.
+     * @return True if the statement was cancelled.
+     */
+    public static boolean isTimeout(final SQLException sqle) {
+        return sqle instanceof SQLTimeoutException
+                || DB2Helper.getSqlCode(sqle) == DB2Helper.INTERRUPTED
+                || DB2Helper.CANCELLED_STATE.equals(sqle.getSQLState());
+    }
+
     /**
      * Tester.
      *
@@ -276,6 +245,63 @@ public final class DB2Helper {
         // CHECKSTYLE:ON
     }
 
+    /**
+     * Forgets the detected versions of the database server. They will be
+     * queried again the next time they are needed.
+     *
+     * @param dbConn
+     *            Connection to db2.
+     */
+    public static void invalidateVersions(
+            final AbstractDatabaseConnection dbConn) {
+        if (dbConn instanceof DB2Connection) {
+            ((DB2Connection) dbConn).invalidateVersions();
+            DB2Helper.LOGGER.debug("{}::Versions invalidated",
+                    dbConn.getUrl());
+        }
+    }
+
+    /**
+     * Queries the major and the minor versions of the database server with
+     * the same connection, and keeps them in the connection properties.
+     *
+     * @param dbConn
+     *            Connection to db2.
+     * @return Major version of the server.
+     * @throws DatabaseConnectionException
+     *             If any error occurs while accessing the database.
+     */
+    @SuppressWarnings("PMD.DoNotThrowExceptionInFinally")
+    private static DB2MajorVersion loadVersions(final DB2Connection dbConn)
+            throws DatabaseConnectionException {
+        DB2MajorVersion major;
+        DB2MinorVersion minor;
+        Connection connection = null;
+        try {
+            connection = ConnectionPoolsManager.getInstance()
+                    .getConnectionPool(dbConn).getConnection(dbConn);
+            major = DB2MajorVersion.fromRelease(DB2Helper.queryVersion(
+                    connection, DB2Helper.QUERY_RELEASE_AFTER_V97));
+            minor = DB2MinorVersion.fromServiceLevel(DB2Helper.queryVersion(
+                    connection, DB2Helper.QUERY_SERVICE_LEVEL));
+        } catch (final SQLException sqle) {
+            DB2Helper.processException(sqle);
+            throw new DatabaseConnectionException(sqle);
+        } finally {
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new DatabaseConnectionException(e);
+            }
+        }
+        dbConn.setVersions(major, minor);
+        DB2Helper.LOGGER.info("{}::DB2 version detected {} :: {}",
+                new Object[] { dbConn.getUrl(), major, minor });
+        return major;
+    }
+
     /**
      * Process a given SQLException generated by DB2.
      *
@@ -349,86 +375,77 @@ public final class DB2Helper {
                     DB2Helper.LOGGER.error("SQLSTATE: " + sqlState);
                     // portion of SQLException
                 }
-                // Retrieve next SQLException
-                sqle = sqle.getNextException();
+            } else {
+                DB2Helper.LOGGER.error(sqle.getMessage());
             }
+            // Retrieve next SQLException
+            sqle = sqle.getNextException();
         }
     }
 
     /**
-     * Process the values of the result set.
+     * Executes a query that returns the version of the server. If the table
+     * function does not exist (before v9.7), the administrative view is
+     * queried instead.
      *
-     * @param res
-     *            Result set:
-     * @return The corresponding DB2 minor version.
+     * @param connection
+     *            Connection to the database.
+     * @param query
+     *            Query to execute.
+     * @return Text of the version, or null if there are not rows.
      * @throws SQLException
-     *             If there is any error processing the loop.
+     *             If there is any error while querying the database.
      */
-    private static DB2MinorVersion processValue(final ResultSet res)
-            throws SQLException {
-        DB2MinorVersion version = DB2MinorVersion.UNKNOWN;
-        String versionText;
-        while (res.next()) {
-            versionText = res.getString(1);
-            if (versionText.compareTo(DB2MinorVersion.V9_7_GA.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_GA;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_1.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_1;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_2.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_2;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_3.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_3;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_4.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_4;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_5.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_5;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_6.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_6;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_7.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_7;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_8.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_8;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_7_9.getName()) == 0) {
-                version = DB2MinorVersion.V9_7_9;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_GA.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_GA;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_1.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_1;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_2.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_2;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_3.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_3;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_4.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_4;
-            } else if (versionText.compareTo(DB2MinorVersion.V9_8_5.getName()) == 0) {
-                version = DB2MinorVersion.V9_8_5;
-            } else if (versionText
-                    .compareTo(DB2MinorVersion.V10_1_GA.getName()) == 0) {
-                version = DB2MinorVersion.V10_1_GA;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_1_1.getName()) == 0) {
-                version = DB2MinorVersion.V10_1_1;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_1_2.getName()) == 0) {
-                version = DB2MinorVersion.V10_1_2;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_1_3.getName()) == 0) {
-                version = DB2MinorVersion.V10_1_3;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_1_4.getName()) == 0) {
-                version = DB2MinorVersion.V10_1_4;
-            } else if (versionText
-                    .compareTo(DB2MinorVersion.V10_5_GA.getName()) == 0) {
-                version = DB2MinorVersion.V10_5_GA;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_5_1.getName()) == 0) {
-                version = DB2MinorVersion.V10_5_1;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_5_2.getName()) == 0) {
-                version = DB2MinorVersion.V10_5_2;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_5_3.getName()) == 0) {
-                version = DB2MinorVersion.V10_5_3;
-            } else if (versionText.compareTo(DB2MinorVersion.V10_5_4.getName()) == 0) {
-                version = DB2MinorVersion.V10_5_4;
-            } else {
-                version = DB2MinorVersion.OTHER;
+    private static String queryVersion(final Connection connection,
+            final String query) throws SQLException {
+        String ret = null;
+        PreparedStatement stmt = connection.prepareStatement(query);
+        stmt.setQueryTimeout(DB2Helper.VERSION_QUERY_TIMEOUT);
+        ResultSet res = null;
+        try {
+            try {
+                res = stmt.executeQuery();
+            } catch (final SQLException sqle) {
+                final int code = DB2Helper.getSqlCode(sqle);
+                if (code == DB2Helper.NO_ROUTINE) {
+                    stmt.close();
+                    stmt = connection
+                            .prepareStatement(DB2Helper.QUERY_RELEASE_BEFORE_V97);
+                    stmt.setQueryTimeout(DB2Helper.VERSION_QUERY_TIMEOUT);
+                    res = stmt.executeQuery();
+                } else {
+                    throw sqle;
+                }
             }
+            while (res.next()) {
+                ret = res.getString(1);
+            }
+        } finally {
+            if (res != null) {
+                res.close();
+            }
+            stmt.close();
         }
-        return version;
+        return ret;
+    }
+
+    /**
+     * Returns the properties of a DB2 connection.
+     *
+     * @param dbConn
+     *            Connection properties.
+     * @return The same properties as a DB2 connection.
+     * @throws DatabaseConnectionException
+     *             If the connection is not for DB2.
+     */
+    private static DB2Connection toDB2Connection(
+            final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException {
+        if (!(dbConn instanceof DB2Connection)) {
+            throw new DatabaseConnectionException(new IllegalArgumentException(
+                    "Not a DB2 connection: " + dbConn));
+        }
+        return (DB2Connection) dbConn;
     }
 
     /**
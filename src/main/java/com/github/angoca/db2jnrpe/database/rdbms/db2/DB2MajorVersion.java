@@ -44,6 +44,57 @@ public enum DB2MajorVersion {
      */
     V9_8("9.8", 98);
 
+    /**
+     * Returns the DB2 version that corresponds to the given release. If the
+     * release is not one of the known versions, it is parsed and the most
+     * recent known version before it is returned. For releases more recent
+     * than the known ones, OTHER is returned, which is more recent than any
+     * known version.
+     *
+     * @param release
+     *            Release, as returned by the ENV_PROD_INFO view. For example:
+     *            10.5
+     * @return The corresponding version.
+     */
+    public static DB2MajorVersion fromRelease(final String release) {
+        DB2MajorVersion ret = DB2MajorVersion.UNKNOWN;
+        if (release != null) {
+            int value;
+            try {
+                final int dot = release.indexOf('.');
+                value = Integer.parseInt(release.substring(0, dot).trim())
+                        * 10
+                        + Integer.parseInt(release.substring(dot + 1,
+                                dot + 2));
+            } catch (final NumberFormatException e) {
+                value = -1;
+            } catch (final IndexOutOfBoundsException e) {
+                value = -1;
+            }
+            if (value < 0) {
+                ret = DB2MajorVersion.OTHER;
+            } else {
+                int max = 0;
+                for (final DB2MajorVersion version : DB2MajorVersion.values()) {
+                    if (release.equals(version.name)) {
+                        ret = version;
+                        break;
+                    } else if (version != DB2MajorVersion.OTHER) {
+                        max = Math.max(max, version.value);
+                        if (version.value <= value
+                                && version.value >= ret.value) {
+                            ret = version;
+                        }
+                    }
+                }
+                if (value > max) {
+                    ret = DB2MajorVersion.OTHER;
+                }
+            }
+        }
+        return ret;
+    }
+
     /**
      * Name of the DB2 version.
      */
@@ -1,5 +1,8 @@
 package com.github.angoca.db2jnrpe.database.rdbms.db2;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 /**
  * Different list of DB2 minor versions.
  *
@@ -43,15 +46,15 @@ public enum DB2MinorVersion {
     /**
      * 10.5 version Fixpack 2.
      */
-    V10_5_2("DB2 v10.5.0.200", 10501),
+    V10_5_2("DB2 v10.5.0.200", 10502),
     /**
      * 10.5 version Fixpack 3.
      */
-    V10_5_3("DB2 v10.5.0.300", 10501),
+    V10_5_3("DB2 v10.5.0.300", 10503),
     /**
      * 10.5 version Fixpack 4.
      */
-    V10_5_4("DB2 v10.5.0.400", 10501),
+    V10_5_4("DB2 v10.5.0.400", 10504),
     /**
      * 10.5 version.
      */
@@ -125,6 +128,86 @@ public enum DB2MinorVersion {
      */
     V9_8_GA("DB2 v9.8.0.0", 9800);
 
+    /**
+     * Pattern of the service level: DB2 vVersion.Release.Modification.Fixpack.
+     */
+    private static final Pattern SERVICE_LEVEL = Pattern
+            .compile("v(\\d+)\\.(\\d+)\\.(\\d+)\\.(\\d+)");
+
+    /**
+     * Returns the DB2 version that corresponds to the given service level. If
+     * the service level is not one of the known versions, it is parsed and
+     * the most recent known fix pack of the same release is returned. For
+     * releases more recent than the known ones, OTHER is returned, which is
+     * more recent than any known version. If the service level cannot be
+     * parsed, UNKNOWN is returned.
+     *
+     * @param serviceLevel
+     *            Service level, as returned by the ENV_INST_INFO view. For
+     *            example: DB2 v10.5.0.400
+     * @return The corresponding version.
+     */
+    public static DB2MinorVersion fromServiceLevel(final String serviceLevel) {
+        DB2MinorVersion ret = DB2MinorVersion.UNKNOWN;
+        if (serviceLevel != null) {
+            final int value = DB2MinorVersion.parseValue(serviceLevel);
+            if (value >= 0) {
+                int max = 0;
+                for (final DB2MinorVersion version : DB2MinorVersion.values()) {
+                    if (serviceLevel.equals(version.name)) {
+                        ret = version;
+                        break;
+                    } else if (version != DB2MinorVersion.OTHER) {
+                        max = Math.max(max, version.value);
+                        if (version.value <= value
+                                && version.value / 100 == value / 100
+                                && version.value >= ret.value) {
+                            // Most recent fix pack of the same release.
+                            ret = version;
+                        }
+                    }
+                }
+                if (ret == DB2MinorVersion.UNKNOWN && value > max) {
+                    ret = DB2MinorVersion.OTHER;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Converts a service level in a numeric value, comparable with the values
+     * of the enum.
+     *
+     * @param serviceLevel
+     *            Service level to parse.
+     * @return Value of the version, or -1 if the service level is invalid.
+     */
+    private static int parseValue(final String serviceLevel) {
+        int ret = -1;
+        final Matcher matcher = DB2MinorVersion.SERVICE_LEVEL
+                .matcher(serviceLevel);
+        if (matcher.find()) {
+            final int version = Integer.parseInt(matcher.group(1));
+            final int release = Integer.parseInt(matcher.group(2));
+            final int modification = Integer.parseInt(matcher.group(3));
+            int fixpack;
+            if (modification >= 100) {
+                // The fix pack is in the modification, and the last field is
+                // the build: DB2 v10.5.100.64 is the fix pack 1.
+                fixpack = modification / 100;
+            } else {
+                fixpack = Integer.parseInt(matcher.group(4));
+                // Since v10.5, the fix pack is multiplied by 100.
+                if (fixpack >= 100) {
+                    fixpack = fixpack / 100;
+                }
+            }
+            ret = version * 1000 + release * 100 + Math.min(fixpack, 99);
+        }
+        return ret;
+    }
+
     /**
      * Name of the DB2 version.
      */
@@ -1,17 +1,34 @@
 package com.github.angoca.db2jnrpe.plugins.db2;
 
 /**
- * This class represents a read of the bufferpool values.
+ * This class represents a read of the bufferpool values. A read is immutable;
+ * the next read is created from the previous one, in order to keep the
+ * comparison point.
+ * <p>
+ * A read is for a bufferpool in a member, or for a bufferpool in all members
+ * ({@link #ALL_MEMBERS}), where the values are the sum of the members.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
  */
 @SuppressWarnings("PMD.CommentSize")
-public final class BufferpoolRead implements Cloneable {
+public final class BufferpoolRead {
+    /**
+     * Member of a read that sums all the members of the database.
+     */
+    public static final int ALL_MEMBERS = -1;
     /**
      * Frequency to read the bufferpools. 60000 means each 10 minutes.
      */
     public static final long BUFFERPOOL_FREQ = DB2Database.STANDARD_FREQ;
+    /**
+     * Position of the logical reads in a time series.
+     */
+    public static final int LOGICAL = 0;
+    /**
+     * Position of the total reads in a time series.
+     */
+    public static final int TOTAL = 1;
     /**
      * Hundred percent.
      */
@@ -19,7 +36,7 @@ public final class BufferpoolRead implements Cloneable {
     /**
      * Most recent value of logical reads.
      */
-    private long logicalReads;
+    private final long logicalReads;
     /**
      * Member of the database.
      */
@@ -31,15 +48,15 @@ public final class BufferpoolRead implements Cloneable {
     /**
      * Previous read of logical reads.
      */
-    private transient long prevLogicalReads;
+    private final transient long prevLogicalReads;
     /**
      * Previous read of total reads.
      */
-    private transient long prevTotalReads;
+    private final transient long prevTotalReads;
     /**
      * Most recent value of total reads.
      */
-    private long totalReads;
+    private final long totalReads;
 
     /**
      * Creates a set of most recent reads for a bufferpool.
@@ -58,24 +75,86 @@ public final class BufferpoolRead implements Cloneable {
         assert logical <= total : "Logical reads should be less "
                 + "that total reads.";
         this.name = bpName;
-        this.setTotalReads(total);
-        this.setLogicalReads(logical);
+        this.totalReads = total;
+        this.logicalReads = logical;
         this.member = dbMember;
+        this.prevTotalReads = 0;
+        this.prevLogicalReads = 0;
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see java.lang.Object#clone()
+    /**
+     * Creates the read of a bufferpool in several members, by adding the
+     * reads of the members. The deltas of each member were already calculated
+     * against the same member, thus the ratio of the sum is weighted by the
+     * reads of each member.
+     *
+     * @param first
+     *            Read of a member, or sum of the reads of some members.
+     * @param second
+     *            Read of another member of the same bufferpool.
      */
-    @Override
-    @SuppressWarnings({ "PMD.CommentRequired", "PMD.ProperCloneImplementation" })
-    public BufferpoolRead clone() {
-        final BufferpoolRead copy = new BufferpoolRead(this.name,
-                this.logicalReads, this.totalReads, this.member);
-        copy.prevLogicalReads = this.prevLogicalReads;
-        copy.prevTotalReads = this.prevTotalReads;
-        return copy;
+    BufferpoolRead(final BufferpoolRead first, final BufferpoolRead second) {
+        this.name = first.name;
+        this.member = BufferpoolRead.ALL_MEMBERS;
+        this.logicalReads = first.logicalReads + second.logicalReads;
+        this.totalReads = first.totalReads + second.totalReads;
+        this.prevLogicalReads = first.prevLogicalReads
+                + second.prevLogicalReads;
+        this.prevTotalReads = first.prevTotalReads + second.prevTotalReads;
+    }
+
+    /**
+     * Creates the read of a bufferpool in a window of time, for all members.
+     * The values are accumulated deltas of a time series, thus the ratio is
+     * calculated between the beginning and the end of the window.
+     *
+     * @param bpName
+     *            Name of the bufferpool.
+     * @param begin
+     *            Accumulated logical and total reads at the beginning of the
+     *            window.
+     * @param end
+     *            Accumulated logical and total reads at the end of the window.
+     */
+    BufferpoolRead(final String bpName, final long[] begin, final long[] end) {
+        this.name = bpName;
+        this.member = BufferpoolRead.ALL_MEMBERS;
+        this.logicalReads = end[BufferpoolRead.LOGICAL];
+        this.totalReads = end[BufferpoolRead.TOTAL];
+        this.prevLogicalReads = begin[BufferpoolRead.LOGICAL];
+        this.prevTotalReads = begin[BufferpoolRead.TOTAL];
+    }
+
+    /**
+     * Creates the next read of a bufferpool, keeping the values of the
+     * previous read as comparison point.
+     *
+     * @param previous
+     *            Previous read of the same bufferpool.
+     * @param logical
+     *            Quantity of logical reads.
+     * @param total
+     *            Quantity of total reads.
+     */
+    public BufferpoolRead(final BufferpoolRead previous, final long logical,
+            final long total) {
+        assert logical <= total : "Logical reads should be less "
+                + "that total reads.";
+        this.name = previous.name;
+        this.member = previous.member;
+        this.totalReads = total;
+        this.logicalReads = logical;
+        // The database was recycled between two checks when a value is lower.
+        if (total < previous.totalReads) {
+            this.prevTotalReads = 0;
+        } else {
+            this.prevTotalReads = previous.totalReads;
+        }
+        if (logical < previous.logicalReads) {
+            this.prevLogicalReads = 0;
+        } else {
+            this.prevLogicalReads = previous.logicalReads;
+        }
     }
 
     /**
@@ -110,6 +189,24 @@ public final class BufferpoolRead implements Cloneable {
         return ret;
     }
 
+    /**
+     * Returns the logical reads between the last two reads.
+     *
+     * @return Delta of logical reads.
+     */
+    public long getLastLogicalReads() {
+        return this.logicalReads - this.prevLogicalReads;
+    }
+
+    /**
+     * Returns the total reads between the last two reads.
+     *
+     * @return Delta of total reads.
+     */
+    public long getLastTotalReads() {
+        return this.totalReads - this.prevTotalReads;
+    }
+
     /**
      * Retrieves the logical reads.
      *
@@ -122,7 +219,8 @@ public final class BufferpoolRead implements Cloneable {
     /**
      * Retrieves the member of the database.
      *
-     * @return Member of the database.
+     * @return Member of the database, or {@link #ALL_MEMBERS} if the read is
+     *         the sum of several members.
      */
     public int getMember() {
         return this.member;
@@ -155,58 +253,6 @@ public final class BufferpoolRead implements Cloneable {
         return this.totalReads;
     }
 
-    /**
-     * Establishes the new quantity of logical reads.
-     *
-     * @param logical
-     *            Quantity of logical reads.
-     */
-    private void setLogicalReads(final long logical) {
-        assert logical > 0 : "Logical reads should be greater than zero.";
-        assert logical < this.totalReads : "Logical reads should be less that total reads.";
-
-        if (logical < this.logicalReads) {
-            // The database was recycled between two checks.
-            this.prevLogicalReads = 0;
-        } else {
-            this.prevLogicalReads = this.logicalReads;
-        }
-        this.logicalReads = logical;
-    }
-
-    /**
-     * Updates the values of the read with the most recent ones if the last
-     * update is old.
-     *
-     * @param logical
-     *            Quantity of logical reads.
-     * @param total
-     *            Quantity of total reads.
-     */
-    public void setReads(final long logical, final long total) {
-        this.setLogicalReads(logical);
-        this.setTotalReads(total);
-    }
-
-    /**
-     * Establishes the new quantity of total reads.
-     *
-     * @param total
-     *            Quantity of total reads.
-     */
-    private void setTotalReads(final long total) {
-        assert total > 0 : "Total reads should be greater than zero.";
-        assert this.logicalReads < total : "Logical reads should be less that total reads.";
-
-        if (total < this.totalReads) {
-            // The database was recycled between two checks.
-            this.prevTotalReads = 0;
-        } else {
-            this.prevTotalReads = this.totalReads;
-        }
-        this.totalReads = total;
-    }
-
     /*
      * (non-Javadoc)
      * 
@@ -1,22 +1,29 @@
 package com.github.angoca.db2jnrpe.plugins.db2;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Set;
 
 /**
  * Object that holds the bufferpool reads and the time when the values were
- * gathered.
+ * gathered. It is immutable, thus it is published once per collection and
+ * shared by all readers.
+ * <p>
+ * In a partitioned or pureScale database, there is a read per bufferpool and
+ * member. The reads are kept per member, and for each bufferpool there is also
+ * a cluster-wide read, with the sum of the reads of all members; thus its
+ * ratio is weighted by the quantity of reads of each member.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
  */
-public final class Bufferpools implements Cloneable {
+public final class Bufferpools {
     /**
-     * Hash of bufferpoolReads reads.
+     * Cluster-wide reads, per bufferpool name.
      */
-    private transient Map<String, BufferpoolRead> bufferpoolReads;
+    private final transient Map<String, BufferpoolRead> bufferpoolReads;
     /**
      * Database that keeps all data.
      */
@@ -25,64 +32,105 @@ public final class Bufferpools implements Cloneable {
     /**
      * Time of the last bufferpoolReads read.
      */
-    private transient long lastBpRead;
+    private final transient long lastBpRead;
+    /**
+     * Monotonic time of the last read, in nanoseconds.
+     */
+    private final transient long lastNanos;
+    /**
+     * Reads per member, and per bufferpool name.
+     */
+    private final transient Map<Integer, Map<String, BufferpoolRead>> memberReads;
 
     /**
-     * Creates a bufferpool with the associated database.
+     * Creates the set of bufferpool reads of a collection. The reads are
+     * distributed per member, and the cluster-wide reads are calculated, in
+     * the same pass.
      *
      * @param dataBase
      *            Associated database.
+     * @param reads
+     *            Bufferpool reads, one per bufferpool and member.
+     * @param time
+     *            Time when the values were retrieved.
+     * @param nanos
+     *            Monotonic time when the values were retrieved, from
+     *            {@link System#nanoTime()}.
      */
-    public Bufferpools(final DB2Database dataBase) {
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    public Bufferpools(final DB2Database dataBase,
+            final Collection<BufferpoolRead> reads, final long time,
+            final long nanos) {
         this.database = dataBase;
-        this.bufferpoolReads = new HashMap<String, BufferpoolRead>();
+        final Map<String, BufferpoolRead> cluster = new HashMap<String, BufferpoolRead>();
+        final Map<Integer, Map<String, BufferpoolRead>> members = new HashMap<Integer, Map<String, BufferpoolRead>>();
+        for (final BufferpoolRead read : reads) {
+            Map<String, BufferpoolRead> member = members.get(read.getMember());
+            if (member == null) {
+                member = new HashMap<String, BufferpoolRead>();
+                members.put(read.getMember(), member);
+            }
+            member.put(read.getName(), read);
+            final BufferpoolRead sum = cluster.get(read.getName());
+            if (sum == null) {
+                cluster.put(read.getName(), read);
+            } else {
+                cluster.put(read.getName(), new BufferpoolRead(sum, read));
+            }
+        }
+        for (final Map.Entry<Integer, Map<String, BufferpoolRead>> entry : members
+                .entrySet()) {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+        }
+        this.bufferpoolReads = Collections.unmodifiableMap(cluster);
+        this.memberReads = Collections.unmodifiableMap(members);
+        this.lastBpRead = time;
+        this.lastNanos = nanos;
     }
 
     /**
-     * Adds a bufferpool read to the database.
+     * Retrieves the read of a bufferpool in a member.
      *
-     * @param bpr
-     *            Bufferpool read.
-     */
-    public void addBufferpoolRead(final BufferpoolRead bpr) {
-        this.bufferpoolReads.put(bpr.getName(), bpr);
-    }
-
-    /*
-     * (non-Javadoc)
-     * 
-     * @see java.lang.Object#clone()
+     * @param name
+     *            Name of the bufferpool.
+     * @param member
+     *            Member of the database.
+     * @return Read of the bufferpool, or null if it was not read.
      */
-    @Override
-    @SuppressWarnings({ "PMD.CommentRequired", "PMD.ProperCloneImplementation" })
-    public Object clone() {
-        final Bufferpools ret = new Bufferpools(this.database);
-        ret.lastBpRead = this.lastBpRead;
-        ret.bufferpoolReads = this.cloneBufferpools();
+    public BufferpoolRead getBufferpoolRead(final String name,
+            final int member) {
+        BufferpoolRead ret = null;
+        final Map<String, BufferpoolRead> reads = this.memberReads.get(member);
+        if (reads != null) {
+            ret = reads.get(name);
+        }
         return ret;
     }
 
     /**
-     * Clone the set of bufferpoolReads.
+     * Retrieves the set of cluster-wide bufferpool reads. When a bufferpool
+     * is in several members, its read is the sum of the reads of the members.
      *
-     * @return Copy of the set of bufferpoolReads.
+     * @return Unmodifiable map to the bufferpool reads, by name.
      */
-    private Map<String, BufferpoolRead> cloneBufferpools() {
-        final ConcurrentMap<String, BufferpoolRead> copy = new ConcurrentHashMap<String, BufferpoolRead>();
-        for (final String key : this.bufferpoolReads.keySet()) {
-            final BufferpoolRead clone = this.bufferpoolReads.get(key).clone();
-            copy.put(key, clone);
-        }
-        return copy;
+    public Map<String, BufferpoolRead> getBufferpoolReads() {
+        return this.bufferpoolReads;
     }
 
     /**
-     * Retrieves the set of bufferpool reads.
+     * Retrieves the set of bufferpool reads of a member.
      *
-     * @return Map to the bufferpool reads.
+     * @param member
+     *            Member of the database.
+     * @return Unmodifiable map to the bufferpool reads, by name. Empty if the
+     *         member was not read.
      */
-    public Map<String, BufferpoolRead> getBufferpoolReads() {
-        return this.bufferpoolReads;
+    public Map<String, BufferpoolRead> getBufferpoolReads(final int member) {
+        Map<String, BufferpoolRead> ret = this.memberReads.get(member);
+        if (ret == null) {
+            ret = Collections.emptyMap();
+        }
+        return ret;
     }
 
     /**
@@ -94,6 +142,25 @@ public final class Bufferpools implements Cloneable {
         return this.lastBpRead;
     }
 
+    /**
+     * Retrieves the monotonic time of the last read. The time series of the
+     * bufferpools use it, because the wall clock could go backwards.
+     *
+     * @return Time in nanoseconds, from {@link System#nanoTime()}.
+     */
+    public long getLastNanos() {
+        return this.lastNanos;
+    }
+
+    /**
+     * Retrieves the members that were read.
+     *
+     * @return Set of members.
+     */
+    public Set<Integer> getMembers() {
+        return this.memberReads.keySet();
+    }
+
     /**
      * Checks if the list of bufferpoolReads should be updated.
      *
@@ -125,16 +192,6 @@ public final class Bufferpools implements Cloneable {
         return ret;
     }
 
-    /**
-     * Set the bufferpool reads.
-     *
-     * @param bps
-     *            Set of bufferpool reads.
-     */
-    public void setBufferpools(final Map<String, BufferpoolRead> bps) {
-        this.bufferpoolReads = bps;
-    }
-
     /*
      * (non-Javadoc)
      * 
@@ -148,12 +205,4 @@ public final class Bufferpools implements Cloneable {
         return ret;
     }
 
-    /**
-     * Updates the value of the last bufferpool read. This is general to all
-     * bufferpoolReads because they are updated at the same time.
-     */
-    public void updateLastBufferpoolRead() {
-        this.lastBpRead = System.currentTimeMillis();
-    }
-
 }
@@ -0,0 +1,232 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker of a database. When the collections of a database fail
+ * several consecutive times, the circuit is opened and the database is not
+ * accessed until a period has passed. Then, a single collection is allowed as
+ * a probe (half-open); if it succeeds, the circuit is closed, otherwise it is
+ * opened again for a period twice as long, up to a maximum. The probe is
+ * scheduled when the circuit is opened, thus the period governs when the
+ * database is accessed again, whatever the frequency of the collection.
+ * <p>
+ * While the circuit is open, the checks fail immediately, instead of waiting
+ * for the connection timeout of an unreachable instance. While the probe is
+ * in process, the checks proceed.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class CircuitBreaker {
+
+    /**
+     * States of the circuit.
+     */
+    public enum State {
+        /**
+         * The database is accessed normally.
+         */
+        CLOSED,
+        /**
+         * A probe is accessing the database.
+         */
+        HALF_OPEN,
+        /**
+         * The database is not accessed.
+         */
+        OPEN
+    }
+
+    /**
+     * Quantity of consecutive failures to open the circuit.
+     */
+    public static final int FAILURES_THRESHOLD = 3;
+    /**
+     * Time that the circuit is open after it is opened the first time: 30
+     * seconds.
+     */
+    public static final long INITIAL_BACKOFF = 30000;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(CircuitBreaker.class);
+    /**
+     * Maximal time that the circuit is open before a probe: 10 minutes.
+     */
+    public static final long MAX_BACKOFF = 600000;
+
+    /**
+     * Current time that the circuit stays open.
+     */
+    private long backoff;
+    /**
+     * Quantity of consecutive failures.
+     */
+    private int failures;
+    /**
+     * Identification of the database.
+     */
+    private final transient String identification;
+    /**
+     * Message of the last failure.
+     */
+    private String lastError;
+    /**
+     * Time when the circuit was opened, in nanoseconds. It is compared with
+     * the same clock of the scheduler of the probe.
+     */
+    private long openedAt;
+    /**
+     * Current state.
+     */
+    private State state;
+
+    /**
+     * Creates a closed circuit for a database.
+     *
+     * @param dbId
+     *            Identification of the database.
+     */
+    public CircuitBreaker(final String dbId) {
+        this.identification = dbId;
+        this.state = State.CLOSED;
+        this.backoff = CircuitBreaker.INITIAL_BACKOFF;
+    }
+
+    /**
+     * Checks if the database can be accessed. When the circuit is open and
+     * the period has passed, only the first caller is allowed, as a probe, and
+     * the circuit becomes half-open until the result of the probe is
+     * recorded.
+     *
+     * @return True if the database can be accessed.
+     */
+    public synchronized boolean allowRequest() {
+        boolean ret = false;
+        if (this.state == State.CLOSED) {
+            ret = true;
+        } else if (this.state == State.OPEN
+                && System.nanoTime() - this.openedAt >= TimeUnit.MILLISECONDS
+                        .toNanos(this.backoff)) {
+            CircuitBreaker.LOGGER.info("{}::Probing the database",
+                    this.identification);
+            this.state = State.HALF_OPEN;
+            ret = true;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the current time that the circuit stays open, that is, the delay
+     * of the next probe since the circuit was opened.
+     *
+     * @return Period in milliseconds.
+     */
+    public synchronized long getBackoff() {
+        return this.backoff;
+    }
+
+    /**
+     * Returns the message of the last failure.
+     *
+     * @return Message of the failure, or null if there was not a failure.
+     */
+    public synchronized String getLastError() {
+        return this.lastError;
+    }
+
+    /**
+     * Returns the current state of the circuit.
+     *
+     * @return State.
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * Checks if the database is considered unreachable, that is, the circuit
+     * is open. While a probe is in process, the database is not considered
+     * unreachable.
+     *
+     * @return True if the checks should fail immediately.
+     */
+    public synchronized boolean isOpen() {
+        return this.state == State.OPEN;
+    }
+
+    /**
+     * Records a failed access to the database. It opens the circuit after
+     * several consecutive failures, or if the probe failed.
+     *
+     * @param error
+     *            Cause of the failure.
+     */
+    public synchronized void recordFailure(final Exception error) {
+        this.failures++;
+        this.lastError = String.valueOf(error.getMessage());
+        if (this.state == State.HALF_OPEN) {
+            this.backoff = Math.min(this.backoff * 2,
+                    CircuitBreaker.MAX_BACKOFF);
+            this.open();
+        } else if (this.state == State.CLOSED
+                && this.failures >= CircuitBreaker.FAILURES_THRESHOLD) {
+            this.open();
+        }
+    }
+
+    /**
+     * Releases the probe when its result was not recorded, because the
+     * collection ended with an unexpected error. If the circuit is still
+     * half-open, it is opened again for the same period; otherwise, nothing
+     * is done.
+     */
+    public synchronized void releaseProbe() {
+        if (this.state == State.HALF_OPEN) {
+            this.open();
+        }
+    }
+
+    /**
+     * Records a successful access to the database, thus the circuit is
+     * closed.
+     */
+    public synchronized void recordSuccess() {
+        if (this.state != State.CLOSED) {
+            CircuitBreaker.LOGGER.warn("{}::Circuit closed",
+                    this.identification);
+        }
+        this.state = State.CLOSED;
+        this.failures = 0;
+        this.backoff = CircuitBreaker.INITIAL_BACKOFF;
+        this.lastError = null;
+    }
+
+    /**
+     * Opens the circuit.
+     */
+    private void open() {
+        this.state = State.OPEN;
+        this.openedAt = System.nanoTime();
+        CircuitBreaker.LOGGER.warn("{}::Circuit opened for {} ms: {}",
+                new Object[] { this.identification, this.backoff,
+                        this.lastError });
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public synchronized String toString() {
+        return "[circuit:" + this.state + ";failures:" + this.failures + ']';
+    }
+}
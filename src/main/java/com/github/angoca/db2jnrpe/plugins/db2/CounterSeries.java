@@ -0,0 +1,218 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+/**
+ * Time series of a set of counters, with a bounded quantity of samples. The
+ * samples are kept in a ring buffer of primitive arrays; when it is full, the
+ * oldest sample is overwritten. Thus, the memory of a series is bounded:
+ * capacity x (counters + 1) longs. The capacity can be changed, keeping the
+ * most recent samples, when the frequency of the samples changes.
+ * <p>
+ * Each sample receives the deltas of the counters since the previous sample,
+ * already adjusted when the database was recycled, and it keeps the
+ * accumulated value. Thus, the difference between two samples is the activity
+ * between them, and the delta for a window is found with a binary search of
+ * the first sample of the window.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class CounterSeries {
+
+    /**
+     * Maximal quantity of samples.
+     */
+    private int capacity;
+    /**
+     * Quantity of counters per sample.
+     */
+    private final int counters;
+    /**
+     * Quantity of samples in the series.
+     */
+    private int size;
+    /**
+     * Position of the oldest sample.
+     */
+    private int start;
+    /**
+     * Time of each sample.
+     */
+    private long[] times;
+    /**
+     * Accumulated values of the counters of each sample.
+     */
+    private long[] values;
+
+    /**
+     * Creates an empty series.
+     *
+     * @param maxSamples
+     *            Maximal quantity of samples.
+     * @param countersQty
+     *            Quantity of counters per sample.
+     */
+    public CounterSeries(final int maxSamples, final int countersQty) {
+        this.capacity = maxSamples;
+        this.counters = countersQty;
+        this.times = new long[maxSamples];
+        this.values = new long[maxSamples * countersQty];
+    }
+
+    /**
+     * Adds a sample to the series. If the series is full, the oldest sample is
+     * overwritten.
+     *
+     * @param time
+     *            Time of the sample. The times of a series should be
+     *            monotonic and in the same unit.
+     * @param deltas
+     *            Activity of each counter since the previous sample.
+     */
+    public synchronized void add(final long time, final long[] deltas) {
+        assert deltas.length == this.counters;
+        final int last = this.position(this.size - 1);
+        final int pos;
+        if (this.size < this.capacity) {
+            pos = this.position(this.size);
+            this.size++;
+        } else {
+            pos = this.start;
+            this.start = this.position(1);
+        }
+        this.times[pos] = time;
+        for (int k = 0; k < this.counters; k++) {
+            long value = deltas[k];
+            if (this.size > 1) {
+                value += this.values[last * this.counters + k];
+            }
+            this.values[pos * this.counters + k] = value;
+        }
+    }
+
+    /**
+     * Finds the first sample of a window: the most recent sample that is at
+     * least as old as the window. If the series does not cover the window, it
+     * is the oldest sample.
+     *
+     * @param window
+     *            Duration of the window, in the unit of the times.
+     * @return Index of the sample, from the oldest one.
+     */
+    private int first(final long window) {
+        final long limit = this.times[this.position(this.size - 1)] - window;
+        int low = 0;
+        int high = this.size - 1;
+        int ret = 0;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (this.times[this.position(mid)] <= limit) {
+                ret = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Retrieves the accumulated values at the beginning and at the end of a
+     * window, and their times. Both samples are read at the same time, thus
+     * they are consistent.
+     *
+     * @param window
+     *            Duration of the window, in the unit of the times.
+     * @param begin
+     *            Array where the values of the first sample are written.
+     * @param end
+     *            Array where the values of the last sample are written.
+     * @return Times of the first and of the last sample.
+     * @throws UnknownValueException
+     *             If there are not two samples in the series.
+     */
+    public synchronized long[] getWindow(final long window,
+            final long[] begin, final long[] end)
+            throws UnknownValueException {
+        if (this.size < 2) {
+            throw new UnknownValueException("Second sample has not been read");
+        }
+        final int last = this.position(this.size - 1);
+        int first = this.position(this.first(window));
+        if (first == last) {
+            // The window is shorter than the interval between samples.
+            first = this.position(this.size - 2);
+        }
+        System.arraycopy(this.values, first * this.counters, begin, 0,
+                this.counters);
+        System.arraycopy(this.values, last * this.counters, end, 0,
+                this.counters);
+        return new long[] { this.times[first], this.times[last] };
+    }
+
+    /**
+     * Returns the quantity of counters per sample.
+     *
+     * @return Quantity of counters.
+     */
+    public int getCounters() {
+        return this.counters;
+    }
+
+    /**
+     * Returns the quantity of samples in the series.
+     *
+     * @return Quantity of samples.
+     */
+    public synchronized int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Changes the maximal quantity of samples. The most recent samples are
+     * kept.
+     *
+     * @param maxSamples
+     *            New maximal quantity of samples.
+     */
+    public synchronized void resize(final int maxSamples) {
+        if (maxSamples != this.capacity) {
+            final int kept = Math.min(this.size, maxSamples);
+            final long[] newTimes = new long[maxSamples];
+            final long[] newValues = new long[maxSamples * this.counters];
+            for (int i = 0; i < kept; i++) {
+                final int pos = this.position(this.size - kept + i);
+                newTimes[i] = this.times[pos];
+                System.arraycopy(this.values, pos * this.counters, newValues,
+                        i * this.counters, this.counters);
+            }
+            this.capacity = maxSamples;
+            this.times = newTimes;
+            this.values = newValues;
+            this.size = kept;
+            this.start = 0;
+        }
+    }
+
+    /**
+     * Converts an index from the oldest sample to a position in the arrays.
+     *
+     * @param index
+     *            Index from the oldest sample.
+     * @return Position in the arrays.
+     */
+    private int position(final int index) {
+        return (this.start + index + this.capacity) % this.capacity;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public synchronized String toString() {
+        return "[series:" + this.size + '/' + this.capacity + ']';
+    }
+}
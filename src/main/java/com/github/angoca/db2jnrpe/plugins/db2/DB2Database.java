@@ -1,16 +1,39 @@
 package com.github.angoca.db2jnrpe.plugins.db2;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
-import com.github.angoca.db2jnrpe.plugins.db2.broker.DB2BufferpoolHitRatioBroker;
-import com.github.angoca.db2jnrpe.plugins.db2.broker.DB2DatabaseSnapshotBroker;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.AbstractDB2Broker;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.CollectionScheduler;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.DB2CombinedBroker;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.MetricFamily;
 
 /**
- * Models a database with its connection URL.
+ * Models a database with its connection URL. The values of the database are
+ * refreshed periodically by the {@link CollectionScheduler}. The refreshes
+ * requested by the plugins use the same {@link DB2CombinedBroker}, thus all
+ * the requested families are always retrieved in one query per database.
+ * <p>
+ * The snapshot and the bufferpool reads are immutable objects, published by
+ * the brokers once per collection. The readers receive the published object,
+ * without any copy.
+ * <p>
+ * Each published value is also appended to a time series of fixed capacity,
+ * in order to calculate the rates of a window of time (1, 5 or 15 minutes,
+ * for example) without keeping all the snapshots.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
@@ -27,17 +50,101 @@ public final class DB2Database {
      */
     public static final long STANDARD_FREQ = 600000;
     /**
-     * Bufferpool reads.
+     * Minimal frequency of the collection: 1 second.
      */
-    private Bufferpools bufferpools;
+    public static final long MIN_FREQ = 1000;
+    /**
+     * Minimal time between the first and the second sample when waiting for
+     * the values in a cold cache: 1 second.
+     */
+    private static final long MIN_SAMPLE_INTERVAL = 1000;
+    /**
+     * Maximal quantity of samples kept in each time series, whatever the
+     * frequency.
+     */
+    private static final int MAX_SERIES_CAPACITY = 1024;
+    /**
+     * Largest window of time of the rates: 15 minutes. The time series keep
+     * the samples to cover it, up to {@link #MAX_SERIES_CAPACITY}.
+     */
+    public static final long MAX_WINDOW = 900000;
+    /**
+     * Most recent bufferpool reads.
+     */
+    private final AtomicReference<Bufferpools> bufferpools = new AtomicReference<Bufferpools>();
+    /**
+     * Time series of the reads of each bufferpool, for all members, with the
+     * monotonic time of each read.
+     */
+    private final ConcurrentMap<String, CounterSeries> bufferpoolSeries = new ConcurrentHashMap<String, CounterSeries>();
+    /**
+     * Indicates that the bufferpool values have been requested by a plugin.
+     */
+    private volatile boolean bufferpoolsRequested;
+    /**
+     * Circuit breaker of the database.
+     */
+    private final CircuitBreaker circuitBreaker;
+    /**
+     * Most recent connection properties used to access the database.
+     */
+    private volatile AbstractDatabaseConnection connection;
+    /**
+     * Indicates that the database was evicted from the manager because it
+     * was idle; a new instance is created for the next check.
+     */
+    private volatile boolean evicted;
+    /**
+     * Frequency to refresh the values of this database.
+     */
+    private volatile long frequency;
     /**
      * Identification of the database.
      */
     private final transient String identification;
     /**
-     * Snapshot of the database.
+     * Maximum time of the queries of this database in seconds, or zero to use
+     * the timeout of each family.
+     */
+    private volatile int queryTimeout;
+    /**
+     * Time of the most recent check of a plugin on this database. The
+     * periodic collections do not change it.
+     */
+    private volatile long lastCheck;
+    /**
+     * Most recent snapshot of the database.
      */
-    private DatabaseSnapshot snap;
+    private final AtomicReference<DatabaseSnapshot> snap = new AtomicReference<DatabaseSnapshot>();
+    /**
+     * Indicates that the snapshot values have been requested by a plugin.
+     */
+    private volatile boolean snapshotRequested;
+    /**
+     * Time series of the counters of the snapshot, for all members.
+     */
+    private final CounterSeries snapshotSeries = new CounterSeries(
+            DB2Database.getSeriesCapacity(DB2Database.STANDARD_FREQ),
+            DatabaseSnapshot.COUNTERS);
+    /**
+     * Quantity of queries that were cancelled because they exceeded the
+     * timeout.
+     */
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * Returns the quantity of samples of the time series to cover the largest
+     * window with a frequency: the samples of the window, plus the sample
+     * before it, plus the sample being collected.
+     *
+     * @param freq
+     *            Frequency of the collection in milliseconds.
+     * @return Quantity of samples.
+     */
+    private static int getSeriesCapacity(final long freq) {
+        return (int) Math.min(DB2Database.MAX_SERIES_CAPACITY,
+                DB2Database.MAX_WINDOW / freq + 2);
+    }
 
     /**
      * Creates a database with an ID.
@@ -47,6 +154,9 @@ public final class DB2Database {
      */
     public DB2Database(final String dbId) {
         this.identification = dbId;
+        this.frequency = DB2Database.STANDARD_FREQ;
+        this.circuitBreaker = new CircuitBreaker(dbId);
+        this.lastCheck = System.currentTimeMillis();
 
         if (DB2Database.LOGGER.isDebugEnabled()) {
             DB2Database.LOGGER.debug("New database " + dbId);
@@ -54,17 +164,110 @@ public final class DB2Database {
     }
 
     /**
-     * Returns the object that represents the bufferpool reads.
+     * Counts a query that was cancelled because it exceeded the timeout.
+     */
+    public void addTimeout() {
+        this.timeouts.incrementAndGet();
+    }
+
+    /**
+     * Fails immediately if the database is considered unreachable.
+     *
+     * @throws UnknownValueException
+     *             If the circuit of the database is open.
+     */
+    private void checkCircuit() throws UnknownValueException {
+        if (this.circuitBreaker.isOpen()) {
+            throw new UnknownValueException("Database is unreachable: "
+                    + this.circuitBreaker.getLastError());
+        }
+    }
+
+    /**
+     * Checks that the samples of a window cover it. The window is not covered
+     * if it is shorter than the frequency of the collection, because the
+     * samples would be of a longer period, or if the samples do not go back
+     * to the beginning of the window, because the collection started recently
+     * or the series do not keep enough samples.
      *
-     * @return Bufferpool reads.
+     * @param window
+     *            Duration of the window in milliseconds.
+     * @param span
+     *            Time between the first and the last sample of the window, in
+     *            milliseconds.
+     * @throws UnknownValueException
+     *             If the samples do not cover the window.
+     */
+    private void checkWindow(final long window, final long span)
+            throws UnknownValueException {
+        final long freq = this.frequency;
+        if (window < freq) {
+            throw new UnknownValueException("The window of "
+                    + TimeUnit.MILLISECONDS.toSeconds(window)
+                    + " s is shorter than the frequency of the collection ("
+                    + TimeUnit.MILLISECONDS.toSeconds(freq) + " s)");
+        } else if (span < window) {
+            throw new UnknownValueException("The samples cover "
+                    + TimeUnit.MILLISECONDS.toSeconds(span)
+                    + " s of the window of "
+                    + TimeUnit.MILLISECONDS.toSeconds(window) + " s");
+        }
+    }
+
+    /**
+     * Returns the object that represents the most recent bufferpool reads.
+     *
+     * @return Bufferpool reads, or null if they have not been read.
      */
     public Bufferpools getBufferpools() {
-        return this.bufferpools;
+        return this.bufferpools.get();
+    }
+
+    /**
+     * Returns the bufferpool reads of a window of time, for all members. The
+     * time series keep the samples of windows up to {@link #MAX_WINDOW}; the
+     * window should not be shorter than the frequency of the collection.
+     *
+     * @param window
+     *            Duration of the window in milliseconds.
+     * @return Bufferpool reads of the window, or null if they have not been
+     *         read.
+     * @throws UnknownValueException
+     *             If a bufferpool has only one read, or if its samples do
+     *             not cover the window.
+     */
+    public Bufferpools getBufferpools(final long window)
+            throws UnknownValueException {
+        final Bufferpools current = this.bufferpools.get();
+        Bufferpools ret = null;
+        if (current != null) {
+            final List<BufferpoolRead> reads = new ArrayList<BufferpoolRead>();
+            for (final Map.Entry<String, CounterSeries> entry : this.bufferpoolSeries
+                    .entrySet()) {
+                final long[] begin = new long[2];
+                final long[] end = new long[2];
+                final long[] times;
+                try {
+                    times = entry.getValue().getWindow(
+                            TimeUnit.MILLISECONDS.toNanos(window), begin, end);
+                } catch (final UnknownValueException e) {
+                    throw new UnknownValueException("Bufferpool "
+                            + entry.getKey() + ": " + e.getMessage());
+                }
+                this.checkWindow(window,
+                        TimeUnit.NANOSECONDS.toMillis(times[1] - times[0]));
+                reads.add(new BufferpoolRead(entry.getKey(), begin, end));
+            }
+            ret = new Bufferpools(this, reads,
+                    current.getLastBufferpoolRefresh(), current.getLastNanos());
+        }
+        return ret;
     }
 
     /**
-     * Retrieves the map of bufferpoolReads and update the information for the
-     * next call in an asynchronous way.
+     * Retrieves the map of bufferpoolReads. The values are refreshed
+     * periodically in background; while they have not been read, each call
+     * starts a collection.
      *
      * @param dbConn
      *            Connection properties.
@@ -75,18 +278,77 @@ public final class DB2Database {
     public Bufferpools getBufferpoolsAndRefresh(
             final AbstractDatabaseConnection dbConn)
             throws UnknownValueException {
-        if (this.bufferpools == null) {
-            new Thread(new DB2BufferpoolHitRatioBroker(dbConn, this)).start();
+        return this.getBufferpoolsAndRefresh(dbConn, 0);
+    }
+
+    /**
+     * Retrieves the map of bufferpoolReads. If the values have not been read,
+     * it waits for the first read up to the given time.
+     *
+     * @param dbConn
+     *            Connection properties.
+     * @param wait
+     *            Maximum time to wait for the first values, in milliseconds.
+     *            Zero to not wait.
+     * @return Map of bufferpoolReads.
+     * @throws UnknownValueException
+     *             If the bufferpool values have not been read after waiting,
+     *             or the database is unreachable.
+     */
+    public Bufferpools getBufferpoolsAndRefresh(
+            final AbstractDatabaseConnection dbConn, final long wait)
+            throws UnknownValueException {
+        this.connection = dbConn;
+        this.lastCheck = System.currentTimeMillis();
+        this.bufferpoolsRequested = true;
+        Future<Void> refresh = null;
+        if (this.bufferpools.get() == null) {
+            // Each check retries until the first read; the concurrent checks
+            // join the refresh in process.
+            refresh = new DB2CombinedBroker(dbConn, this).refreshNow();
+        }
+        CollectionScheduler.getInstance().schedule(this);
+        this.checkCircuit();
+        if (refresh != null && wait > 0) {
+            AbstractDB2Broker.await(refresh, wait);
+        }
+        final Bufferpools ret = this.bufferpools.get();
+        if (ret == null) {
             throw new UnknownValueException(
                     "Bufferpool values have not been read");
-        } else if (!this.bufferpools.isBufferpoolListUpdated()) {
-            // Updates for the next time. The current execution returns the
-            // previous values.
-            new Thread(new DB2BufferpoolHitRatioBroker(dbConn, this)).start();
         }
         DB2Database.LOGGER.info("Bufferpool values returned taken at {}",
-                new Timestamp(this.bufferpools.getLastBufferpoolRefresh()));
-        return (Bufferpools) this.bufferpools.clone();
+                new Timestamp(ret.getLastBufferpoolRefresh()));
+        return ret;
+    }
+
+    /**
+     * Returns the circuit breaker of this database.
+     *
+     * @return Circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Returns the most recent connection properties used to access this
+     * database.
+     *
+     * @return Connection properties, or null if the database has not been
+     *         accessed.
+     */
+    public AbstractDatabaseConnection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * Returns the frequency to refresh the values of this database.
+     *
+     * @return Frequency in milliseconds.
+     */
+    public long getFrequency() {
+        return this.frequency;
     }
 
     /**
@@ -99,16 +361,69 @@ public final class DB2Database {
     }
 
     /**
-     * Retrieves the snapshot associated with this database.
+     * Returns the time of the most recent check of a plugin on this
+     * database, or the time of its creation if it has not been checked.
+     *
+     * @return Time in milliseconds.
+     */
+    public long getLastCheck() {
+        return this.lastCheck;
+    }
+
+    /**
+     * Returns the maximum time of the queries of a family for this database.
      *
-     * @return Snap of the database.
+     * @param family
+     *            Family of the query.
+     * @return Timeout in seconds.
+     */
+    public int getQueryTimeout(final MetricFamily family) {
+        int ret = this.queryTimeout;
+        if (ret <= 0) {
+            ret = family.getQueryTimeout();
+        }
+        return ret;
+    }
+
+    /**
+     * Retrieves the most recent snapshot associated with this database.
+     *
+     * @return Snap of the database, or null if it has not been read.
      */
     public DatabaseSnapshot getSnap() {
-        return this.snap;
+        return this.snap.get();
+    }
+
+    /**
+     * Returns a snapshot of the activity in a window of time, for all members.
+     * The time series keep the samples of windows up to {@link #MAX_WINDOW};
+     * the window should not be shorter than the frequency of the collection.
+     *
+     * @param window
+     *            Duration of the window in milliseconds.
+     * @return Snapshot of the window. Only the rates and the deltas are
+     *         meaningful.
+     * @throws UnknownValueException
+     *             If there are not two snapshots, or if the snapshots do not
+     *             cover the window.
+     */
+    public DatabaseSnapshot getSnapshot(final long window)
+            throws UnknownValueException {
+        final long[] begin = new long[DatabaseSnapshot.COUNTERS];
+        final long[] end = new long[DatabaseSnapshot.COUNTERS];
+        final long[] times = this.snapshotSeries.getWindow(
+                TimeUnit.MILLISECONDS.toNanos(window), begin, end);
+        this.checkWindow(window,
+                TimeUnit.NANOSECONDS.toMillis(times[1] - times[0]));
+        final DatabaseSnapshot current = this.snap.get();
+        return new DatabaseSnapshot(this, begin, end, times[0], times[1],
+                current.getLastSnapshotRefresh());
     }
 
     /**
-     * Retrieves the snapshot and refresh if necessary.
+     * Retrieves the snapshot. The values are refreshed periodically in
+     * background; while the snapshot has not been read, each call starts a
+     * collection.
      *
      * @param dbConn
      *            Connection properties.
@@ -119,37 +434,233 @@ public final class DB2Database {
     public DatabaseSnapshot getSnapshotAndRefresh(
             final AbstractDatabaseConnection dbConn)
             throws UnknownValueException {
-        if (this.snap == null) {
-            new Thread(new DB2DatabaseSnapshotBroker(dbConn, this)).start();
+        return this.getSnapshotAndRefresh(dbConn, 0);
+    }
+
+    /**
+     * Retrieves the snapshot. If the cache is cold, it waits up to the given
+     * time for the first snapshot, and then for the second one, because the
+     * rates need two snapshots.
+     *
+     * @param dbConn
+     *            Connection properties.
+     * @param wait
+     *            Maximum time to wait for the first values, in milliseconds.
+     *            Zero to not wait.
+     * @return Object that contains all values from snapshot.
+     * @throws UnknownValueException
+     *             If the values have not been read after waiting, or the
+     *             database is unreachable.
+     */
+    public DatabaseSnapshot getSnapshotAndRefresh(
+            final AbstractDatabaseConnection dbConn, final long wait)
+            throws UnknownValueException {
+        final long deadline = System.currentTimeMillis() + wait;
+        this.connection = dbConn;
+        this.lastCheck = deadline - wait;
+        this.snapshotRequested = true;
+        Future<Void> refresh = null;
+        if (this.snap.get() == null) {
+            // Each check retries until the first snapshot; the concurrent
+            // checks join the refresh in process.
+            refresh = new DB2CombinedBroker(dbConn, this).refreshNow();
+        }
+        CollectionScheduler.getInstance().schedule(this);
+        this.checkCircuit();
+        if (wait > 0) {
+            this.waitSnapshots(dbConn, refresh, deadline);
+        }
+        final DatabaseSnapshot ret = this.snap.get();
+        if (ret == null) {
             throw new UnknownValueException("First snapshot has not been read");
-        } else if (!this.snap.isSnapshotUpdated()) {
-            // Updates for the next time. The current execution returns the
-            // previous values.
-            new Thread(new DB2DatabaseSnapshotBroker(dbConn, this)).start();
         }
         DB2Database.LOGGER.info("Snapshot returned taken at {}", new Timestamp(
-                this.snap.getLastSnapshotRefresh()));
-        return this.snap.clone();
+                ret.getLastSnapshotRefresh()));
+        return ret;
+    }
+
+    /**
+     * Returns the quantity of queries that were cancelled because they
+     * exceeded the timeout.
+     *
+     * @return Quantity of timeouts.
+     */
+    public long getTimeouts() {
+        return this.timeouts.get();
     }
 
     /**
-     * Sets the object that holds the reads.
+     * Checks if the bufferpool values have been requested by a plugin, and
+     * thus they should be collected.
+     *
+     * @return True if the bufferpools have been requested.
+     */
+    public boolean isBufferpoolsRequested() {
+        return this.bufferpoolsRequested;
+    }
+
+    /**
+     * Checks if the database was evicted because it was idle. The objects
+     * that keep a reference to an evicted database should retrieve it again
+     * from the manager.
+     *
+     * @return True if the database was evicted.
+     */
+    public boolean isEvicted() {
+        return this.evicted;
+    }
+
+    /**
+     * Checks if the snapshot values have been requested by a plugin, and thus
+     * they should be collected.
+     *
+     * @return True if the snapshot has been requested.
+     */
+    public boolean isSnapshotRequested() {
+        return this.snapshotRequested;
+    }
+
+    /**
+     * Publishes the object that holds the most recent reads, and appends the
+     * reads of each bufferpool to its time series. The series of the
+     * bufferpools that do not exist anymore are removed.
      *
      * @param bps
      *            Set of reads.
      */
     public void setBufferpools(final Bufferpools bps) {
-        this.bufferpools = bps;
+        final Bufferpools previous = this.bufferpools.getAndSet(bps);
+        final Map<String, BufferpoolRead> reads = bps.getBufferpoolReads();
+        for (final BufferpoolRead read : reads.values()) {
+            CounterSeries series = this.bufferpoolSeries.get(read.getName());
+            if (series == null) {
+                series = new CounterSeries(
+                        DB2Database.getSeriesCapacity(this.frequency), 2);
+                final CounterSeries existing = this.bufferpoolSeries
+                        .putIfAbsent(read.getName(), series);
+                if (existing != null) {
+                    series = existing;
+                }
+            }
+            final long[] deltas = new long[2];
+            if (previous != null
+                    && previous.getBufferpoolReads().containsKey(
+                            read.getName())) {
+                deltas[BufferpoolRead.LOGICAL] = read.getLastLogicalReads();
+                deltas[BufferpoolRead.TOTAL] = read.getLastTotalReads();
+            }
+            series.add(bps.getLastNanos(), deltas);
+        }
+        final Iterator<String> names = this.bufferpoolSeries.keySet()
+                .iterator();
+        while (names.hasNext()) {
+            if (!reads.containsKey(names.next())) {
+                names.remove();
+            }
+        }
+    }
+
+    /**
+     * Marks the database as evicted. Its connections have been released.
+     */
+    void setEvicted() {
+        this.evicted = true;
     }
 
     /**
-     * Retrieves the snapshot associated with this database.
+     * Sets the frequency to refresh the values of this database. A high
+     * frequency (down to one second) gives more samples for the windows of
+     * the rates, but it also adds load to the database. If the frequency
+     * changes, the time series are resized to cover the largest window, and
+     * the collection is scheduled again with the new frequency.
+     *
+     * @param freq
+     *            Frequency in milliseconds. If it is lower than
+     *            {@link #MIN_FREQ}, the minimal frequency is used.
+     */
+    public void setFrequency(final long freq) {
+        final long value = Math.max(freq, DB2Database.MIN_FREQ);
+        if (value != this.frequency) {
+            this.frequency = value;
+            final int capacity = DB2Database.getSeriesCapacity(value);
+            this.snapshotSeries.resize(capacity);
+            for (final CounterSeries series : this.bufferpoolSeries.values()) {
+                series.resize(capacity);
+            }
+            CollectionScheduler.getInstance().unschedule(this);
+        }
+    }
+
+    /**
+     * Sets the maximum time of the queries of this database, for all the
+     * families.
+     *
+     * @param timeout
+     *            Timeout in seconds, or zero to use the timeout of each
+     *            family.
+     */
+    public void setQueryTimeout(final int timeout) {
+        this.queryTimeout = timeout;
+    }
+
+    /**
+     * Publishes the most recent snapshot associated with this database, and
+     * appends its deltas to the time series.
      *
      * @param snapshot
      *            Snap of the database.
      */
     public void setSnap(final DatabaseSnapshot snapshot) {
-        this.snap = snapshot;
+        this.snap.set(snapshot);
+        final long[] deltas = new long[DatabaseSnapshot.COUNTERS];
+        if (snapshot.hasPreviousSnapshot()) {
+            for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+                deltas[k] = snapshot.getLastDelta(k);
+            }
+        }
+        this.snapshotSeries.add(snapshot.getLastNanos(), deltas);
+    }
+
+    /**
+     * Waits for the first and the second snapshot, until the deadline. The
+     * second snapshot is taken at least one second after the first one, in
+     * order to have a period to calculate the rates.
+     *
+     * @param dbConn
+     *            Connection properties.
+     * @param firstRefresh
+     *            Refresh of the first snapshot if it was just started, or
+     *            null.
+     * @param deadline
+     *            Time limit to wait.
+     */
+    private void waitSnapshots(final AbstractDatabaseConnection dbConn,
+            final Future<Void> firstRefresh, final long deadline) {
+        Future<Void> refresh = firstRefresh;
+        if (this.snap.get() == null) {
+            if (refresh == null) {
+                // Joins the refresh in process, if any.
+                refresh = new DB2CombinedBroker(dbConn, this).refreshNow();
+            }
+            AbstractDB2Broker.await(refresh,
+                    deadline - System.currentTimeMillis());
+        }
+        final DatabaseSnapshot first = this.snap.get();
+        if (first != null && !first.hasPreviousSnapshot()) {
+            final long next = first.getLastSnapshotRefresh()
+                    + DB2Database.MIN_SAMPLE_INTERVAL;
+            if (next < deadline) {
+                try {
+                    Thread.sleep(Math.max(0, next - System.currentTimeMillis()));
+                    refresh = new DB2CombinedBroker(dbConn, this)
+                            .refreshNow();
+                    AbstractDB2Broker.await(refresh,
+                            deadline - System.currentTimeMillis());
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
     }
 
     /*
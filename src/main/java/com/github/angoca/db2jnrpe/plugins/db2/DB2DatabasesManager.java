@@ -1,16 +1,49 @@
 package com.github.angoca.db2jnrpe.plugins.db2;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.AbstractDB2Broker;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.CollectionScheduler;
 
 /**
  * Controls the DB2Databases. A database is a representation of the objects
  * associates to a DB2 database. Objects can be tablespaces, bufferpool, etc.
+ * <p>
+ * The manager is accessed concurrently by the plugins and by the brokers,
+ * thus the databases are kept in a concurrent map, and there is only one
+ * database per identification.
+ * <p>
+ * The databases that are not checked by any plugin during
+ * {@link #IDLE_TIMEOUT} are evicted: their collection is stopped, and their
+ * connections are closed. The timeout can be changed with the system property
+ * db2jnrpe.idle, in seconds.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
  */
 public final class DB2DatabasesManager {
+    /**
+     * Time without checks before evicting a database: 1 hour.
+     */
+    public static final long IDLE_TIMEOUT = 3600000;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(DB2DatabasesManager.class);
+    /**
+     * System property with the idle timeout in seconds.
+     */
+    public static final String PROPERTY_IDLE = "db2jnrpe.idle";
     /**
      * Singleton instance.
      */
@@ -21,7 +54,7 @@ public final class DB2DatabasesManager {
      *
      * @return Singleton.
      */
-    public static DB2DatabasesManager getInstance() {
+    public static synchronized DB2DatabasesManager getInstance() {
         if (DB2DatabasesManager.singleton == null) {
             DB2DatabasesManager.singleton = new DB2DatabasesManager();
         }
@@ -32,13 +65,27 @@ public final class DB2DatabasesManager {
      * List of db2Databases.
      */
     @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
-    private final transient Map<String, DB2Database> db2Databases;
+    private final transient ConcurrentMap<String, DB2Database> db2Databases;
 
     /**
-     * Creates the singleton.
+     * Time without checks before evicting a database, in milliseconds.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long idleTimeout;
+
+    /**
+     * Creates the singleton. The databases kept by a previous execution are
+     * restored, if any.
      */
     private DB2DatabasesManager() {
-        this.db2Databases = new HashMap<String, DB2Database>();
+        this.db2Databases = new ConcurrentHashMap<String, DB2Database>();
+        final Long idle = Long.getLong(DB2DatabasesManager.PROPERTY_IDLE);
+        if (idle == null) {
+            this.idleTimeout = DB2DatabasesManager.IDLE_TIMEOUT;
+        } else {
+            this.idleTimeout = idle * 1000;
+        }
+        SnapshotStore.getInstance().load(this.db2Databases);
     }
 
     /**
@@ -53,6 +100,62 @@ public final class DB2DatabasesManager {
         this.db2Databases.put(identification, db2Database);
     }
 
+    /**
+     * Evicts the databases that have not been checked during the idle
+     * timeout. Their periodic collection is stopped, their refresh state is
+     * forgotten, and the connections and the data sources of their URL are
+     * closed. If a plugin checks an evicted
+     * database again, it is created from scratch.
+     *
+     * @return Quantity of evicted databases.
+     */
+    public int evictIdle() {
+        int ret = 0;
+        final long limit = System.currentTimeMillis() - this.idleTimeout;
+        for (final DB2Database database : this.db2Databases.values()) {
+            if (database.getLastCheck() < limit
+                    && this.db2Databases.remove(database.getId(), database)) {
+                if (database.getLastCheck() < limit) {
+                    CollectionScheduler.getInstance().unschedule(database);
+                    AbstractDB2Broker.forget(database);
+                    database.setEvicted();
+                    DB2DatabasesManager.release(database);
+                    DB2DatabasesManager.LOGGER.info(
+                            "{}::Evicted after {} ms idle", database.getId(),
+                            this.idleTimeout);
+                    ret++;
+                } else {
+                    // Checked while it was being removed.
+                    this.db2Databases.putIfAbsent(database.getId(), database);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Removes the connection objects of an evicted database, and closes their
+     * resources in the connection pools.
+     *
+     * @param database
+     *            Evicted database.
+     */
+    private static void release(final DB2Database database) {
+        final AbstractDatabaseConnection dbConn = database.getConnection();
+        if (dbConn != null) {
+            for (final AbstractDatabaseConnection removed : DatabaseConnectionsManager
+                    .getInstance().removeDatabaseConnections(dbConn.getUrl())) {
+                try {
+                    ConnectionPoolsManager.getInstance().close(removed);
+                } catch (final DatabaseConnectionException e) {
+                    DB2DatabasesManager.LOGGER.warn(
+                            "{}::Error closing the connections",
+                            database.getId(), e);
+                }
+            }
+        }
+    }
+
     /**
      * Retrieves a database given its ID.
      *
@@ -64,6 +167,27 @@ public final class DB2DatabasesManager {
         return this.db2Databases.get(identification);
     }
 
+    /**
+     * Retrieves the database of the given ID, and it creates it if it does not
+     * exist. When several threads create the same database at the same time,
+     * all of them receive the same instance.
+     *
+     * @param identification
+     *            Id of the database.
+     * @return The only database that corresponds to the given ID.
+     */
+    public DB2Database getOrCreateDatabase(final String identification) {
+        DB2Database ret = this.db2Databases.get(identification);
+        if (ret == null) {
+            final DB2Database created = new DB2Database(identification);
+            ret = this.db2Databases.putIfAbsent(identification, created);
+            if (ret == null) {
+                ret = created;
+            }
+        }
+        return ret;
+    }
+
     /**
      * Retrieves all db2Databases.
      *
@@ -1,188 +1,407 @@
 package com.github.angoca.db2jnrpe.plugins.db2;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Contains the values of a snapshot. This is used for the database load.
+ * Contains the values of a snapshot. This is used for the database load. A
+ * snapshot is immutable: each collection creates a new snapshot from the
+ * previous one, and publishes it in the database; thus, the readers share the
+ * same object without copying it.
+ * <p>
+ * The counters are kept per member (or database partition), in a flat array
+ * with {@link #COUNTERS} values per member. The deltas are calculated per
+ * member, against the same member of the previous snapshot, and the metrics
+ * are offered per member and for the whole database (sum of the members).
+ * The counters, their units and their restart groups are declared by
+ * {@link SnapshotColumn}; thus, the deltas and the rates are generic.
+ * <p>
+ * The interval between two snapshots is measured with a monotonic clock
+ * ({@link System#nanoTime()}), thus the rates are not affected by changes of
+ * the wall clock, and they are calculated in floating point, thus the rates of
+ * short intervals (one second) are exact. The wall-clock time is kept to
+ * report when the values were taken.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-24
  */
-@SuppressWarnings({ "PMD.CommentSize", "PMD.TooManyFields" })
-public final class DatabaseSnapshot implements Cloneable {
+@SuppressWarnings({ "PMD.CommentSize", "PMD.TooManyMethods" })
+public final class DatabaseSnapshot {
 
     /**
-     * Logger.
+     * Position of the activation time in the counters of a member. When it
+     * changes, all the counters of the member were reset.
      */
-    private static final Logger LOGGER = LoggerFactory
-            .getLogger(DatabaseSnapshot.class);
+    public static final int ACTIVATION = SnapshotColumn.ACTIVATION.ordinal();
     /**
-     * Milliseconds.
+     * Position of the bufferpool data physical reads in the counters of a
+     * member.
      */
-    private static final int MILLISECONDS = 1000;
+    public static final int BP_DATA = SnapshotColumn.BP_DATA.ordinal();
     /**
-     * Snapshot frequency to read the corresponding values : 10 minutes.
+     * Position of the bufferpool index physical reads in the counters of a
+     * member.
      */
-    public static final long SNAPSHOT_FREQ = DB2Database.STANDARD_FREQ;
+    public static final int BP_INDEX = SnapshotColumn.BP_INDEX.ordinal();
     /**
-     * Bufferpool data physical reads.
+     * Position of the bufferpool temporal data physical reads in the counters
+     * of a member.
      */
-    private transient long bpData;
+    public static final int BP_TEMP_DATA = SnapshotColumn.BP_TEMP_DATA
+            .ordinal();
     /**
-     * Bufferpool index physical reads.
+     * Position of the bufferpool temporal index physical reads in the counters
+     * of a member.
      */
-    private transient long bpIndex;
+    public static final int BP_TEMP_INDEX = SnapshotColumn.BP_TEMP_INDEX
+            .ordinal();
     /**
-     * Bufferpool temporal data physical reads.
-     *
+     * Position of the quantity of commits in the counters of a member.
      */
-    private transient long bpTempData;
+    public static final int COMMITS = SnapshotColumn.COMMITS.ordinal();
     /**
-     * Bufferpool temporal index physical reads.
+     * Quantity of counters per member: one per column of the snapshot.
      */
-    private transient long bpTempIndex;
+    public static final int COUNTERS = SnapshotColumn.values().length;
     /**
-     * Quantity of commits in the database.
+     * Group of each counter, taken from the descriptors of the columns. When
+     * a counter of a group decreases, the database was recycled, and all the
+     * counters of the group do not have a previous value. It is -1 for the
+     * start time, that is not reset.
      */
-    private transient long commitSQLstmts;
+    private static final int[] GROUPS = DatabaseSnapshot.getGroups();
     /**
-     * Database that keeps all data.
+     * Quantity of groups of counters.
      */
-    private final transient DB2Database database;
+    private static final int GROUPS_QTY = DatabaseSnapshot
+            .getGroupsQuantity();
     /**
-     * Partition number.
+     * Logger.
      */
-    private transient int dbPartNum;
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(DatabaseSnapshot.class);
     /**
-     * Time of the last snapshot.
+     * Milliseconds in a second.
      */
-    private transient long lastSnapshot;
-
+    private static final double MILLISECONDS = 1000.0;
     /**
-     * Previous bufferpool data physical reads.
+     * Nanoseconds in a second.
      */
-    private transient long prevBpData;
+    private static final double NANOSECONDS = 1000000000.0;
     /**
-     * Previous bufferpool index physical reads.
+     * Position of the quantity of selects in the counters of a member.
      */
-    private transient long prevBpIndex;
+    public static final int SELECTS = SnapshotColumn.SELECTS.ordinal();
     /**
-     * Previous bufferpool temporal index physical reads.
+     * Snapshot frequency to read the corresponding values : 10 minutes.
      */
-    private transient long prevBpTempData;
+    public static final long SNAPSHOT_FREQ = DB2Database.STANDARD_FREQ;
     /**
-     * Previous bufferpool temporal index physical reads.
+     * Position of the total sort time in the counters of a member, in
+     * milliseconds.
      */
-    private transient long prevBpTempIndex;
+    public static final int SORT_TIME = SnapshotColumn.SORT_TIME.ordinal();
     /**
-     * Previous read of the quantity of commits in the database.
+     * Position of the quantity of sorts in the counters of a member.
      */
-    private transient long prevComSQLstmts;
+    public static final int SORTS = SnapshotColumn.SORTS.ordinal();
     /**
-     * Previous read of the quantity of selects in the database.
+     * Position of the quantity of modifications in the counters of a member.
      */
-    private transient long prevSelSQLstmts;
+    public static final int UIDS = SnapshotColumn.UIDS.ordinal();
+
+    /**
+     * Returns the group of each counter, from the descriptors of the columns.
+     *
+     * @return Group per counter, or -1 for the start time.
+     */
+    private static int[] getGroups() {
+        final SnapshotColumn[] columns = SnapshotColumn.values();
+        final int[] ret = new int[columns.length];
+        for (int k = 0; k < columns.length; k++) {
+            if (columns[k].getKind() == SnapshotColumn.Kind.COUNTER) {
+                ret[k] = columns[k].getGroup();
+            } else {
+                ret[k] = -1;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the quantity of groups of counters.
+     *
+     * @return Highest group plus one.
+     */
+    private static int getGroupsQuantity() {
+        int ret = 0;
+        for (final SnapshotColumn column : SnapshotColumn.values()) {
+            ret = Math.max(ret, column.getGroup() + 1);
+        }
+        return ret;
+    }
+
+    /**
+     * Divides two deltas.
+     *
+     * @param dividend
+     *            Dividend.
+     * @param divisor
+     *            Divisor.
+     * @return Ratio, or zero if the divisor is zero.
+     */
+    private static double ratio(final double dividend, final long divisor) {
+        double ret = 0;
+        if (divisor != 0) {
+            ret = (double) dividend / (double) divisor;
+        }
+        // Database was recycled.
+        if (ret < 0) {
+            ret = 0;
+        }
+        return ret;
+    }
+
     /**
-     * Time when the previous snapshot was taken. This is used the first time
-     * the script is executed in order to not return the values since the
-     * database was activated, and also used to get the quantity of seconds
-     * between calls in order to retrieve the mean.
+     * Database that keeps all data.
      */
-    private transient long prevSnapshot;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient DB2Database database;
     /**
-     * Previous read of the quantity of modifications in the database (update,
-     * insert, delete).
+     * Time of the last snapshot.
      */
-    private transient long prevUidSQLstmts;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long lastSnapshot;
     /**
-     * Quantity of selects in the database.
+     * Monotonic time of the last snapshot, in nanoseconds.
      */
-    private transient long selectSQLstmts;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long lastNanos;
     /**
-     * Quantity of modifications in the database.
+     * Number of each member (or database partition).
      */
-    private transient long uidSQLstmts;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient int[] members;
     /**
-     * Quantity of time passed doing sorts.
+     * Previous values of the counters, per member. It is zero when the
+     * database was recycled, and it is the current value when the member did
+     * not exist in the previous snapshot.
      */
-    private long totalSortTimeSecs;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long[] previous;
     /**
-     * Previous value of totalSortTimeSecs.
+     * Monotonic time of the previous snapshot, in nanoseconds.
      */
-    private long prevTotalSortTime;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long prevNanos;
     /**
-     * Quantity of sorts.
+     * Time of the previous snapshot. Zero if there is not a previous snapshot.
      */
-    private long totalSorts;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long prevSnapshot;
     /**
-     * Previous value of total sorts.
+     * Values of the counters, per member.
      */
-    private long prevTotalSorts;
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient long[] values;
 
     /**
-     * Creates a snapshot with the retrieved values from the table.
+     * Creates a snapshot with the retrieved values from the table. The
+     * previous values are taken from the same member of the previous
+     * snapshot, in order to have a comparison point. If a value is lower than
+     * the previous one, the database was recycled between two checks, and the
+     * previous value is zero.
      *
      * @param dataBase
      *            Object that holds all data.
-     * @param partitionnum
-     *            Database partition number.
-     * @param selectSQL
-     *            Quantity of selects.
-     * @param uidSQL
-     *            Quantity of modifications (update, insert, delete).
-     * @param bpdata
-     *            Quantity of bufferpool data physical reads.
-     * @param bpindex
-     *            Quantity of bufferpool index physical reads.
-     * @param bptempdata
-     *            Quantity of bufferpool temporal data physical reads.
-     * @param bptempindex
-     *            Quantity of bufferpool temporal index physical reads.
-     */
-    public DatabaseSnapshot(final DB2Database dataBase, final int partitionnum,
-            final long selectSQL, final long uidSQL, final long bpdata,
-            final long bpindex, final long bptempdata, final long bptempindex) {
+     * @param prev
+     *            Previous snapshot of the database, or null if this is the
+     *            first one.
+     * @param memberNums
+     *            Number of the member of each row.
+     * @param counters
+     *            Values of each row, {@link #COUNTERS} per row. The sort time
+     *            is in milliseconds.
+     * @param rows
+     *            Quantity of rows in the arrays.
+     * @param time
+     *            Time when the values were retrieved.
+     * @param nanos
+     *            Monotonic time when the values were retrieved, from
+     *            {@link System#nanoTime()}.
+     */
+    public DatabaseSnapshot(final DB2Database dataBase,
+            final DatabaseSnapshot prev, final int[] memberNums,
+            final long[] counters, final int rows, final long time,
+            final long nanos) {
         this.database = dataBase;
-        this.dbPartNum = partitionnum;
-        this.selectSQLstmts = selectSQL;
-        this.uidSQLstmts = uidSQL;
-        this.bpData = bpdata;
-        this.bpIndex = bpindex;
-        this.bpTempData = bptempdata;
-        this.bpTempIndex = bptempindex;
+        this.members = Arrays.copyOf(memberNums, rows);
+        this.values = Arrays.copyOf(counters, rows * DatabaseSnapshot.COUNTERS);
+        this.previous = new long[this.values.length];
+        this.lastSnapshot = time;
+        this.lastNanos = nanos;
+        if (prev == null) {
+            this.prevSnapshot = 0;
+            this.prevNanos = nanos;
+        } else {
+            final boolean[] recycled = new boolean[DatabaseSnapshot.GROUPS_QTY];
+            for (int i = 0; i < rows; i++) {
+                final int offset = i * DatabaseSnapshot.COUNTERS;
+                final int index = prev.getMemberIndex(this.members[i], i);
+                if (index < 0) {
+                    // New member: there is not a comparison point.
+                    System.arraycopy(this.values, offset, this.previous,
+                            offset, DatabaseSnapshot.COUNTERS);
+                } else {
+                    final int prevOffset = index * DatabaseSnapshot.COUNTERS;
+                    // A new activation resets all the counters.
+                    Arrays.fill(recycled, this.values[offset
+                            + DatabaseSnapshot.ACTIVATION] != prev.values[prevOffset
+                            + DatabaseSnapshot.ACTIVATION]);
+                    for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+                        if (DatabaseSnapshot.GROUPS[k] >= 0
+                                && this.values[offset + k] < prev.values[prevOffset
+                                        + k]) {
+                            // The database was recycled between two checks.
+                            recycled[DatabaseSnapshot.GROUPS[k]] = true;
+                        }
+                    }
+                    for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+                        if (DatabaseSnapshot.GROUPS[k] < 0
+                                || !recycled[DatabaseSnapshot.GROUPS[k]]) {
+                            this.previous[offset + k] = prev.values[prevOffset
+                                    + k];
+                        }
+                    }
+                }
+            }
+            this.prevSnapshot = prev.lastSnapshot;
+            this.prevNanos = prev.lastNanos;
+        }
+        if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
+            DatabaseSnapshot.LOGGER.debug("New:{};Old:{}",
+                    Arrays.toString(this.values),
+                    Arrays.toString(this.previous));
+        }
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see java.lang.Object#clone()
-     */
-    @Override
-    @SuppressWarnings({ "PMD.CommentRequired", "PMD.ProperCloneImplementation" })
-    public DatabaseSnapshot clone() {
-        final DatabaseSnapshot copy = new DatabaseSnapshot(this.database,
-                this.dbPartNum, this.selectSQLstmts, this.uidSQLstmts,
-                this.bpData, this.bpIndex, this.bpTempData, this.bpTempIndex);
-        copy.prevComSQLstmts = this.prevComSQLstmts;
-        copy.prevSelSQLstmts = this.prevSelSQLstmts;
-        copy.prevUidSQLstmts = this.prevUidSQLstmts;
-        copy.lastSnapshot = this.lastSnapshot;
-        copy.prevSnapshot = this.prevSnapshot;
-        copy.prevBpData = this.prevBpData;
-        copy.prevBpIndex = this.prevBpIndex;
-        copy.prevBpTempData = this.prevBpTempData;
-        copy.prevBpTempIndex = this.prevBpTempIndex;
+    /**
+     * Creates a snapshot with values that were kept by a previous execution.
+     * The values are as they were retrieved, and there is not a previous
+     * snapshot; thus, this snapshot is the baseline of the next one.
+     *
+     * @param dataBase
+     *            Object that holds all data.
+     * @param memberNums
+     *            Number of each member.
+     * @param counters
+     *            Values of each member, {@link #COUNTERS} per member.
+     * @param time
+     *            Time when the values were retrieved.
+     * @param nanos
+     *            Monotonic time equivalent to the given time.
+     */
+    DatabaseSnapshot(final DB2Database dataBase, final int[] memberNums,
+            final long[] counters, final long time, final long nanos) {
+        this.database = dataBase;
+        this.members = memberNums.clone();
+        this.values = counters.clone();
+        this.previous = counters.clone();
+        this.lastSnapshot = time;
+        this.lastNanos = nanos;
+        this.prevSnapshot = 0;
+        this.prevNanos = nanos;
+    }
 
-        copy.commitSQLstmts = this.commitSQLstmts;
-        copy.prevComSQLstmts = this.prevComSQLstmts;
+    /**
+     * Creates a snapshot of the activity in a window of time, for the whole
+     * database. The values are accumulated deltas of a time series, thus the
+     * metrics are calculated between the beginning and the end of the window.
+     *
+     * @param dataBase
+     *            Object that holds all data.
+     * @param begin
+     *            Accumulated values at the beginning of the window.
+     * @param end
+     *            Accumulated values at the end of the window.
+     * @param beginNanos
+     *            Monotonic time of the beginning of the window.
+     * @param endNanos
+     *            Monotonic time of the end of the window.
+     * @param time
+     *            Time of the end of the window.
+     */
+    DatabaseSnapshot(final DB2Database dataBase, final long[] begin,
+            final long[] end, final long beginNanos, final long endNanos,
+            final long time) {
+        this.database = dataBase;
+        this.members = new int[] { BufferpoolRead.ALL_MEMBERS };
+        this.values = end.clone();
+        this.previous = begin.clone();
+        this.lastSnapshot = time;
+        this.lastNanos = endNanos;
+        this.prevSnapshot = time
+                - TimeUnit.NANOSECONDS.toMillis(endNanos - beginNanos);
+        this.prevNanos = beginNanos;
+    }
 
-        copy.totalSorts = this.totalSorts;
-        copy.prevTotalSorts = this.prevTotalSorts;
+    /**
+     * Returns the difference of a counter between the last two checks, for
+     * the whole database.
+     *
+     * @param counter
+     *            Position of the counter.
+     * @return Sum of the deltas of all members.
+     */
+    private long delta(final int counter) {
+        long ret = 0;
+        for (int i = 0; i < this.members.length; i++) {
+            ret += this.delta(i, counter);
+        }
+        return ret;
+    }
 
-        copy.totalSortTimeSecs = this.totalSortTimeSecs;
-        copy.prevTotalSortTime = this.prevTotalSortTime;
-        return copy;
+    /**
+     * Returns the difference of a counter between the last two checks, for a
+     * member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @param counter
+     *            Position of the counter.
+     * @return Delta of the member.
+     */
+    private long delta(final int index, final int counter) {
+        final int pos = index * DatabaseSnapshot.COUNTERS + counter;
+        return this.values[pos] - this.previous[pos];
+    }
+
+    /**
+     * Returns the value of a counter of a member, as it was retrieved.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @param counter
+     *            Position of the counter.
+     * @return Value of the counter.
+     */
+    long getValue(final int index, final int counter) {
+        return this.values[index * DatabaseSnapshot.COUNTERS + counter];
+    }
+
+    /**
+     * Returns the difference of a counter between the last two checks, for
+     * the whole database. The sort time is in milliseconds.
+     *
+     * @param counter
+     *            Position of the counter.
+     * @return Sum of the deltas of all members.
+     */
+    public long getLastDelta(final int counter) {
+        return this.delta(counter);
     }
 
     /**
@@ -191,35 +410,62 @@ public final class DatabaseSnapshot implements Cloneable {
      * @return Quantity of commits in the database.
      */
     public long getCommits() {
-        return this.commitSQLstmts;
+        return this.sum(DatabaseSnapshot.COMMITS);
+    }
+
+    /**
+     * Retrieves the quantity of commits of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of commits in the member.
+     */
+    public long getCommits(final int index) {
+        return this.values[index * DatabaseSnapshot.COUNTERS
+                + DatabaseSnapshot.COMMITS];
     }
 
     /**
      * Returns the average of sort time between the last two checks.
-     * 
+     *
      * @return Average of sort time.
      */
     public double getLastAverageSortTime() {
-        double ret = 0;
-        final long dividend = this.getLastTotalSortTimeSecs();
-        final long divisor = this.getLastTotalSorts();
-        if (divisor != 0) {
-            ret = (double) dividend / (double) divisor;
-        }
-        // Database was recycled.
-        if (ret < 0) {
-            ret = 0;
-        }
-        return ret;
+        return DatabaseSnapshot.ratio(this.getLastTotalSortTimeSecs(),
+                this.getLastTotalSorts());
+    }
+
+    /**
+     * Returns the average of sort time between the last two checks, for a
+     * member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Average of sort time.
+     */
+    public double getLastAverageSortTime(final int index) {
+        return DatabaseSnapshot.ratio(this.getLastTotalSortTimeSecs(index),
+                this.getLastTotalSorts(index));
     }
 
     /**
      * Returns the last difference of commits.
-     * 
+     *
      * @return Quantity of commits between the last two checks.
      */
     public long getLastCommits() {
-        return this.commitSQLstmts - this.prevComSQLstmts;
+        return this.delta(DatabaseSnapshot.COMMITS);
+    }
+
+    /**
+     * Returns the last difference of commits of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of commits between the last two checks.
+     */
+    public long getLastCommits(final int index) {
+        return this.delta(index, DatabaseSnapshot.COMMITS);
     }
 
     /**
@@ -231,91 +477,106 @@ public final class DatabaseSnapshot implements Cloneable {
      *             values in order to compare.
      */
     public double getLastCommitRate() throws UnknownValueException {
-        if (this.prevSnapshot == 0) {
-            throw new UnknownValueException("Second snapshot has not been read");
-        }
-        double ret = 0;
-        long secs = this.getLastSeconds();
-        if (secs != 0) {
-            ret = (double) this.getLastCommits() / secs;
-        }
-        // Database was recycled.
-        if (ret < 0) {
-            ret = 0;
-        }
-        return ret;
+        return this.rate(this.getLastCommits());
+    }
+
+    /**
+     * Returns the delta of the last commits of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of commits between the last two calls.
+     * @throws UnknownValueException
+     *             There is not a comparison value, the plugin should have two
+     *             values in order to compare.
+     */
+    public double getLastCommitRate(final int index)
+            throws UnknownValueException {
+        return this.rate(this.getLastCommits(index));
     }
 
     /**
      * Quantity of generated IO in the last two checks.
-     * 
+     *
      * @return Quantity of IO in the last two checks.
      */
     public long getLastIO() {
-        long ret = this.bpData - this.prevBpData + this.bpIndex
-                - this.prevBpIndex + this.bpTempData - this.prevBpTempData
-                + this.bpTempIndex - this.prevBpTempIndex;
-        return ret;
+        return this.delta(DatabaseSnapshot.BP_DATA)
+                + this.delta(DatabaseSnapshot.BP_INDEX)
+                + this.delta(DatabaseSnapshot.BP_TEMP_DATA)
+                + this.delta(DatabaseSnapshot.BP_TEMP_INDEX);
     }
 
     /**
-     * Returns the quantity of sorts between the last two checks.
-     * 
-     * @return Delta of quantity of sorts.
+     * Quantity of generated IO in the last two checks, for a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of IO in the last two checks.
      */
-    public long getLastTotalSorts() {
-        long ret = this.totalSorts - this.prevTotalSorts;
-        return ret;
+    public long getLastIO(final int index) {
+        return this.delta(index, DatabaseSnapshot.BP_DATA)
+                + this.delta(index, DatabaseSnapshot.BP_INDEX)
+                + this.delta(index, DatabaseSnapshot.BP_TEMP_DATA)
+                + this.delta(index, DatabaseSnapshot.BP_TEMP_INDEX);
     }
 
     /**
-     * Returns the quantity of time expended doing sorts between the last two
-     * checks.
-     * 
-     * @return Delta of time expended doing sorts.
+     * Returns the average physical I/O activity per committed transaction.
+     *
+     * @return Quantity or read and writes per transaction.
      */
-    public long getLastTotalSortTimeSecs() {
-        long ret = this.totalSortTimeSecs - this.prevTotalSortTime;
+    public double getLastQuantityReadsWritesPerTransaction() {
+        final double ret = DatabaseSnapshot.ratio(this.getLastIO(),
+                this.getLastCommits());
+        if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
+            DatabaseSnapshot.LOGGER.debug("Ratio {}/{}={} at {}",
+                    new Object[] { this.getLastIO(), this.getLastCommits(),
+                            ret, this.database.getId() });
+        }
         return ret;
     }
 
     /**
-     * Returns the average physical I/O activity per committed transaction.
+     * Returns the average physical I/O activity per committed transaction, for
+     * a member.
      *
+     * @param index
+     *            Index of the member in this snapshot.
      * @return Quantity or read and writes per transaction.
      */
-    public double getLastQuantityReadsWritesPerTransaction() {
-        double ret = 0;
-        final long dividend = this.getLastIO();
-        final long divisor = this.getLastCommits();
-        if (divisor != 0) {
-            ret = (double) dividend / (double) divisor;
+    public double getLastQuantityReadsWritesPerTransaction(final int index) {
+        return DatabaseSnapshot.ratio(this.getLastIO(index),
+                this.getLastCommits(index));
+    }
 
-            if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
-                DatabaseSnapshot.LOGGER.debug("Values {}-{}+{}-{}+{}-{}+{}-{}",
-                        new Object[] { this.bpData, this.prevBpData,
-                                this.bpIndex, this.prevBpIndex,
-                                this.bpTempData, this.prevBpTempData,
-                                this.bpTempIndex, this.prevBpTempIndex });
-                DatabaseSnapshot.LOGGER.debug(
-                        "Ratio {}/{}={} at {}",
-                        new Object[] { dividend, divisor, ret,
-                                this.database.getId() });
-            }
-        }
-        if (ret < 0) {
-            ret = 0;
-        }
-        return ret;
+    /**
+     * Retrieves the interval between the last two calls, measured with the
+     * monotonic clock.
+     *
+     * @return Seconds between the most recent calls, with fraction.
+     */
+    public double getLastInterval() {
+        return (this.lastNanos - this.prevNanos) / DatabaseSnapshot.NANOSECONDS;
+    }
+
+    /**
+     * Retrieves the monotonic time of the last snapshot.
+     *
+     * @return Time in nanoseconds, from {@link System#nanoTime()}.
+     */
+    public long getLastNanos() {
+        return this.lastNanos;
     }
 
     /**
      * Retrieves the quantity of seconds between the last two calls.
      *
-     * @return Quantity of seconds between the most recent calls.
+     * @return Quantity of seconds between the most recent calls, with
+     *         milliseconds.
      */
-    public long getLastSeconds() {
-        return (this.lastSnapshot - this.prevSnapshot)
+    public double getLastSeconds() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastNanos - this.prevNanos)
                 / DatabaseSnapshot.MILLISECONDS;
     }
 
@@ -328,19 +589,22 @@ public final class DatabaseSnapshot implements Cloneable {
      *             values in order to compare.
      */
     public double getLastSelectRate() throws UnknownValueException {
-        if (this.prevSnapshot == 0) {
-            throw new UnknownValueException("Second snapshot has not been read");
-        }
-        double ret = 0;
-        long secs = this.getLastSeconds();
-        if (secs != 0) {
-            ret = (this.selectSQLstmts - this.prevSelSQLstmts) / secs;
-        }
-        // Database was recycled.
-        if (ret < 0) {
-            ret = 0;
-        }
-        return ret;
+        return this.rate(this.delta(DatabaseSnapshot.SELECTS));
+    }
+
+    /**
+     * Returns the delta of the last selects of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of selects between the last two calls.
+     * @throws UnknownValueException
+     *             There is not a comparison value, the plugin should have two
+     *             values in order to compare.
+     */
+    public double getLastSelectRate(final int index)
+            throws UnknownValueException {
+        return this.rate(this.delta(index, DatabaseSnapshot.SELECTS));
     }
 
     /**
@@ -354,21 +618,69 @@ public final class DatabaseSnapshot implements Cloneable {
 
     /**
      * Returns the time used for sorts per transaction.
-     * 
+     *
      * @return Time used for sorts per transaction between the last two checks.
      */
     public double getLastSortTimePerTransaction() {
-        double ret = 0;
-        final long dividend = this.getLastTotalSortTimeSecs();
-        final long divisor = this.getLastCommits();
-        if (divisor != 0) {
-            ret = (double) dividend / (double) divisor;
-        }
-        // Database was recycled.
-        if (ret < 0) {
-            ret = 0;
-        }
-        return ret;
+        return DatabaseSnapshot.ratio(this.getLastTotalSortTimeSecs(),
+                this.getLastCommits());
+    }
+
+    /**
+     * Returns the time used for sorts per transaction, for a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Time used for sorts per transaction between the last two checks.
+     */
+    public double getLastSortTimePerTransaction(final int index) {
+        return DatabaseSnapshot.ratio(this.getLastTotalSortTimeSecs(index),
+                this.getLastCommits(index));
+    }
+
+    /**
+     * Returns the quantity of sorts between the last two checks.
+     *
+     * @return Delta of quantity of sorts.
+     */
+    public long getLastTotalSorts() {
+        return this.delta(DatabaseSnapshot.SORTS);
+    }
+
+    /**
+     * Returns the quantity of sorts between the last two checks, for a
+     * member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Delta of quantity of sorts.
+     */
+    public long getLastTotalSorts(final int index) {
+        return this.delta(index, DatabaseSnapshot.SORTS);
+    }
+
+    /**
+     * Returns the quantity of time expended doing sorts between the last two
+     * checks. The delta is taken in milliseconds, and then converted.
+     *
+     * @return Delta of time expended doing sorts, in seconds.
+     */
+    public double getLastTotalSortTimeSecs() {
+        return this.delta(DatabaseSnapshot.SORT_TIME)
+                / DatabaseSnapshot.MILLISECONDS;
+    }
+
+    /**
+     * Returns the quantity of time expended doing sorts between the last two
+     * checks, for a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Delta of time expended doing sorts, in seconds.
+     */
+    public double getLastTotalSortTimeSecs(final int index) {
+        return this.delta(index, DatabaseSnapshot.SORT_TIME)
+                / DatabaseSnapshot.MILLISECONDS;
     }
 
     /**
@@ -380,17 +692,79 @@ public final class DatabaseSnapshot implements Cloneable {
      *             values in order to compare.
      */
     public double getLastUIDRate() throws UnknownValueException {
-        if (this.prevSnapshot == 0) {
-            throw new UnknownValueException("Second snapshot has not been read");
-        }
-        double ret = 0;
-        long secs = this.getLastSeconds();
-        if (secs != 0) {
-            ret = (this.uidSQLstmts - this.prevUidSQLstmts) / secs;
-        }
-        // Database was recycled.
-        if (ret < 0) {
-            ret = 0;
+        return this.rate(this.delta(DatabaseSnapshot.UIDS));
+    }
+
+    /**
+     * Retrieves the delta of the last modifications of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Quantity of UIDs between the last two calls.
+     * @throws UnknownValueException
+     *             There is not a comparison value, the plugin should have two
+     *             values in order to compare.
+     */
+    public double getLastUIDRate(final int index)
+            throws UnknownValueException {
+        return this.rate(this.delta(index, DatabaseSnapshot.UIDS));
+    }
+
+    /**
+     * Returns the number of a member.
+     *
+     * @param index
+     *            Index of the member in this snapshot.
+     * @return Number of the member (or database partition).
+     */
+    public int getMember(final int index) {
+        return this.members[index];
+    }
+
+    /**
+     * Returns the quantity of members (or database partitions) in this
+     * snapshot.
+     *
+     * @return Quantity of members.
+     */
+    public int getMemberCount() {
+        return this.members.length;
+    }
+
+    /**
+     * Returns the index of a member in this snapshot.
+     *
+     * @param member
+     *            Number of the member.
+     * @return Index of the member, or -1 if the member is not in this
+     *         snapshot.
+     */
+    public int getMemberIndex(final int member) {
+        return this.getMemberIndex(member, 0);
+    }
+
+    /**
+     * Returns the index of a member in this snapshot, starting at the probable
+     * index. The members are usually returned in the same order, thus the
+     * probable index is the index in the other snapshot.
+     *
+     * @param member
+     *            Number of the member.
+     * @param hint
+     *            Probable index.
+     * @return Index of the member, or -1 if the member is not in this
+     *         snapshot.
+     */
+    private int getMemberIndex(final int member, final int hint) {
+        int ret = -1;
+        if (hint < this.members.length && this.members[hint] == member) {
+            ret = hint;
+        } else {
+            for (int i = 0; i < this.members.length && ret < 0; i++) {
+                if (this.members[i] == member) {
+                    ret = i;
+                }
+            }
         }
         return ret;
     }
@@ -401,25 +775,26 @@ public final class DatabaseSnapshot implements Cloneable {
      * @return Quantity of selects in the database.
      */
     public long getSelects() {
-        return this.selectSQLstmts;
+        return this.sum(DatabaseSnapshot.SELECTS);
     }
 
     /**
      * Returns the value of the total sorts.
-     * 
+     *
      * @return Total sorts.
      */
     public long getTotalSorts() {
-        return this.totalSorts;
+        return this.sum(DatabaseSnapshot.SORTS);
     }
 
     /**
      * Returns the total quantity of seconds used for sort time.
-     * 
+     *
      * @return Total time for sorts.
      */
-    public long getTotalSortTimeSec() {
-        return this.totalSortTimeSecs;
+    public double getTotalSortTimeSec() {
+        return this.sum(DatabaseSnapshot.SORT_TIME)
+                / DatabaseSnapshot.MILLISECONDS;
     }
 
     /**
@@ -428,7 +803,17 @@ public final class DatabaseSnapshot implements Cloneable {
      * @return UIDs in the database.
      */
     public long getUIDs() {
-        return this.uidSQLstmts;
+        return this.sum(DatabaseSnapshot.UIDS);
+    }
+
+    /**
+     * Checks if there are two snapshots, in order to calculate the rates
+     * between them.
+     *
+     * @return True if the previous values have been read.
+     */
+    public boolean hasPreviousSnapshot() {
+        return this.prevSnapshot != 0;
     }
 
     /**
@@ -449,120 +834,43 @@ public final class DatabaseSnapshot implements Cloneable {
     }
 
     /**
-     * Assign the bufferpool values to the snapshot, keeping old values to have
-     * a comparison point.
-     *
-     * @param bpdata
-     *            Quantity of bufferpool data physical reads.
-     * @param bpindex
-     *            Quantity of bufferpool index physical reads.
-     * @param bptempdata
-     *            Quantity of bufferpool temporal data physical reads.
-     * @param bptempindex
-     *            Quantity of bufferpool temporal index physical reads.
-     */
-    private void setBpValues(final long bpdata, final long bpindex,
-            final long bptempdata, final long bptempindex) {
-        if (bpdata < this.bpData || bpindex < this.bpIndex
-                || bptempdata < this.bpTempData
-                || bptempindex < this.bpTempIndex) {
-            // The database was recycled between two checks.
-            this.prevBpData = 0;
-            this.prevBpIndex = 0;
-            this.prevBpTempData = 0;
-            this.prevBpTempIndex = 0;
-        } else {
-            this.prevBpData = this.bpData;
-            this.prevBpIndex = this.bpIndex;
-            this.prevBpTempData = this.bpTempData;
-            this.prevBpTempIndex = this.bpTempIndex;
+     * Divides a delta by the seconds between the last two checks.
+     *
+     * @param delta
+     *            Difference of a counter.
+     * @return Rate per second.
+     * @throws UnknownValueException
+     *             There is not a comparison value.
+     */
+    private double rate(final long delta) throws UnknownValueException {
+        if (this.prevSnapshot == 0) {
+            throw new UnknownValueException("Second snapshot has not been read");
         }
-        this.bpData = bpdata;
-        this.bpIndex = bpindex;
-        this.bpTempData = bptempdata;
-        this.bpTempIndex = bptempindex;
-        if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
-            DatabaseSnapshot.LOGGER.debug("New:{},{},{},{};Old:{},{},{},{}",
-                    new Object[] { this.bpData, this.bpIndex, this.bpTempData,
-                            this.bpTempIndex, this.prevBpData,
-                            this.prevBpIndex, this.prevBpTempData,
-                            this.prevBpTempIndex });
+        double ret = 0;
+        final double secs = this.getLastInterval();
+        if (secs > 0) {
+            ret = delta / secs;
         }
-    }
-
-    /**
-     * Sets the quantity of commits.
-     * 
-     * @param commitSQL
-     *            Quantity of commits.
-     */
-    public void setCommits(final long commitSQL) {
-        if (commitSQL < this.commitSQLstmts) {
-            // The database was recycled between two checks.
-            this.prevComSQLstmts = 0;
-        } else {
-            this.prevComSQLstmts = this.commitSQLstmts;
+        // Database was recycled.
+        if (ret < 0) {
+            ret = 0;
         }
-        this.commitSQLstmts = commitSQL;
-    }
-
-    /**
-     * Changes the partition number.
-     *
-     * @param partitionnum
-     *            Number of the partition.
-     */
-    private void setDbPartitionNum(final int partitionnum) {
-        this.dbPartNum = partitionnum;
+        return ret;
     }
 
     /**
-     * Sets the values for the of the database load.
+     * Returns the sum of a counter for all members.
      *
-     * @param selectSQL
-     *            Quantity of selects.
-     * @param uidSQL
-     *            Quantity of modifications. A modification can be an update,
-     *            insert or delete.
-     */
-    private void setStmts(final long selectSQL, final long uidSQL) {
-        if (selectSQL < this.selectSQLstmts || uidSQL < this.uidSQLstmts) {
-            // The database was recycled between two checks.
-            this.prevSelSQLstmts = 0;
-            this.prevUidSQLstmts = 0;
-        } else {
-            this.prevSelSQLstmts = this.selectSQLstmts;
-            this.prevUidSQLstmts = this.uidSQLstmts;
+     * @param counter
+     *            Position of the counter.
+     * @return Value for the whole database.
+     */
+    private long sum(final int counter) {
+        long ret = 0;
+        for (int i = 0; i < this.members.length; i++) {
+            ret += this.values[i * DatabaseSnapshot.COUNTERS + counter];
         }
-        this.selectSQLstmts = selectSQL;
-        this.uidSQLstmts = uidSQL;
-
-    }
-
-    /**
-     * Establishes all values.
-     *
-     * @param partition
-     *            Partition number of the database.
-     * @param selectSQL
-     *            Quantity of selects.
-     * @param uidSQL
-     *            Quantity of UID.
-     * @param bpdata
-     *            Quantity of bufferpool data physical reads.
-     * @param bpindex
-     *            Quantity of bufferpool index physical reads.
-     * @param bptempdata
-     *            Quantity of bufferpool temporal data physical reads.
-     * @param bptempindex
-     *            Quantity of bufferpool temporal index physical reads.
-     */
-    public void setValues(final int partition, final long selectSQL,
-            final long uidSQL, final long bpdata, final long bpindex,
-            final long bptempdata, final long bptempindex) {
-        this.setDbPartitionNum(partition);
-        this.setStmts(selectSQL, uidSQL);
-        this.setBpValues(bpdata, bpindex, bptempdata, bptempindex);
+        return ret;
     }
 
     /*
@@ -573,61 +881,10 @@ public final class DatabaseSnapshot implements Cloneable {
     @Override
     @SuppressWarnings("PMD.CommentRequired")
     public String toString() {
-        final String ret = "Snapshot[" + this.dbPartNum + ';'
-                + this.commitSQLstmts + ';' + this.selectSQLstmts + ';'
-                + this.uidSQLstmts + ';' + this.bpData + ';' + this.bpIndex
-                + ';' + this.bpTempData + ';' + this.bpTempIndex + ';'
-                + this.totalSorts + ';' + this.totalSortTimeSecs + ']';
+        final String ret = "Snapshot[" + this.members.length + ';'
+                + this.getCommits() + ';' + this.getSelects() + ';'
+                + this.getUIDs() + ';' + this.getLastIO() + ';'
+                + this.getTotalSorts() + ';' + this.getTotalSortTimeSec() + ']';
         return ret;
     }
-
-    /**
-     * Updates the value of the snap of the database. Sets the previous snapshot
-     * in order to have a compare point the first time the snapshot is taken.
-     */
-    public void updateLastSnapshot() {
-        this.prevSnapshot = this.lastSnapshot;
-        this.lastSnapshot = System.currentTimeMillis();
-    }
-
-    /**
-     * Sets the quantity of time expended doing sorts. The value received is in
-     * milliseconds, but converted to seconds.
-     * 
-     * @param totalsorttime
-     *            Total time used for sorts (milliseconds).
-     */
-    public void setTotalSortTime(final long totalsorttime) {
-        if (totalsorttime < this.totalSortTimeSecs) {
-            // The database was recycled between two checks.
-            this.prevTotalSortTime = 0;
-        } else {
-            this.prevTotalSortTime = this.totalSortTimeSecs;
-        }
-        this.totalSortTimeSecs = totalsorttime / 1000;
-        if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
-            DatabaseSnapshot.LOGGER.debug("New:{};Old:{}",
-                    this.totalSortTimeSecs, this.prevTotalSortTime);
-        }
-    }
-
-    /**
-     * Sets the quantity of sorts.
-     * 
-     * @param totalsorts
-     *            Quantity of sorts.
-     */
-    public void setTotalSorts(final long totalsorts) {
-        if (totalsorts < this.totalSorts) {
-            // The database was recycled between two checks.
-            this.prevTotalSorts = 0;
-        } else {
-            this.prevTotalSorts = this.totalSorts;
-        }
-        this.totalSorts = totalsorts;
-        if (DatabaseSnapshot.LOGGER.isDebugEnabled()) {
-            DatabaseSnapshot.LOGGER.debug("New:{};Old:{}", this.totalSorts,
-                    this.prevTotalSorts);
-        }
-    }
 }
@@ -0,0 +1,169 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+/**
+ * Columns of the database snapshot. Each column describes a monitor element
+ * of the view: its name, if it is a counter or the start time, and the group
+ * of counters that are reset together. The values are kept as they are
+ * retrieved. The queries, the storage of the snapshot and the deltas are
+ * derived from these descriptors; thus, a new monitor element is added by
+ * declaring a new column.
+ * <p>
+ * The position of a column in the counters of a member is its ordinal.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public enum SnapshotColumn {
+    /**
+     * Quantity of commits.
+     */
+    COMMITS("COMMIT_SQL_STMTS", Kind.COUNTER, 0),
+    /**
+     * Quantity of selects.
+     */
+    SELECTS("SELECT_SQL_STMTS", Kind.COUNTER, 1),
+    /**
+     * Quantity of modifications (update, insert, delete).
+     */
+    UIDS("UID_SQL_STMTS", Kind.COUNTER, 1),
+    /**
+     * Bufferpool data physical reads.
+     */
+    BP_DATA("POOL_DATA_P_READS", Kind.COUNTER, 2),
+    /**
+     * Bufferpool index physical reads.
+     */
+    BP_INDEX("POOL_INDEX_P_READS", Kind.COUNTER, 2),
+    /**
+     * Bufferpool temporal data physical reads.
+     */
+    BP_TEMP_DATA("POOL_TEMP_DATA_P_READS", Kind.COUNTER, 2),
+    /**
+     * Bufferpool temporal index physical reads.
+     */
+    BP_TEMP_INDEX("POOL_TEMP_INDEX_P_READS", Kind.COUNTER, 2),
+    /**
+     * Total time used for sorts, in milliseconds. The metrics convert it to
+     * seconds.
+     */
+    SORT_TIME("TOTAL_SORT_TIME", Kind.COUNTER, 3),
+    /**
+     * Quantity of sorts.
+     */
+    SORTS("TOTAL_SORTS", Kind.COUNTER, 4),
+    /**
+     * Time of the activation of the database (first connection), in seconds
+     * since 1970-01-01.
+     */
+    ACTIVATION("BIGINT(DAYS(DB_CONN_TIME) - DAYS('1970-01-01')) * 86400 "
+            + "+ MIDNIGHT_SECONDS(DB_CONN_TIME)", Kind.START_TIME, -1);
+
+    /**
+     * Kind of value of a column.
+     */
+    public enum Kind {
+        /**
+         * Value that only increases, until the database is recycled. The
+         * metrics are calculated with the delta between two snapshots.
+         */
+        COUNTER,
+        /**
+         * Time when the member was started. When it changes, all the
+         * counters of the member were reset, even if they are higher than in
+         * the previous snapshot.
+         */
+        START_TIME
+    }
+
+    /**
+     * View of the snapshot.
+     */
+    public static final String VIEW = "SYSIBMADM.SNAPDB";
+
+    /**
+     * Returns the list of columns for a query, in the order of the
+     * descriptors.
+     *
+     * @param format
+     *            Format of each column, where %s is the name of the column.
+     *            For example, "CAST(%s AS BIGINT)".
+     * @return Columns separated by commas.
+     */
+    public static String getColumnList(final String format) {
+        final StringBuilder ret = new StringBuilder();
+        for (final SnapshotColumn column : SnapshotColumn.values()) {
+            if (ret.length() > 0) {
+                ret.append(", ");
+            }
+            ret.append(String.format(format, column.name));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Group of counters that are reset together.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final int group;
+
+    /**
+     * Kind of value.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final Kind kind;
+
+    /**
+     * Name of the monitor element in the view.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final String name;
+
+    /**
+     * Describes a column of the snapshot.
+     *
+     * @param columnName
+     *            Name of the monitor element in the view, or an expression
+     *            over it.
+     * @param columnKind
+     *            Counter or start time.
+     * @param resetGroup
+     *            Group of counters that are reset together: if one of them is
+     *            lower than in the previous snapshot, all the counters of the
+     *            group start from zero. It is -1 for the values that are
+     *            not counters.
+     */
+    private SnapshotColumn(final String columnName, final Kind columnKind,
+            final int resetGroup) {
+        this.name = columnName;
+        this.kind = columnKind;
+        this.group = resetGroup;
+    }
+
+    /**
+     * Returns the name of the monitor element in the view.
+     *
+     * @return Name of the column.
+     */
+    public String getColumnName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the group of counters that are reset together.
+     *
+     * @return Number of the group.
+     */
+    public int getGroup() {
+        return this.group;
+    }
+
+    /**
+     * Returns the kind of value.
+     *
+     * @return Counter or start time.
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+}
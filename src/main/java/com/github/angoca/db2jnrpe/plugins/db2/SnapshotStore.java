@@ -0,0 +1,348 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recent values of each database in a local file, in order to
+ * use them as the baseline of the rates after a restart of the daemon.
+ * Without this file, the rates are not available until two collections are
+ * done.
+ * <p>
+ * The file is given by the system property db2jnrpe.cache, for example
+ * -Ddb2jnrpe.cache=/var/lib/db2jnrpe/cache.bin; without it, nothing is kept.
+ * The file is written in a compact binary format, at most once per
+ * {@link #SAVE_INTERVAL} and when the JVM stops. It is written in a temporal
+ * file that is renamed, thus a reader never sees a partial file.
+ * <p>
+ * The restored values are validated by the next collection: the activation
+ * time of each member is part of the snapshot, thus if the database was
+ * restarted while the daemon was down, the restored values are not used as
+ * comparison point.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class SnapshotStore {
+
+    /**
+     * Identification of the format of the file. The version 2 keeps the
+     * sort time in milliseconds.
+     */
+    private static final int FORMAT = 0xDB2C0002;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(SnapshotStore.class);
+    /**
+     * System property with the name of the file.
+     */
+    public static final String PROPERTY = "db2jnrpe.cache";
+    /**
+     * Minimal time between two writes of the file: 1 minute.
+     */
+    public static final long SAVE_INTERVAL = 60000;
+    /**
+     * Singleton instance.
+     */
+    private static SnapshotStore instance;
+
+    /**
+     * Returns the singleton. The file is read from the system property when
+     * the singleton is created.
+     *
+     * @return Singleton instance.
+     */
+    public static synchronized SnapshotStore getInstance() {
+        if (SnapshotStore.instance == null) {
+            final String name = System.getProperty(SnapshotStore.PROPERTY);
+            File file = null;
+            if (name != null && name.length() > 0) {
+                file = new File(name);
+            }
+            SnapshotStore.instance = new SnapshotStore(file);
+        }
+        return SnapshotStore.instance;
+    }
+
+    /**
+     * File where the values are kept, or null if they are not kept.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient File file;
+
+    /**
+     * Time of the last write of the file.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private transient long lastSave;
+
+    /**
+     * Creates the store. If there is a file, the values are written when the
+     * JVM stops.
+     *
+     * @param cacheFile
+     *            File where the values are kept, or null.
+     */
+    SnapshotStore(final File cacheFile) {
+        this.file = cacheFile;
+        this.lastSave = System.currentTimeMillis();
+        if (cacheFile != null) {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread("db2-jnrpe-cache") {
+                        /*
+                         * (non-Javadoc)
+                         * 
+                         * @see java.lang.Thread#run()
+                         */
+                        @Override
+                        @SuppressWarnings("PMD.CommentRequired")
+                        public void run() {
+                            SnapshotStore.this.save(DB2DatabasesManager
+                                    .getInstance().getDatabases());
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Checks if the values are kept in a file.
+     *
+     * @return True if there is a file.
+     */
+    public boolean isEnabled() {
+        return this.file != null;
+    }
+
+    /**
+     * Reads the values of the file, and creates the databases with their
+     * most recent snapshot and bufferpool reads. If the file does not exist,
+     * or it cannot be read, nothing is restored.
+     *
+     * @param databases
+     *            Map where the restored databases are added.
+     */
+    public void load(final Map<String, DB2Database> databases) {
+        if (this.file != null && this.file.exists()) {
+            DataInputStream input = null;
+            try {
+                input = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(this.file)));
+                if (input.readInt() != SnapshotStore.FORMAT
+                        || input.readInt() != DatabaseSnapshot.COUNTERS) {
+                    SnapshotStore.LOGGER.warn("Incompatible cache file {}",
+                            this.file);
+                } else {
+                    final int quantity = input.readInt();
+                    for (int i = 0; i < quantity; i++) {
+                        final DB2Database database = SnapshotStore
+                                .read(input);
+                        databases.put(database.getId(), database);
+                    }
+                    SnapshotStore.LOGGER.info("{} databases restored from {}",
+                            quantity, this.file);
+                }
+            } catch (final IOException e) {
+                SnapshotStore.LOGGER.warn("Error reading the cache file {}",
+                        this.file, e);
+            } finally {
+                if (input != null) {
+                    try {
+                        input.close();
+                    } catch (final IOException e) {
+                        SnapshotStore.LOGGER.warn("Error closing {}",
+                                this.file, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a database and its values.
+     *
+     * @param input
+     *            Stream of the file.
+     * @return Restored database.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    @SuppressWarnings("PMD.AvoidInstantiatingObjectsInLoops")
+    private static DB2Database read(final DataInputStream input)
+            throws IOException {
+        final DB2Database database = new DB2Database(input.readUTF());
+        final long now = System.currentTimeMillis();
+        final long nanos = System.nanoTime();
+        if (input.readBoolean()) {
+            final long time = input.readLong();
+            final int rows = input.readInt();
+            final int[] members = new int[rows];
+            final long[] values = new long[rows * DatabaseSnapshot.COUNTERS];
+            for (int i = 0; i < rows; i++) {
+                members[i] = input.readInt();
+                for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+                    values[i * DatabaseSnapshot.COUNTERS + k] = input
+                            .readLong();
+                }
+            }
+            // The monotonic time of the previous execution is not valid.
+            database.setSnap(new DatabaseSnapshot(database, members, values,
+                    time, nanos - TimeUnit.MILLISECONDS.toNanos(now - time)));
+        }
+        if (input.readBoolean()) {
+            final long time = input.readLong();
+            final int quantity = input.readInt();
+            final List<BufferpoolRead> reads = new ArrayList<BufferpoolRead>(
+                    quantity);
+            for (int i = 0; i < quantity; i++) {
+                final String name = input.readUTF();
+                final int member = input.readInt();
+                final long logical = input.readLong();
+                final long total = input.readLong();
+                reads.add(new BufferpoolRead(name, logical, total, member));
+            }
+            database.setBufferpools(new Bufferpools(database, reads, time,
+                    nanos - TimeUnit.MILLISECONDS.toNanos(now - time)));
+        }
+        return database;
+    }
+
+    /**
+     * Writes the values of the databases in the file, if the last write was
+     * done before the minimal interval. This is called after each
+     * publication.
+     *
+     * @param databases
+     *            Databases to keep.
+     */
+    public void requestSave(final Map<String, DB2Database> databases) {
+        if (this.file != null) {
+            boolean save = false;
+            synchronized (this) {
+                final long now = System.currentTimeMillis();
+                if (now - this.lastSave >= SnapshotStore.SAVE_INTERVAL) {
+                    this.lastSave = now;
+                    save = true;
+                }
+            }
+            if (save) {
+                this.save(databases);
+            }
+        }
+    }
+
+    /**
+     * Writes the values of the databases in a temporal file, and then it
+     * renames it as the cache file.
+     *
+     * @param databases
+     *            Databases to keep.
+     */
+    synchronized void save(final Map<String, DB2Database> databases) {
+        if (this.file != null) {
+            final List<DB2Database> list = new ArrayList<DB2Database>(
+                    databases.values());
+            final File temp = new File(this.file.getPath() + ".tmp");
+            DataOutputStream output = null;
+            try {
+                output = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(temp)));
+                output.writeInt(SnapshotStore.FORMAT);
+                output.writeInt(DatabaseSnapshot.COUNTERS);
+                output.writeInt(list.size());
+                for (final DB2Database database : list) {
+                    SnapshotStore.write(output, database);
+                }
+                output.close();
+                output = null;
+                // Rename does not replace the file in all platforms.
+                if (!temp.renameTo(this.file)
+                        && !(this.file.delete() && temp.renameTo(this.file))) {
+                    SnapshotStore.LOGGER.warn("Cache file {} not replaced",
+                            this.file);
+                }
+            } catch (final IOException e) {
+                SnapshotStore.LOGGER.warn("Error writing the cache file {}",
+                        this.file, e);
+            } finally {
+                if (output != null) {
+                    try {
+                        output.close();
+                    } catch (final IOException e) {
+                        SnapshotStore.LOGGER.warn("Error closing {}", temp, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a database and its most recent values.
+     *
+     * @param output
+     *            Stream of the file.
+     * @param database
+     *            Database to write.
+     * @throws IOException
+     *             If the file cannot be written.
+     */
+    private static void write(final DataOutputStream output,
+            final DB2Database database) throws IOException {
+        output.writeUTF(database.getId());
+        final DatabaseSnapshot snap = database.getSnap();
+        output.writeBoolean(snap != null);
+        if (snap != null) {
+            output.writeLong(snap.getLastSnapshotRefresh());
+            final int rows = snap.getMemberCount();
+            output.writeInt(rows);
+            for (int i = 0; i < rows; i++) {
+                output.writeInt(snap.getMember(i));
+                for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+                    output.writeLong(snap.getValue(i, k));
+                }
+            }
+        }
+        final Bufferpools bufferpools = database.getBufferpools();
+        output.writeBoolean(bufferpools != null);
+        if (bufferpools != null) {
+            output.writeLong(bufferpools.getLastBufferpoolRefresh());
+            final List<BufferpoolRead> reads = new ArrayList<BufferpoolRead>();
+            for (final Integer member : bufferpools.getMembers()) {
+                reads.addAll(bufferpools.getBufferpoolReads(member).values());
+            }
+            output.writeInt(reads.size());
+            for (final BufferpoolRead read : reads) {
+                output.writeUTF(read.getName());
+                output.writeInt(read.getMember());
+                output.writeLong(read.getLogicalReads());
+                output.writeLong(read.getTotalReads());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return "[cache:" + this.file + ']';
+    }
+}
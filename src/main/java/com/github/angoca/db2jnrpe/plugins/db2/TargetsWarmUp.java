@@ -0,0 +1,450 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Helper;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.AbstractDB2Broker;
+import com.github.angoca.db2jnrpe.plugins.db2.broker.DB2CombinedBroker;
+
+/**
+ * Registers the databases of a targets file when the plugin classes are
+ * initialized, thus the rates are available for the first check of Nagios.
+ * JNRPE could initialize them only at the first check; then, only that check
+ * does not find the rates of its database. For each database, the
+ * connection is established, the version of the server is read, and the first
+ * two samples of the snapshot and of the bufferpools are taken. The databases
+ * are prepared in parallel, with a bounded quantity of threads.
+ * <p>
+ * The file is given by the system property db2jnrpe.targets, for example
+ * -Ddb2jnrpe.targets=/etc/db2jnrpe/targets.txt. Each line has the hostname,
+ * the port, the database, the username and the password, separated by
+ * spaces, and optionally some options:
+ *
+ * <pre>
+ * # hostname port database username password [option=value...]
+ * db2server 50000 sample db2inst1 secret profile=large frequency=60
+ * </pre>
+ *
+ * The options are the profile of the connection pool, and the frequency of
+ * the collection in seconds. The lines that start with # are comments. The
+ * profile should be the same as the one of the checks; otherwise, the first
+ * check replaces the connection object of the warm-up, and a warning is
+ * written.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class TargetsWarmUp {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(TargetsWarmUp.class);
+    /**
+     * Milliseconds in a second.
+     */
+    static final long MILLISECONDS_PER_SECOND = 1000;
+    /**
+     * Connection objects of the prepared databases, by identification of the
+     * database, until a check resolves the database.
+     */
+    private static final ConcurrentMap<String, AbstractDatabaseConnection> PREPARED = new ConcurrentHashMap<String, AbstractDatabaseConnection>();
+    /**
+     * System property with the name of the targets file.
+     */
+    public static final String PROPERTY = "db2jnrpe.targets";
+    /**
+     * System property with the quantity of databases prepared in parallel.
+     */
+    public static final String PROPERTY_THREADS = "db2jnrpe.targets.threads";
+    /**
+     * Quantity of databases prepared in parallel, by default.
+     */
+    private static final int THREADS = 4;
+    /**
+     * Maximal time to wait for the values of each database: 30 seconds.
+     */
+    private static final long WAIT = 30000;
+    /**
+     * Indicates that the warm-up has been started.
+     */
+    private static boolean started;
+
+    /**
+     * Executes the warm-up of the targets file, and waits until all the
+     * databases are prepared.
+     *
+     * @param args
+     *            Name of the targets file, if the system property is not
+     *            given.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        String file = System.getProperty(TargetsWarmUp.PROPERTY);
+        if (args.length > 0) {
+            file = args[0];
+        }
+        if (file == null) {
+            System.out.println("Usage: TargetsWarmUp targetsFile");
+            return;
+        }
+        final List<Future<?>> tasks = TargetsWarmUp.warmUp(file);
+        for (final Future<?> task : tasks) {
+            task.get();
+        }
+        for (final DB2Database database : DB2DatabasesManager.getInstance()
+                .getDatabases().values()) {
+            System.out.println(database + ": " + database.getSnap());
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Creates the executor with the bounded quantity of daemon threads.
+     *
+     * @return Executor.
+     */
+    private static ExecutorService newExecutor() {
+        final int threads = Integer.getInteger(TargetsWarmUp.PROPERTY_THREADS,
+                TargetsWarmUp.THREADS);
+        final AtomicInteger counter = new AtomicInteger();
+        final ThreadPoolExecutor ret = new ThreadPoolExecutor(threads,
+                threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    /*
+                     * (non-Javadoc)
+                     * 
+                     * @see
+                     * java.util.concurrent.ThreadFactory#newThread(java.lang
+                     * .Runnable)
+                     */
+                    @Override
+                    @SuppressWarnings("PMD.CommentRequired")
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                "db2-jnrpe-warmup-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        ret.allowCoreThreadTimeOut(true);
+        return ret;
+    }
+
+    /**
+     * Parses a line of the targets file.
+     *
+     * @param line
+     *            Line of the file.
+     * @return Target, or null if the line is a comment or it is empty.
+     * @throws IllegalArgumentException
+     *             If the line is not valid.
+     */
+    static Target parse(final String line) {
+        Target ret = null;
+        final String trimmed = line.trim();
+        if (trimmed.length() > 0 && trimmed.charAt(0) != '#') {
+            final String[] fields = trimmed.split("\\s+");
+            if (fields.length < 5) {
+                throw new IllegalArgumentException("Missing fields");
+            }
+            ret = new Target(fields);
+        }
+        return ret;
+    }
+
+    /**
+     * Prepares a database: it establishes the connection, reads the version
+     * of the server, and takes the first two samples. If the database is not
+     * reachable, it is retried by the first check.
+     *
+     * @param target
+     *            Database to prepare.
+     */
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    static void prepare(final Target target) {
+        final long start = System.currentTimeMillis();
+        try {
+            final AbstractDatabaseConnection dbConn = DatabaseConnectionsManager
+                    .getInstance().getDatabaseConnection(target.profile,
+                            DB2Connection.class.getName(), target.hostname,
+                            target.port, target.database, target.username,
+                            target.password);
+            ConnectionPoolsManager.getInstance().getConnectionPool(dbConn);
+            TargetsWarmUp.PREPARED.put(target.getId(), dbConn);
+            DB2Helper.getDB2MajorVersion(dbConn);
+            final DB2Database database = DB2DatabasesManager.getInstance()
+                    .getOrCreateDatabase(target.getId());
+            if (target.frequency > 0) {
+                database.setFrequency(target.frequency);
+            }
+            final Bufferpools first = database.getBufferpoolsAndRefresh(
+                    dbConn, TargetsWarmUp.WAIT);
+            // The second snapshot is taken at least one second later.
+            database.getSnapshotAndRefresh(dbConn, TargetsWarmUp.WAIT);
+            if (database.getBufferpools() == first) {
+                AbstractDB2Broker.await(new DB2CombinedBroker(dbConn,
+                        database).refreshNow(), TargetsWarmUp.WAIT);
+            }
+            TargetsWarmUp.LOGGER.info("{}::Prepared in {} ms", target.getId(),
+                    System.currentTimeMillis() - start);
+        } catch (final DatabaseConnectionException e) {
+            TargetsWarmUp.LOGGER.warn("{}::Error preparing the database",
+                    target.getId(), e);
+        } catch (final UnknownValueException e) {
+            TargetsWarmUp.LOGGER.warn("{}::Values not read: {}",
+                    target.getId(), e.getMessage());
+        } catch (final RuntimeException e) {
+            TargetsWarmUp.LOGGER.error("{}::Error preparing the database",
+                    target.getId(), e);
+        }
+    }
+
+    /**
+     * Indicates that a check resolved the connection object of a database.
+     * If the database was prepared by the warm-up with the same user but with
+     * another profile, the connection object of the warm-up is not used by
+     * any check; thus, it is replaced by the one of the check, and its data
+     * source is closed.
+     *
+     * @param id
+     *            Identification of the database.
+     * @param dbConn
+     *            Connection object of the check.
+     */
+    public static void resolved(final String id,
+            final AbstractDatabaseConnection dbConn) {
+        final AbstractDatabaseConnection prepared = TargetsWarmUp.PREPARED
+                .get(id);
+        if (prepared != null) {
+            final AbstractDatabaseConnection current = prepared.getCurrent();
+            if (current == dbConn) {
+                TargetsWarmUp.PREPARED.remove(id, prepared);
+            } else if (current.getUsername().equals(dbConn.getUsername())
+                    && TargetsWarmUp.PREPARED.remove(id, prepared)) {
+                TargetsWarmUp.LOGGER.warn("{}::The targets file uses the "
+                        + "profile {}, but the check uses {}; the connections "
+                        + "of the warm-up are closed", new Object[] { id,
+                        current.getProfile().getName(),
+                        dbConn.getProfile().getName() });
+                DatabaseConnectionsManager.getInstance()
+                        .replaceDatabaseConnection(current, dbConn);
+            }
+        }
+    }
+
+    /**
+     * Starts the warm-up in background, if the system property gives a
+     * targets file. The warm-up is done only once, even if this is called
+     * several times.
+     */
+    public static synchronized void start() {
+        if (!TargetsWarmUp.started) {
+            TargetsWarmUp.started = true;
+            final String file = System.getProperty(TargetsWarmUp.PROPERTY);
+            if (file != null && file.length() > 0) {
+                TargetsWarmUp.warmUp(file);
+            }
+        }
+    }
+
+    /**
+     * Reads the targets file, and queues the preparation of each database.
+     *
+     * @param file
+     *            Name of the targets file.
+     * @return Preparation of each database.
+     */
+    static List<Future<?>> warmUp(final String file) {
+        final List<Future<?>> ret = new ArrayList<Future<?>>();
+        final List<Target> targets = new ArrayList<Target>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), "UTF-8"));
+            String line = reader.readLine();
+            int number = 1;
+            while (line != null) {
+                try {
+                    final Target target = TargetsWarmUp.parse(line);
+                    if (target != null) {
+                        targets.add(target);
+                    }
+                } catch (final IllegalArgumentException e) {
+                    TargetsWarmUp.LOGGER.warn("Invalid line {} of {}: {}",
+                            new Object[] { number, file, e.getMessage() });
+                }
+                line = reader.readLine();
+                number++;
+            }
+        } catch (final IOException e) {
+            TargetsWarmUp.LOGGER.warn("Error reading the targets file {}",
+                    file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final IOException e) {
+                    TargetsWarmUp.LOGGER.warn("Error closing {}", file, e);
+                }
+            }
+        }
+        TargetsWarmUp.LOGGER.info("Preparing {} databases of {}",
+                targets.size(), file);
+        if (!targets.isEmpty()) {
+            final ExecutorService executor = TargetsWarmUp.newExecutor();
+            for (final Target target : targets) {
+                ret.add(executor.submit(new Runnable() {
+                    /*
+                     * (non-Javadoc)
+                     * 
+                     * @see java.lang.Runnable#run()
+                     */
+                    @Override
+                    @SuppressWarnings("PMD.CommentRequired")
+                    public void run() {
+                        TargetsWarmUp.prepare(target);
+                    }
+                }));
+            }
+            executor.shutdown();
+        }
+        return ret;
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private TargetsWarmUp() {
+        // Nothing.
+    }
+}
+
+/**
+ * Database of the targets file.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+final class Target {
+    /**
+     * Name of the database.
+     */
+    final String database;
+    /**
+     * Frequency of the collection in milliseconds, or zero to keep the
+     * default frequency.
+     */
+    final long frequency;
+    /**
+     * Name of the server.
+     */
+    final String hostname;
+    /**
+     * Password.
+     */
+    final String password;
+    /**
+     * Port of the instance.
+     */
+    final int port;
+    /**
+     * Profile of the connection pool.
+     */
+    final PoolProfile profile;
+    /**
+     * User to connect to the database.
+     */
+    final String username;
+
+    /**
+     * Creates a target from the fields of a line.
+     *
+     * @param fields
+     *            Hostname, port, database, username, password and options.
+     * @throws IllegalArgumentException
+     *             If a field is not valid.
+     */
+    Target(final String[] fields) {
+        this.hostname = fields[0];
+        try {
+            this.port = Integer.parseInt(fields[1]);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port " + fields[1], e);
+        }
+        this.database = fields[2];
+        this.username = fields[3];
+        this.password = fields[4];
+        String profileName = null;
+        long freq = 0;
+        for (int i = 5; i < fields.length; i++) {
+            final int equal = fields[i].indexOf('=');
+            final String key = equal > 0 ? fields[i].substring(0, equal)
+                    : fields[i];
+            final String value = fields[i].substring(equal + 1);
+            if ("profile".equals(key)) {
+                profileName = value;
+            } else if ("frequency".equals(key)) {
+                try {
+                    freq = Long.parseLong(value)
+                            * TargetsWarmUp.MILLISECONDS_PER_SECOND;
+                } catch (final NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid frequency "
+                            + value, e);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown option " + key);
+            }
+        }
+        this.profile = PoolProfile.getProfile(profileName);
+        this.frequency = freq;
+    }
+
+    /**
+     * Returns the identification of the database, as the plugins do.
+     *
+     * @return Hostname, port and database.
+     */
+    String getId() {
+        return this.hostname + ':' + this.port + '/' + this.database;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return '[' + this.username + '@' + this.getId() + ']';
+    }
+}
@@ -1,14 +1,25 @@
 package com.github.angoca.db2jnrpe.plugins.db2.broker;
 
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Helper;
+import com.github.angoca.db2jnrpe.plugins.db2.CircuitBreaker;
 import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+import com.github.angoca.db2jnrpe.plugins.db2.IncopatibleDB2VersionException;
 
 /**
  * Abstract class to define the structure of a broker.
@@ -19,47 +30,132 @@ import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
 public abstract class AbstractDB2Broker {
 
     /**
-     * Prevent multiple concurrent executions.
+     * Refresh that does nothing, returned when the values are recent.
      */
-    private static final ConcurrentMap<String, Integer> LOCKS = new ConcurrentHashMap<String, Integer>();
+    private static final Future<Void> DONE;
+    /**
+     * Quantity of refreshes that have been executed.
+     */
+    private static final AtomicLong EXECUTED = new AtomicLong();
+    /**
+     * Refreshes in process, one per database. Concurrent callers receive the
+     * same refresh, thus there is just one execution at the time, whatever
+     * the broker.
+     */
+    private static final ConcurrentMap<String, FutureTask<Void>> IN_FLIGHT = new ConcurrentHashMap<String, FutureTask<Void>>();
+    /**
+     * Quantity of refreshes that joined a refresh in process instead of
+     * querying the database again.
+     */
+    private static final AtomicLong JOINED = new AtomicLong();
+    /**
+     * Time of the last accepted refresh, per database.
+     */
+    private static final ConcurrentMap<String, Long> LAST_REFRESHES = new ConcurrentHashMap<String, Long>();
     /**
      * Logger.
      */
     private static final Logger LOGGER = LoggerFactory
             .getLogger(AbstractDB2Broker.class);
+    /**
+     * Quantity of refreshes that were not executed because the values were
+     * refreshed during the current interval.
+     */
+    private static final AtomicLong SKIPPED = new AtomicLong();
+
+    static {
+        final FutureTask<Void> done = new FutureTask<Void>(new Runnable() {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.lang.Runnable#run()
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            public void run() {
+                // Nothing.
+            }
+        }, null);
+        done.run();
+        DONE = done;
+    }
 
     /**
-     * Checks if there is a lock for the given key (there is already an
-     * execution in process for the same database).
+     * Waits for a refresh until the given deadline.
      *
-     * @param key
-     *            Key that identifies the database.
-     * @return True if there is an execution for the database. False otherwise.
+     * @param refresh
+     *            Refresh returned by {@link #refresh()}.
+     * @param millis
+     *            Maximum time to wait in milliseconds.
+     * @return True if the refresh finished in the given time, false if it is
+     *         still in process.
      */
-    private static boolean hasLock(final String key) {
-        return AbstractDB2Broker.LOCKS.containsKey(key);
+    public static boolean await(final Future<?> refresh, final long millis) {
+        boolean ret = refresh.isDone();
+        if (!ret && millis > 0) {
+            try {
+                refresh.get(millis, TimeUnit.MILLISECONDS);
+                ret = true;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException e) {
+                // The error was already logged by the broker.
+                ret = true;
+            } catch (final TimeoutException e) {
+                AbstractDB2Broker.LOGGER.debug("Refresh still in process");
+            } catch (final CancellationException e) {
+                ret = true;
+            }
+        }
+        return ret;
     }
 
     /**
-     * Puts a lock for the given key. This means an execution for the database
-     * has started.
+     * Removes the refresh state of a database that was evicted: the refresh
+     * in process, if any, is cancelled, and the time of the last refresh is
+     * forgotten. Thus, a database created again with the same id collects
+     * its values immediately.
      *
-     * @param key
-     *            Key that identifies the database.
+     * @param database
+     *            Evicted database.
+     */
+    public static void forget(final DB2Database database) {
+        final String key = database.getId();
+        final FutureTask<Void> task = AbstractDB2Broker.IN_FLIGHT.remove(key);
+        if (task != null) {
+            task.cancel(false);
+        }
+        AbstractDB2Broker.LAST_REFRESHES.remove(key);
+    }
+
+    /**
+     * Returns the quantity of refreshes that have been executed against the
+     * databases.
+     *
+     * @return Executed refreshes.
      */
-    private static void putLock(final String key) {
-        AbstractDB2Broker.LOCKS.put(key, 1);
+    public static long getExecuted() {
+        return AbstractDB2Broker.EXECUTED.get();
     }
 
     /**
-     * Removes the lock for the given key that represents a database. This means
-     * the execution is finished.
+     * Returns the quantity of refreshes that were served by a refresh in
+     * process, instead of querying the database again.
      *
-     * @param key
-     *            Key that identifies the database.
+     * @return Joined refreshes.
      */
-    private static void removeLock(final String key) {
-        AbstractDB2Broker.LOCKS.remove(key);
+    public static long getJoined() {
+        return AbstractDB2Broker.JOINED.get();
+    }
+
+    /**
+     * Returns the quantity of refreshes that were not executed because the
+     * values had already been refreshed in the current interval.
+     *
+     * @return Skipped refreshes.
+     */
+    public static long getSkipped() {
+        return AbstractDB2Broker.SKIPPED.get();
     }
 
     /**
@@ -107,6 +203,27 @@ public abstract class AbstractDB2Broker {
         return this.dbConn;
     }
 
+    /**
+     * Processes an exception raised while querying the database. Timeouts are
+     * only counted in the database. The versions are invalidated only after a
+     * connection error, because the connection could be reestablished with
+     * another server; other errors, like timeouts against a stuck database,
+     * would reload the versions in each collection.
+     *
+     * @param sqle
+     *            Exception to process.
+     */
+    protected final void processException(final SQLException sqle) {
+        DB2Helper.processException(sqle);
+        if (DB2Helper.isTimeout(sqle)) {
+            this.db2db.addTimeout();
+            AbstractDB2Broker.LOGGER.warn("{}::Query cancelled by timeout",
+                    this.dbConn.getUrl());
+        } else if (DB2Helper.isConnectionError(sqle)) {
+            DB2Helper.invalidateVersions(this.dbConn);
+        }
+    }
+
     /**
      * Sets the database that contains the values.
      *
@@ -128,31 +245,197 @@ public abstract class AbstractDB2Broker {
     }
 
     /**
-     * Sets the a lock of this execution to allow just one execution at the
-     * time.
+     * Performs the check and logs any error. This is the execution of a
+     * refresh, and it should be called via {@link #refresh()} in order to
+     * prevent concurrent executions for the same database. The result is
+     * recorded in the circuit breaker of the database; while the circuit is
+     * open, the database is not accessed. When the circuit is opened, a probe
+     * is scheduled for the end of its period. If the collection ends with an
+     * error, the probe is released, thus the circuit is not kept half-open.
      */
     @SuppressWarnings("PMD.AvoidCatchingGenericException")
-    protected final void setLock() {
-        final String key = this.db2db.getId();
-        final String url = this.dbConn.getUrl();
-        try {
-            // Controls multiple concurrent executions.
-            // This prevents to create multiple threads trying to access the
-            // database. This is a problem when the database is not available,
-            // or it has a big workload, and multiple connections are
-            // established.
-            if (AbstractDB2Broker.hasLock(key)) {
-                AbstractDB2Broker.LOGGER.warn("{}::There is a lock for: ", url,
-                        key);
-            } else {
-                AbstractDB2Broker.putLock(key);
+    protected final void execute() {
+        final CircuitBreaker breaker = this.db2db.getCircuitBreaker();
+        if (breaker.allowRequest()) {
+            try {
                 this.check();
-                AbstractDB2Broker.removeLock(key);
+                breaker.recordSuccess();
+            } catch (final DatabaseConnectionException e) {
+                if (e.getCause() instanceof IncopatibleDB2VersionException) {
+                    // The database answered.
+                    breaker.recordSuccess();
+                } else {
+                    breaker.recordFailure(e);
+                }
+                AbstractDB2Broker.LOGGER.error(
+                        "{}::Error while collecting values",
+                        this.dbConn.getUrl(), e);
+            } catch (final Exception e) {
+                breaker.recordFailure(e);
+                AbstractDB2Broker.LOGGER.error(
+                        "{}::Error while collecting values",
+                        this.dbConn.getUrl(), e);
+            } finally {
+                breaker.releaseProbe();
+                if (breaker.isOpen()) {
+                    // The circuit has just been opened.
+                    CollectionScheduler.getInstance().scheduleProbe(
+                            this.db2db, breaker.getBackoff());
+                }
+            }
+        } else {
+            AbstractDB2Broker.LOGGER.debug("{}::Circuit open, not collecting",
+                    this.dbConn.getUrl());
+        }
+    }
+
+    /**
+     * Returns the key that identifies the refreshes of the database. All the
+     * brokers of the same database share it, thus their executions do not
+     * overlap, and the interval is the same for all of them.
+     *
+     * @return Key of the refresh.
+     */
+    private String getKey() {
+        return this.db2db.getId();
+    }
+
+    /**
+     * Refreshes the values of the database in background. If there is already
+     * a refresh in process for the same database, that refresh is returned;
+     * if the values were refreshed during the current interval (the frequency
+     * of the database), nothing is executed. Thus, the database is queried at
+     * most once per interval, even with concurrent calls.
+     *
+     * @return Refresh in process, that can be waited with
+     *         {@link #await(Future, long)}.
+     */
+    public final Future<Void> refresh() {
+        return this.refresh(false);
+    }
+
+    /**
+     * Refreshes the values of the database in background, even if they were
+     * refreshed during the current interval. If there is already a refresh in
+     * process for the same database, that refresh is returned. This is used
+     * to take the second sample when the cache is cold; periodic refreshes
+     * should use {@link #refresh()}.
+     *
+     * @return Refresh in process, that can be waited with
+     *         {@link #await(Future, long)}.
+     */
+    public final Future<Void> refreshNow() {
+        return this.refresh(true);
+    }
+
+    /**
+     * Refreshes the values of the database in background.
+     *
+     * @param force
+     *            True to ignore the interval of the database.
+     * @return Refresh in process.
+     */
+    private Future<Void> refresh(final boolean force) {
+        final String key = this.getKey();
+        Future<Void> ret = AbstractDB2Broker.IN_FLIGHT.get(key);
+        if (ret == null) {
+            final long now = System.currentTimeMillis();
+            final Long last = AbstractDB2Broker.LAST_REFRESHES.get(key);
+            if (!force && last != null
+                    && now - last < this.db2db.getFrequency()) {
+                AbstractDB2Broker.SKIPPED.incrementAndGet();
+                ret = AbstractDB2Broker.DONE;
+            } else {
+                ret = this.submit(key, now, force);
             }
-        } catch (final Exception e) {
-            AbstractDB2Broker.LOGGER.error(
-                    "{}::Error while reading bufferpool values", url, e);
-            AbstractDB2Broker.removeLock(key);
+        } else {
+            AbstractDB2Broker.JOINED.incrementAndGet();
         }
+        return ret;
+    }
+
+    /**
+     * Queues the refresh, unless another thread has just queued one for the
+     * same key, or another refresh was accepted (and maybe finished) since
+     * the interval was checked.
+     *
+     * @param key
+     *            Key of the refresh.
+     * @param now
+     *            Time of the refresh.
+     * @param force
+     *            True to ignore the interval of the database.
+     * @return The queued refresh, or the refresh of the other thread.
+     */
+    private Future<Void> submit(final String key, final long now,
+            final boolean force) {
+        final FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.lang.Runnable#run()
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            public void run() {
+                AbstractDB2Broker.EXECUTED.incrementAndGet();
+                AbstractDB2Broker.this.execute();
+            }
+        }, null) {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.util.concurrent.FutureTask#done()
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            protected void done() {
+                AbstractDB2Broker.IN_FLIGHT.remove(key, this);
+            }
+
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.lang.Object#toString()
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            public String toString() {
+                return AbstractDB2Broker.this.toString();
+            }
+        };
+        Future<Void> ret = AbstractDB2Broker.IN_FLIGHT.putIfAbsent(key, task);
+        if (ret == null) {
+            final Long last = AbstractDB2Broker.LAST_REFRESHES.get(key);
+            if (!force && last != null
+                    && now - last < this.db2db.getFrequency()) {
+                // Another refresh was executed since the first check.
+                task.cancel(false);
+                AbstractDB2Broker.SKIPPED.incrementAndGet();
+                ret = AbstractDB2Broker.DONE;
+            } else {
+                ret = task;
+                AbstractDB2Broker.LAST_REFRESHES.put(key, now);
+                if (!BrokerExecutor.getInstance().execute(task)) {
+                    // The queue is full, the next call will retry.
+                    task.cancel(false);
+                    AbstractDB2Broker.LAST_REFRESHES.remove(key);
+                }
+            }
+        } else {
+            AbstractDB2Broker.JOINED.incrementAndGet();
+        }
+        return ret;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return this.getClass().getSimpleName() + '[' + this.db2db + ']';
     }
-}
\ No newline at end of file
+}
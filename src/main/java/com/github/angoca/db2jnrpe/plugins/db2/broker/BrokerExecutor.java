@@ -0,0 +1,230 @@
+package com.github.angoca.db2jnrpe.plugins.db2.broker;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes the brokers in a bounded pool of threads. Instead of creating a new
+ * thread each time the values of a database have to be refreshed, the brokers
+ * are queued and executed by a fixed set of daemon threads. When the queue is
+ * full, the refresh is discarded and counted; the values will be refreshed the
+ * next time they are requested.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class BrokerExecutor {
+
+    /**
+     * Time that an idle thread is kept alive: 1 minute.
+     */
+    private static final long KEEP_ALIVE = 60000;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(BrokerExecutor.class);
+    /**
+     * Maximum quantity of brokers executing at the same time.
+     */
+    public static final int MAX_THREADS = 10;
+    /**
+     * Maximum quantity of brokers waiting for a thread.
+     */
+    public static final int QUEUE_SIZE = 100;
+    /**
+     * Singleton instance.
+     */
+    private static BrokerExecutor instance;
+
+    /**
+     * Returns the singleton.
+     *
+     * @return Singleton instance.
+     */
+    public static synchronized BrokerExecutor getInstance() {
+        if (BrokerExecutor.instance == null) {
+            BrokerExecutor.instance = new BrokerExecutor();
+        }
+        return BrokerExecutor.instance;
+    }
+
+    /**
+     * Executor of the brokers.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient ThreadPoolExecutor executor;
+    /**
+     * Brokers waiting for a thread.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient BlockingQueue<Runnable> queue;
+    /**
+     * Quantity of brokers that have been rejected because the queue was full.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient AtomicLong rejected;
+    /**
+     * Quantity of brokers currently executing.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient AtomicInteger running;
+
+    /**
+     * Creates the singleton with a bounded pool of threads and a bounded
+     * queue.
+     */
+    private BrokerExecutor() {
+        this.queue = new ArrayBlockingQueue<Runnable>(
+                BrokerExecutor.QUEUE_SIZE);
+        this.rejected = new AtomicLong();
+        this.running = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(BrokerExecutor.MAX_THREADS,
+                BrokerExecutor.MAX_THREADS, BrokerExecutor.KEEP_ALIVE,
+                TimeUnit.MILLISECONDS, this.queue, new ThreadFactory() {
+                    /**
+                     * Threads counter.
+                     */
+                    private final AtomicInteger qty = new AtomicInteger();
+
+                    /*
+                     * (non-Javadoc)
+                     * 
+                     * @see
+                     * java.util.concurrent.ThreadFactory#newThread(java.lang
+                     * .Runnable)
+                     */
+                    @Override
+                    @SuppressWarnings("PMD.CommentRequired")
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                "db2-jnrpe-broker-"
+                                        + this.qty.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new RejectedExecutionHandler() {
+                    /*
+                     * (non-Javadoc)
+                     * 
+                     * @see
+                     * java.util.concurrent.RejectedExecutionHandler#rejectedExecution
+                     * (java.lang.Runnable,
+                     * java.util.concurrent.ThreadPoolExecutor)
+                     */
+                    @Override
+                    @SuppressWarnings("PMD.CommentRequired")
+                    public void rejectedExecution(final Runnable runnable,
+                            final ThreadPoolExecutor exec) {
+                        final long qty = BrokerExecutor.this.rejected
+                                .incrementAndGet();
+                        BrokerExecutor.LOGGER.warn(
+                                "Broker discarded, queue is full ({} "
+                                        + "rejected): {}", qty, runnable);
+                        throw new RejectedExecutionException(
+                                "Brokers queue is full");
+                    }
+                }) {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see
+             * java.util.concurrent.ThreadPoolExecutor#beforeExecute(java.lang
+             * .Thread, java.lang.Runnable)
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            protected void beforeExecute(final Thread thread,
+                    final Runnable runnable) {
+                BrokerExecutor.this.running.incrementAndGet();
+                super.beforeExecute(thread, runnable);
+            }
+
+            /*
+             * (non-Javadoc)
+             * 
+             * @see
+             * java.util.concurrent.ThreadPoolExecutor#afterExecute(java.lang
+             * .Runnable, java.lang.Throwable)
+             */
+            @Override
+            @SuppressWarnings("PMD.CommentRequired")
+            protected void afterExecute(final Runnable runnable,
+                    final Throwable throwable) {
+                super.afterExecute(runnable, throwable);
+                BrokerExecutor.this.running.decrementAndGet();
+            }
+        };
+        // Threads are not kept when there is nothing to do.
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a broker to be executed. If the queue is full, the broker is
+     * discarded and the rejected counter is incremented.
+     *
+     * @param broker
+     *            Broker to execute.
+     * @return True if the broker was queued, false if it was rejected.
+     */
+    public boolean execute(final Runnable broker) {
+        boolean ret = true;
+        try {
+            this.executor.execute(broker);
+        } catch (final RejectedExecutionException e) {
+            ret = false;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the quantity of brokers waiting for a thread.
+     *
+     * @return Queued brokers.
+     */
+    public int getQueued() {
+        return this.queue.size();
+    }
+
+    /**
+     * Returns the quantity of brokers that have been discarded because the
+     * queue was full.
+     *
+     * @return Rejected brokers since the start.
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Returns the quantity of brokers that are being executed.
+     *
+     * @return Running brokers.
+     */
+    public int getRunning() {
+        return this.running.get();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return "[brokers-queued:" + this.getQueued() + ";running:"
+                + this.getRunning() + ";rejected:" + this.getRejected() + ']';
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.angoca.db2jnrpe.plugins.db2.broker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
+
+/**
+ * Refreshes the values of each registered database with its own frequency.
+ * The values are collected in background, thus the plugins only read the
+ * values in the cache. The scheduler does not access the database, it queues
+ * the corresponding brokers in the {@link BrokerExecutor}.
+ * <p>
+ * The scheduler also evicts periodically the databases that are not checked
+ * anymore.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class CollectionScheduler {
+
+    /**
+     * Interval between two evictions of the idle databases: 5 minutes.
+     */
+    private static final long EVICTION_INTERVAL = 300000;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(CollectionScheduler.class);
+    /**
+     * Singleton instance.
+     */
+    private static CollectionScheduler instance;
+
+    /**
+     * Returns the singleton.
+     *
+     * @return Singleton instance.
+     */
+    public static synchronized CollectionScheduler getInstance() {
+        if (CollectionScheduler.instance == null) {
+            CollectionScheduler.instance = new CollectionScheduler();
+        }
+        return CollectionScheduler.instance;
+    }
+
+    /**
+     * Executor that triggers the collections.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Scheduled collection for each database.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient ConcurrentMap<String, ScheduledFuture<?>> tasks;
+
+    /**
+     * Creates the singleton with a single daemon thread, and schedules the
+     * eviction of the idle databases.
+     */
+    private CollectionScheduler() {
+        this.tasks = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+        this.scheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactory() {
+                    /*
+                     * (non-Javadoc)
+                     * 
+                     * @see
+                     * java.util.concurrent.ThreadFactory#newThread(java.lang
+                     * .Runnable)
+                     */
+                    @Override
+                    @SuppressWarnings("PMD.CommentRequired")
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable,
+                                "db2-jnrpe-scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.scheduler.scheduleWithFixedDelay(new Runnable() {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.lang.Runnable#run()
+             */
+            @Override
+            @SuppressWarnings({ "PMD.CommentRequired",
+                    "PMD.AvoidCatchingGenericException" })
+            public void run() {
+                try {
+                    DB2DatabasesManager.getInstance().evictIdle();
+                } catch (final RuntimeException e) {
+                    // An exception would cancel the task.
+                    CollectionScheduler.LOGGER.error("Error while evicting", e);
+                }
+            }
+        }, CollectionScheduler.EVICTION_INTERVAL,
+                CollectionScheduler.EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the broker of the metrics that have been requested for the given
+     * database. All the requested families are retrieved in a single query.
+     *
+     * @param database
+     *            Database to refresh.
+     */
+    static void collect(final DB2Database database) {
+        final AbstractDatabaseConnection dbConn = database.getConnection();
+        if (dbConn != null
+                && (database.isSnapshotRequested() || database
+                        .isBufferpoolsRequested())) {
+            new DB2CombinedBroker(dbConn, database).refresh();
+        }
+    }
+
+    /**
+     * Checks if the given database has a scheduled collection.
+     *
+     * @param database
+     *            Database to check.
+     * @return True if the database is refreshed periodically.
+     */
+    public boolean isScheduled(final DB2Database database) {
+        return this.tasks.containsKey(database.getId());
+    }
+
+    /**
+     * Schedules the periodic collection for a database, with the frequency of
+     * the database. If the database is already scheduled, nothing is done.
+     *
+     * @param database
+     *            Database to refresh periodically.
+     */
+    public void schedule(final DB2Database database) {
+        final String key = database.getId();
+        if (!this.tasks.containsKey(key)) {
+            synchronized (this.tasks) {
+                if (!this.tasks.containsKey(key)) {
+                    CollectionScheduler.LOGGER.info(
+                            "{}::Scheduling collection each {} ms", key,
+                            database.getFrequency());
+                    final long freq = database.getFrequency();
+                    this.tasks.put(key, this.scheduler.scheduleWithFixedDelay(
+                            new Runnable() {
+                                /*
+                                 * (non-Javadoc)
+                                 * 
+                                 * @see java.lang.Runnable#run()
+                                 */
+                                @Override
+                                @SuppressWarnings({ "PMD.CommentRequired",
+                                        "PMD.AvoidCatchingGenericException" })
+                                public void run() {
+                                    try {
+                                        CollectionScheduler.collect(database);
+                                    } catch (final RuntimeException e) {
+                                        // An exception would cancel the task.
+                                        CollectionScheduler.LOGGER.error(
+                                                "{}::Error while scheduling",
+                                                key, e);
+                                    }
+                                }
+                            }, freq, freq, TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules a single collection of a database, after the period of its
+     * open circuit, as the probe of the circuit. The collection is executed
+     * even if the values were refreshed during the current interval, and it
+     * is not executed if the database was evicted.
+     *
+     * @param database
+     *            Database to probe.
+     * @param delay
+     *            Time to wait before the probe, in milliseconds.
+     */
+    public void scheduleProbe(final DB2Database database, final long delay) {
+        CollectionScheduler.LOGGER.info("{}::Probe in {} ms",
+                database.getId(), delay);
+        this.scheduler.schedule(new Runnable() {
+            /*
+             * (non-Javadoc)
+             * 
+             * @see java.lang.Runnable#run()
+             */
+            @Override
+            @SuppressWarnings({ "PMD.CommentRequired",
+                    "PMD.AvoidCatchingGenericException" })
+            public void run() {
+                final AbstractDatabaseConnection dbConn = database
+                        .getConnection();
+                try {
+                    if (!database.isEvicted() && dbConn != null) {
+                        new DB2CombinedBroker(dbConn, database).refreshNow();
+                    }
+                } catch (final RuntimeException e) {
+                    CollectionScheduler.LOGGER.error(
+                            "{}::Error while probing", database.getId(), e);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic collection of a database.
+     *
+     * @param database
+     *            Database to stop refreshing.
+     */
+    public void unschedule(final DB2Database database) {
+        final ScheduledFuture<?> task = this.tasks.remove(database.getId());
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String toString() {
+        return "[scheduled:" + this.tasks.size() + ']';
+    }
+}
@@ -8,8 +8,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
 import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
 import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
 import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Helper;
@@ -25,6 +24,7 @@ import com.github.angoca.db2jnrpe.plugins.db2.BufferpoolRead;
 import com.github.angoca.db2jnrpe.plugins.db2.Bufferpools;
 import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
 import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
+import com.github.angoca.db2jnrpe.plugins.db2.SnapshotStore;
 
 /**
  * Queries the database to retrieve the information about the bufferpool hit
@@ -175,6 +175,13 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
         // CHECKSTYLE:ON
     }
 
+    /**
+     * Reads of the current collection, one per bufferpool and member, not yet
+     * published.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient List<BufferpoolRead> pending = new ArrayList<BufferpoolRead>();
+
     /**
      * Creates the object associating a connection properties.
      *
@@ -191,6 +198,60 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
         this.setDB2database(db2database);
     }
 
+    /**
+     * Assigns the values of a bufferpool to a new read, that takes the
+     * published read of the same bufferpool and member as comparison point. The new read
+     * is not visible until the reads are published.
+     *
+     * @param name
+     *            Name of the bufferpool.
+     * @param logical
+     *            Quantity of logical reads.
+     * @param physical
+     *            Quantity of physical reads.
+     * @param member
+     *            Member.
+     */
+    void assignRead(final String name, final long logical,
+            final long physical, final int member) {
+        final BufferpoolRead previous;
+        final Bufferpools bufferpools;
+        DB2BufferpoolHitRatioBroker.LOGGER.info(
+                "{}::Name{},logical{},physical{},member{}", new Object[] {
+                        this.getDatabaseConnection().getUrl(), name, logical,
+                        physical, member });
+        bufferpools = this.getDatabase().getBufferpools();
+        if (bufferpools == null) {
+            previous = null;
+        } else {
+            previous = bufferpools.getBufferpoolRead(name, member);
+        }
+        if (previous == null) {
+            if (DB2BufferpoolHitRatioBroker.LOGGER.isDebugEnabled()) {
+                DB2BufferpoolHitRatioBroker.LOGGER.debug(this
+                        .getDatabaseConnection().getUrl()
+                        + "::New bufferpool");
+            }
+            this.pending.add(new BufferpoolRead(name, logical, logical
+                    + physical, member));
+        } else {
+            if (logical < previous.getLogicalReads()) {
+                // The counters were reset: the instance was restarted.
+                DB2BufferpoolHitRatioBroker.LOGGER.info(
+                        "{}::Instance restarted",
+                        this.getDatabaseConnection().getUrl());
+                DB2Helper.invalidateVersions(this.getDatabaseConnection());
+            }
+            if (DB2BufferpoolHitRatioBroker.LOGGER.isDebugEnabled()) {
+                DB2BufferpoolHitRatioBroker.LOGGER.debug(this
+                        .getDatabaseConnection().getUrl()
+                        + "::Bufferpool updated");
+            }
+            this.pending.add(new BufferpoolRead(previous, logical, logical
+                    + physical));
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -210,20 +271,21 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
 
             Connection connection = null;
             try {
-                connection = ConnectionPoolsManager.getInstance()
-                        .getConnectionPool(this.getDatabaseConnection())
-                        .getConnection(this.getDatabaseConnection());
-                final PreparedStatement stmt = connection
-                        .prepareStatement(DB2BufferpoolHitRatioBroker.QUERY_AFTER_V97);
+                final AbstractConnectionPool pool = ConnectionPoolsManager
+                        .getInstance().getConnectionPool(
+                                this.getDatabaseConnection());
+                connection = pool.getConnection(this.getDatabaseConnection());
+                // The statement is kept by the pool, thus it is not closed.
+                final PreparedStatement stmt = pool.prepareStatement(connection,
+                        DB2BufferpoolHitRatioBroker.QUERY_AFTER_V97);
+                stmt.setQueryTimeout(this.getDatabase().getQueryTimeout(
+                        MetricFamily.BUFFERPOOL));
                 res = stmt.executeQuery();
 
-                BufferpoolRead read;
                 String name;
                 long logical;
                 long physical;
                 int member;
-                Bufferpools bufferpools;
-                final List<String> reads = new ArrayList<String>();
                 while (res.next()) {
                     // Name.
                     name = res
@@ -238,57 +300,13 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
                     member = res
                             .getInt(DB2BufferpoolHitRatioBroker.COL_POS_MEMBER);
 
-                    DB2BufferpoolHitRatioBroker.LOGGER.info(
-                            "{}::Name{},logical{},physical{},member{}",
-                            new Object[] {
-                                    this.getDatabaseConnection().getUrl(),
-                                    name, logical, physical, member });
-                    bufferpools = this.getDatabase().getBufferpools();
-                    if (bufferpools == null) {
-                        bufferpools = new Bufferpools(this.getDatabase());
-                        this.getDatabase().setBufferpools(bufferpools);
-                    }
-                    read = bufferpools.getBufferpoolReads().get(name);
-                    if (read == null) {
-                        if (DB2BufferpoolHitRatioBroker.LOGGER.isDebugEnabled()) {
-                            DB2BufferpoolHitRatioBroker.LOGGER.debug(this
-                                    .getDatabaseConnection().getUrl()
-                                    + "::New bufferpool");
-                        }
-                        read = new BufferpoolRead(name, logical, logical
-                                + physical, member);
-                        bufferpools.addBufferpoolRead(read);
-                    } else {
-                        if (DB2BufferpoolHitRatioBroker.LOGGER.isDebugEnabled()) {
-                            DB2BufferpoolHitRatioBroker.LOGGER.debug(this
-                                    .getDatabaseConnection().getUrl()
-                                    + "::Bufferpool updated");
-                        }
-                        read.setReads(logical, logical + physical);
-                    }
-                    reads.add(name);
-                }
-                // Checks the list of bufferpool read to delete the inexistent
-                // reads.
-                final ConcurrentMap<String, BufferpoolRead> newBps = new ConcurrentHashMap<String, BufferpoolRead>();
-                for (final String bpName : this.getDatabase().getBufferpools()
-                        .getBufferpoolReads().keySet()) {
-                    if (reads.contains(bpName)) {
-                        newBps.put(bpName, this.getDatabase().getBufferpools()
-                                .getBufferpoolReads().get(bpName));
-                    }
+                    this.assignRead(name, logical, physical, member);
                 }
-                this.getDatabase().getBufferpools().setBufferpools(newBps);
-                this.getDatabase().getBufferpools().updateLastBufferpoolRead();
+                this.publishReads();
                 res.close();
-                stmt.close();
-                ConnectionPoolsManager
-                        .getInstance()
-                        .getConnectionPool(this.getDatabaseConnection())
-                        .closeConnection(this.getDatabaseConnection(),
-                                connection);
+                pool.closeConnection(this.getDatabaseConnection(), connection);
             } catch (final SQLException sqle) {
-                DB2Helper.processException(sqle);
+                this.processException(sqle);
                 throw new DatabaseConnectionException(sqle);
             } finally {
                 try {
@@ -309,6 +327,20 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
         }
     }
 
+    /**
+     * Publishes the reads of the current collection in the database, with the
+     * time of the read. The bufferpools that were not read are not part of
+     * the published reads, and the cluster-wide reads are calculated.
+     */
+    void publishReads() {
+        this.getDatabase().setBufferpools(
+                new Bufferpools(this.getDatabase(), this.pending, System
+                        .currentTimeMillis(), System.nanoTime()));
+        this.pending.clear();
+        SnapshotStore.getInstance().requestSave(
+                DB2DatabasesManager.getInstance().getDatabases());
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -317,6 +349,6 @@ public final class DB2BufferpoolHitRatioBroker extends AbstractDB2Broker
     @Override
     @SuppressWarnings("PMD.CommentRequired")
     public void run() {
-        super.setLock();
+        super.execute();
     }
 }
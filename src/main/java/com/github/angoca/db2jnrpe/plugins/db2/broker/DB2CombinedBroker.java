@@ -0,0 +1,257 @@
+package com.github.angoca.db2jnrpe.plugins.db2.broker;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Helper;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2MajorVersion;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2MinorVersion;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+
+/**
+ * Queries all the requested families of metrics of a database in a single
+ * execution, and distributes the rows to the snapshot and to the bufferpools
+ * of the database. Thus, there is only one connection checkout and one round
+ * trip per database for each collection.
+ * <p>
+ * If a family cannot be retrieved with the version of the server, it is
+ * excluded from the combined query, and the incompatibility is reported as
+ * the separated broker does.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class DB2CombinedBroker extends AbstractDB2Broker implements
+        Runnable {
+
+    /**
+     * Position of column family tag.
+     */
+    private static final int C_FAMILY = 1;
+    /**
+     * Position of column member.
+     */
+    private static final int C_MEMBER = 3;
+    /**
+     * Position of column name.
+     */
+    private static final int C_NAME = 2;
+    /**
+     * Position of the first numeric value.
+     */
+    private static final int C_VALUE = 4;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(DB2CombinedBroker.class);
+    /**
+     * Separator of the parts of the combined query.
+     */
+    private static final String UNION = " UNION ALL ";
+
+    /**
+     * Builds the query for the given families.
+     *
+     * @param queried
+     *            Families to retrieve.
+     * @return Combined query.
+     */
+    private static String buildQuery(final Set<MetricFamily> queried) {
+        final StringBuilder query = new StringBuilder();
+        for (final MetricFamily family : queried) {
+            if (query.length() > 0) {
+                query.append(DB2CombinedBroker.UNION);
+            }
+            query.append(family.getQuery());
+        }
+        return query.toString();
+    }
+
+    /**
+     * Broker that processes the bufferpool rows.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient DB2BufferpoolHitRatioBroker bufferpoolBroker;
+
+    /**
+     * Families to retrieve.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient Set<MetricFamily> families;
+
+    /**
+     * Broker that processes the snapshot rows.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final transient DB2DatabaseSnapshotBroker snapshotBroker;
+
+    /**
+     * Creates the object associating a connection properties. The families
+     * to retrieve are the ones that have been requested for the database.
+     *
+     * @param connProps
+     *            Connection properties.
+     * @param db2database
+     *            DB2 database that contains the info.
+     */
+    public DB2CombinedBroker(final AbstractDatabaseConnection connProps,
+            final DB2Database db2database) {
+        super();
+        this.setDBConnection(connProps);
+        this.setDB2database(db2database);
+        this.families = EnumSet.noneOf(MetricFamily.class);
+        if (db2database.isBufferpoolsRequested()) {
+            this.families.add(MetricFamily.BUFFERPOOL);
+        }
+        if (db2database.isSnapshotRequested()) {
+            this.families.add(MetricFamily.SNAPSHOT);
+        }
+        this.bufferpoolBroker = new DB2BufferpoolHitRatioBroker(connProps,
+                db2database);
+        this.snapshotBroker = new DB2DatabaseSnapshotBroker(connProps,
+                db2database);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.db2.broker.AbstractDB2Broker#check()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    protected void check() throws DatabaseConnectionException {
+        assert this.getDatabaseConnection() != null;
+        final DB2MajorVersion majorVersion = DB2Helper.getDB2MajorVersion(this
+                .getDatabaseConnection());
+        final DB2MinorVersion minorVersion = DB2Helper.getDB2MinorVersion(this
+                .getDatabaseConnection());
+        final Set<MetricFamily> queried = EnumSet.copyOf(this.families);
+        // MON_GET_BUFFERPOOL does not exist in db2 v9.5 or before.
+        if (!majorVersion.isEqualOrMoreRecentThan(DB2MajorVersion.V9_7)) {
+            queried.remove(MetricFamily.BUFFERPOOL);
+        }
+        final boolean snapshotCompatible = DB2DatabaseSnapshotBroker
+                .isCompatible(majorVersion, minorVersion);
+        if (!snapshotCompatible) {
+            queried.remove(MetricFamily.SNAPSHOT);
+        }
+        if (!queried.isEmpty()) {
+            this.query(queried);
+        }
+        if (!snapshotCompatible
+                && this.families.contains(MetricFamily.SNAPSHOT)) {
+            // Reports the incompatibility.
+            this.snapshotBroker.check();
+        }
+    }
+
+    /**
+     * Returns the maximum time of the combined query, that is the greatest
+     * timeout of the queried families.
+     *
+     * @param queried
+     *            Families to retrieve.
+     * @return Timeout in seconds.
+     */
+    private int getQueryTimeout(final Set<MetricFamily> queried) {
+        int ret = 0;
+        for (final MetricFamily family : queried) {
+            ret = Math.max(ret, this.getDatabase().getQueryTimeout(family));
+        }
+        return ret;
+    }
+
+    /**
+     * Executes the combined query and assigns the values of each row
+     * according to its family.
+     *
+     * @param queried
+     *            Families to retrieve.
+     * @throws DatabaseConnectionException
+     *             If any problem occur while accessing the database.
+     */
+    @SuppressWarnings("PMD.DoNotThrowExceptionInFinally")
+    private void query(final Set<MetricFamily> queried)
+            throws DatabaseConnectionException {
+        Connection connection = null;
+        ResultSet res = null;
+        try {
+            final AbstractConnectionPool pool = ConnectionPoolsManager
+                    .getInstance().getConnectionPool(
+                            this.getDatabaseConnection());
+            connection = pool.getConnection(this.getDatabaseConnection());
+            // The statement is kept by the pool, thus it is not closed.
+            final PreparedStatement stmt = pool.prepareStatement(connection,
+                    DB2CombinedBroker.buildQuery(queried));
+            stmt.setQueryTimeout(this.getQueryTimeout(queried));
+            res = stmt.executeQuery();
+
+            while (res.next()) {
+                final MetricFamily family = MetricFamily.fromTag(res
+                        .getString(DB2CombinedBroker.C_FAMILY));
+                final int member = res.getInt(DB2CombinedBroker.C_MEMBER);
+                final int col = DB2CombinedBroker.C_VALUE;
+                if (family == MetricFamily.BUFFERPOOL) {
+                    final String name = res
+                            .getString(DB2CombinedBroker.C_NAME);
+                    this.bufferpoolBroker.assignRead(name, res.getLong(col),
+                            res.getLong(col + 1), member);
+                } else if (family == MetricFamily.SNAPSHOT) {
+                    this.snapshotBroker.assignValues(member, res, col);
+                } else {
+                    DB2CombinedBroker.LOGGER.warn("{}::Unknown family",
+                            this.getDatabaseConnection().getUrl());
+                }
+            }
+            if (queried.contains(MetricFamily.BUFFERPOOL)) {
+                this.bufferpoolBroker.publishReads();
+            }
+            this.snapshotBroker.publishSnapshot();
+            res.close();
+            pool.closeConnection(this.getDatabaseConnection(), connection);
+        } catch (final SQLException sqle) {
+            this.processException(sqle);
+            throw new DatabaseConnectionException(sqle);
+        } finally {
+            try {
+                if (res != null) {
+                    res.close();
+                }
+            } catch (final SQLException e) {
+                throw new DatabaseConnectionException(e);
+            }
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException e) {
+                throw new DatabaseConnectionException(e);
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public void run() {
+        super.execute();
+    }
+}
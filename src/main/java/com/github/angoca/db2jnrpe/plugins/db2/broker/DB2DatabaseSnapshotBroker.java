@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
 import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
 import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
 import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Helper;
@@ -20,6 +22,8 @@ import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
 import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
 import com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot;
 import com.github.angoca.db2jnrpe.plugins.db2.IncopatibleDB2VersionException;
+import com.github.angoca.db2jnrpe.plugins.db2.SnapshotColumn;
+import com.github.angoca.db2jnrpe.plugins.db2.SnapshotStore;
 
 /**
  * Queries the database to retrieve the snapshot. The check verifies the
@@ -34,55 +38,21 @@ import com.github.angoca.db2jnrpe.plugins.db2.IncopatibleDB2VersionException;
 public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
         implements Runnable {
 
-    /**
-     * Position of column commit quantity.
-     */
-    @SuppressWarnings({ "PMD.LongVariable", "PMD.AvoidDuplicateLiterals" })
-    private static final int C_COMMIT_SQL_STMTS = 2;
     /**
      * Position of column database partition.
      */
     private static final int C_DBPARTITIONNUM = 1;
     /**
-     * Position of column bufferpool data physical reads.
-     */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_POOL_DATA_P_READS = 5;
-    /**
-     * Position of column bufferpool index physical reads.
-     */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_POOL_INDEX_P_READS = 6;
-    /**
-     * Position of column bufferpool temp physical reads.
-     */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_POOL_TEMP_DATA_P_READS = 7;
-    /**
-     * Position of column bufferpool temp index physical reads.
+     * Position of the column of the first counter. The counters are in the
+     * order of {@link SnapshotColumn}.
      */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_POOL_TEMP_INDEX_P_READS = 8;
-    /**
-     * Position of column select quantity.
-     */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_SELECT_SQL_STMTS = 3;
-    /**
-     * Position of column modifications quantity.
-     */
-    private static final int C_UID_SQL_STMTS = 4;
-    /**
-     * Position of column total sort time.
-     */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_TOT_SORT_TIME = 9;
+    private static final int C_FIRST_COUNTER = 2;
+
     /**
-     * Position of column total sorts.
+     * Initial quantity of rows (members) of a collection. It grows when
+     * there are more members.
      */
-    @SuppressWarnings("PMD.LongVariable")
-    private static final int C_TOTAL_SORTS = 10;
-
+    private static final int INITIAL_ROWS = 4;
     /**
      * Logger.
      */
@@ -90,13 +60,12 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
             .getLogger(DB2DatabaseSnapshotBroker.class);
 
     /**
-     * Query to get the values of the database charge.
+     * Query to get the values of the database charge. The columns are taken
+     * from the descriptors of the snapshot.
      */
     private static final String QUERY = "SELECT DBPARTITIONNUM, "
-            + "COMMIT_SQL_STMTS, SELECT_SQL_STMTS, UID_SQL_STMTS, "
-            + "POOL_DATA_P_READS, POOL_INDEX_P_READS, "
-            + "POOL_TEMP_DATA_P_READS, POOL_TEMP_INDEX_P_READS, "
-            + "TOTAL_SORT_TIME, TOTAL_SORTS " + "FROM SYSIBMADM.SNAPDB";
+            + SnapshotColumn.getColumnList("%s") + " FROM "
+            + SnapshotColumn.VIEW;
 
     /**
      * Tester.
@@ -174,6 +143,45 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
         // CHECKSTYLE:ON
     }
 
+    /**
+     * Checks if the snapshot can be retrieved from a server with the given
+     * version.
+     *
+     * @param majorVersion
+     *            Major version of the server.
+     * @param minorVersion
+     *            Minor version of the server.
+     * @return True if the administrative view can be queried.
+     */
+    static boolean isCompatible(final DB2MajorVersion majorVersion,
+            final DB2MinorVersion minorVersion) {
+        // This query cannot be executed in a database with db2 v9.5 or before.
+        return majorVersion.isEqualOrMoreRecentThan(DB2MajorVersion.V10_1)
+                || majorVersion.isEqualThan(DB2MajorVersion.V9_7)
+                && minorVersion.isEqualOrMoreRecentThan(DB2MinorVersion.V9_7_1)
+                || majorVersion.isEqualThan(DB2MajorVersion.V9_8)
+                && minorVersion.isEqualOrMoreRecentThan(DB2MinorVersion.V9_8_2);
+    }
+
+    /**
+     * Members of the rows of the current collection, not yet published.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private transient int[] pendingMembers = new int[DB2DatabaseSnapshotBroker.INITIAL_ROWS];
+
+    /**
+     * Quantity of rows of the current collection.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private transient int pendingRows;
+
+    /**
+     * Counters of the rows of the current collection, not yet published.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private transient long[] pendingValues = new long[DB2DatabaseSnapshotBroker.INITIAL_ROWS
+            * DatabaseSnapshot.COUNTERS];
+
     /**
      * Creates the object associating a connection properties.
      *
@@ -199,76 +207,67 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
      *             If any problem appears while reading the info.
      */
     private void assignValues(final ResultSet res) throws SQLException {
-        int dbpartitionnum;
-        long commitSQLstmts;
-        long selectSQLstmts;
-        long uidSQLstmts;
-        long bpdata;
-        long bpindex;
-        long bptempdata;
-        long bptempindex;
-        long totalsorttime;
-        long totalsorts;
-        DatabaseSnapshot snap;
         while (res.next()) {
-            // Partition.
-            dbpartitionnum = res
-                    .getInt(DB2DatabaseSnapshotBroker.C_DBPARTITIONNUM);
-            // Quantity of commits.
-            commitSQLstmts = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_COMMIT_SQL_STMTS);
-            // Quantity of sql.
-            selectSQLstmts = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_SELECT_SQL_STMTS);
-            // Quantity of modifications.
-            uidSQLstmts = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_UID_SQL_STMTS);
-            // Quantity of bufferpool physical reads for data.
-            bpdata = res.getLong(DB2DatabaseSnapshotBroker.C_POOL_DATA_P_READS);
-            // Quantity of bufferpool physical reads for index.
-            bpindex = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_POOL_INDEX_P_READS);
-            // Quantity of bufferpool physical reads for temporal data.
-            bptempdata = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_POOL_TEMP_DATA_P_READS);
-            // Quantity of bufferpool physical reads for temporal index.
-            bptempindex = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_POOL_TEMP_INDEX_P_READS);
-            // Total sort time
-            totalsorttime = res
-                    .getLong(DB2DatabaseSnapshotBroker.C_TOT_SORT_TIME);
-            // Total sorts
-            totalsorts = res.getLong(DB2DatabaseSnapshotBroker.C_TOTAL_SORTS);
+            this.assignValues(
+                    res.getInt(DB2DatabaseSnapshotBroker.C_DBPARTITIONNUM),
+                    res, DB2DatabaseSnapshotBroker.C_FIRST_COUNTER);
+        }
+    }
 
-            DB2DatabaseSnapshotBroker.LOGGER.info(
-                    "{}::Part{},commit{},select{},uid{}", new Object[] {
+    /**
+     * Assigns the values of a row (one member or database partition) of the
+     * snapshot to the counters of the current collection. The counters are
+     * read from consecutive columns, in the order of {@link SnapshotColumn}.
+     * The rows are kept in arrays of primitives, that grow when there are
+     * more members. The values are not visible until they are published.
+     *
+     * @param dbpartitionnum
+     *            Partition.
+     * @param res
+     *            Result set positioned in the row.
+     * @param firstColumn
+     *            Position of the column of the first counter.
+     * @throws SQLException
+     *             If any problem appears while reading the info.
+     */
+    void assignValues(final int dbpartitionnum, final ResultSet res,
+            final int firstColumn) throws SQLException {
+        if (this.pendingRows == this.pendingMembers.length) {
+            this.pendingMembers = Arrays.copyOf(this.pendingMembers,
+                    this.pendingRows * 2);
+            this.pendingValues = Arrays.copyOf(this.pendingValues,
+                    this.pendingMembers.length * DatabaseSnapshot.COUNTERS);
+        }
+        final int offset = this.pendingRows * DatabaseSnapshot.COUNTERS;
+        for (int k = 0; k < DatabaseSnapshot.COUNTERS; k++) {
+            this.pendingValues[offset + k] = res.getLong(firstColumn + k);
+        }
+        final long commits = this.pendingValues[offset
+                + DatabaseSnapshot.COMMITS];
+        if (DB2DatabaseSnapshotBroker.LOGGER.isInfoEnabled()) {
+            DB2DatabaseSnapshotBroker.LOGGER.info("{}::Part{},{}",
+                    new Object[] {
                             this.getDatabaseConnection().getUrl(),
-                            dbpartitionnum, commitSQLstmts, +selectSQLstmts,
-                            uidSQLstmts });
-            snap = this.getDatabase().getSnap();
-            if (snap == null) {
-                if (DB2DatabaseSnapshotBroker.LOGGER.isDebugEnabled()) {
-                    DB2DatabaseSnapshotBroker.LOGGER.debug(this
-                            .getDatabaseConnection().getUrl()
-                            + "::Creating snap");
-                }
-                snap = new DatabaseSnapshot(this.getDatabase(), dbpartitionnum,
-                        selectSQLstmts, uidSQLstmts, bpdata, bpindex,
-                        bptempdata, bptempindex);
-                this.getDatabase().setSnap(snap);
-            } else {
-                if (DB2DatabaseSnapshotBroker.LOGGER.isDebugEnabled()) {
-                    DB2DatabaseSnapshotBroker.LOGGER.debug(this
-                            .getDatabaseConnection().getUrl()
-                            + "::Snap updated");
-                }
-                snap.setValues(dbpartitionnum, selectSQLstmts, uidSQLstmts,
-                        bpdata, bpindex, bptempdata, bptempindex);
-            }
-            snap.setCommits(commitSQLstmts);
-            snap.setTotalSortTime(totalsorttime);
-            snap.setTotalSorts(totalsorts);
+                            dbpartitionnum,
+                            Arrays.toString(Arrays.copyOfRange(
+                                    this.pendingValues, offset, offset
+                                            + DatabaseSnapshot.COUNTERS)) });
+        }
+        final DatabaseSnapshot snap = this.getDatabase().getSnap();
+        final int index;
+        if (snap == null) {
+            index = -1;
+        } else {
+            index = snap.getMemberIndex(dbpartitionnum);
         }
+        if (index >= 0 && commits < snap.getCommits(index)) {
+            // The counters were reset: the instance was restarted.
+            DB2DatabaseSnapshotBroker.LOGGER.info("{}::Instance restarted",
+                    this.getDatabaseConnection().getUrl());
+            DB2Helper.invalidateVersions(this.getDatabaseConnection());
+        }
+        this.pendingMembers[this.pendingRows] = dbpartitionnum;
+        this.pendingRows++;
     }
 
     /*
@@ -286,34 +285,29 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
                 .getDatabaseConnection());
         final DB2MinorVersion minorVersion = DB2Helper.getDB2MinorVersion(this
                 .getDatabaseConnection());
-        // This query cannot be executed in a database with db2 v9.5 or before.
-        if (majorVersion.isEqualOrMoreRecentThan(DB2MajorVersion.V10_1)
-                || majorVersion.isEqualThan(DB2MajorVersion.V9_7)
-                && minorVersion.isEqualOrMoreRecentThan(DB2MinorVersion.V9_7_1)
-                || majorVersion.isEqualThan(DB2MajorVersion.V9_8)
-                && minorVersion.isEqualOrMoreRecentThan(DB2MinorVersion.V9_8_2)) {
+        if (DB2DatabaseSnapshotBroker
+                .isCompatible(majorVersion, minorVersion)) {
 
             Connection connection = null;
             ResultSet res = null;
             try {
-                connection = ConnectionPoolsManager.getInstance()
-                        .getConnectionPool(this.getDatabaseConnection())
-                        .getConnection(this.getDatabaseConnection());
-                final PreparedStatement stmt = connection
-                        .prepareStatement(DB2DatabaseSnapshotBroker.QUERY);
+                final AbstractConnectionPool pool = ConnectionPoolsManager
+                        .getInstance().getConnectionPool(
+                                this.getDatabaseConnection());
+                connection = pool.getConnection(this.getDatabaseConnection());
+                // The statement is kept by the pool, thus it is not closed.
+                final PreparedStatement stmt = pool.prepareStatement(connection,
+                        DB2DatabaseSnapshotBroker.QUERY);
+                stmt.setQueryTimeout(this.getDatabase().getQueryTimeout(
+                        MetricFamily.SNAPSHOT));
                 res = stmt.executeQuery();
 
                 this.assignValues(res);
-                this.getDatabase().getSnap().updateLastSnapshot();
+                this.publishSnapshot();
                 res.close();
-                stmt.close();
-                ConnectionPoolsManager
-                        .getInstance()
-                        .getConnectionPool(this.getDatabaseConnection())
-                        .closeConnection(this.getDatabaseConnection(),
-                                connection);
+                pool.closeConnection(this.getDatabaseConnection(), connection);
             } catch (final SQLException sqle) {
-                DB2Helper.processException(sqle);
+                this.processException(sqle);
                 throw new DatabaseConnectionException(sqle);
             } finally {
                 try {
@@ -349,6 +343,29 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
 
     }
 
+    /**
+     * Publishes the snapshot of the current collection in the database, if
+     * any row was read. The deltas of each member are calculated against the
+     * same member of the published snapshot.
+     */
+    void publishSnapshot() {
+        if (this.pendingRows > 0) {
+            if (DB2DatabaseSnapshotBroker.LOGGER.isDebugEnabled()) {
+                DB2DatabaseSnapshotBroker.LOGGER.debug(this
+                        .getDatabaseConnection().getUrl()
+                        + "::Snap with " + this.pendingRows + " members");
+            }
+            this.getDatabase().setSnap(
+                    new DatabaseSnapshot(this.getDatabase(), this.getDatabase()
+                            .getSnap(), this.pendingMembers,
+                            this.pendingValues, this.pendingRows, System
+                                    .currentTimeMillis(), System.nanoTime()));
+            this.pendingRows = 0;
+            SnapshotStore.getInstance().requestSave(
+                    DB2DatabasesManager.getInstance().getDatabases());
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -357,7 +374,7 @@ public final class DB2DatabaseSnapshotBroker extends AbstractDB2Broker
     @Override
     @SuppressWarnings("PMD.CommentRequired")
     public void run() {
-        super.setLock();
+        super.execute();
     }
 
 }
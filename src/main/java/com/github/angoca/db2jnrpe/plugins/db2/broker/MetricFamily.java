@@ -0,0 +1,135 @@
+package com.github.angoca.db2jnrpe.plugins.db2.broker;
+
+import java.util.Locale;
+
+import com.github.angoca.db2jnrpe.plugins.db2.SnapshotColumn;
+
+/**
+ * Families of metrics that are collected from a database. Each family has a
+ * part of the combined query; all parts return the same columns, thus they
+ * can be retrieved in a single execution, and the tag of the first column
+ * indicates the family of each row.
+ * <p>
+ * The columns are: family tag, name, member, and a numeric value per column
+ * of the snapshot ({@link SnapshotColumn}). The families with fewer values
+ * fill the rest with zeros.
+ * <p>
+ * Each family has a query timeout, that can be changed with a system property
+ * db2jnrpe.timeout.&lt;family&gt; (in seconds), for example
+ * -Ddb2jnrpe.timeout.bufferpool=20.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public enum MetricFamily {
+    /**
+     * Logical and physical reads per bufferpool.
+     */
+    BUFFERPOOL("B", 10, "SELECT 'B' AS FAMILY, "
+            + "CAST(BP_NAME AS VARCHAR(128)) AS NAME, "
+            + "CAST(MEMBER AS INTEGER) AS MEMBER, "
+            + "CAST(POOL_DATA_L_READS + POOL_TEMP_DATA_L_READS + "
+            + "POOL_XDA_L_READS + POOL_TEMP_XDA_L_READS + "
+            + "POOL_INDEX_L_READS + POOL_TEMP_INDEX_L_READS AS BIGINT), "
+            + "CAST(POOL_DATA_P_READS + POOL_TEMP_DATA_P_READS + "
+            + "POOL_INDEX_P_READS + POOL_TEMP_INDEX_P_READS + "
+            + "POOL_XDA_P_READS + POOL_TEMP_XDA_P_READS AS BIGINT)"
+            + MetricFamily.padding(2) + " FROM TABLE(MON_GET_BUFFERPOOL('', -2)) AS METRICS "
+            + "WHERE BP_NAME NOT LIKE 'IBMSYSTEMBP%'"),
+    /**
+     * Database snapshot: statements, physical reads and sorts.
+     */
+    SNAPSHOT("S", 10, "SELECT 'S' AS FAMILY, "
+            + "CAST(NULL AS VARCHAR(128)) AS NAME, "
+            + "CAST(DBPARTITIONNUM AS INTEGER) AS MEMBER, "
+            + SnapshotColumn.getColumnList("CAST(%s AS BIGINT)") + " FROM "
+            + SnapshotColumn.VIEW);
+
+    /**
+     * Returns the family that corresponds to a tag.
+     *
+     * @param tag
+     *            Tag of the first column of the combined query.
+     * @return The corresponding family, or null if the tag is unknown.
+     */
+    static MetricFamily fromTag(final String tag) {
+        MetricFamily ret = null;
+        for (final MetricFamily family : MetricFamily.values()) {
+            if (family.tag.equals(tag)) {
+                ret = family;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the columns with zeros that complete the values of a family, in
+     * order to have the same columns in all the parts of the combined query.
+     *
+     * @param values
+     *            Quantity of values of the family.
+     * @return Columns with zeros, each one preceded by a comma.
+     */
+    private static String padding(final int values) {
+        final StringBuilder ret = new StringBuilder();
+        for (int i = values; i < SnapshotColumn.values().length; i++) {
+            ret.append(", CAST(0 AS BIGINT)");
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Part of the combined query for this family.
+     */
+    private final String query;
+
+    /**
+     * Maximum time of the query in seconds.
+     */
+    private final int queryTimeout;
+
+    /**
+     * Tag that identifies the rows of this family.
+     */
+    private final String tag;
+
+    /**
+     * Constructor for a family of metrics.
+     *
+     * @param familyTag
+     *            Tag that identifies the rows.
+     * @param timeout
+     *            Default maximum time of the query in seconds.
+     * @param familyQuery
+     *            Part of the combined query.
+     */
+    private MetricFamily(final String familyTag, final int timeout,
+            final String familyQuery) {
+        this.tag = familyTag;
+        this.queryTimeout = timeout;
+        this.query = familyQuery;
+    }
+
+    /**
+     * Returns the part of the combined query for this family.
+     *
+     * @return Query of the family.
+     */
+    final String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Returns the maximum time of the queries of this family. It is the value
+     * of the system property db2jnrpe.timeout.&lt;family&gt;, or the default
+     * timeout of the family.
+     *
+     * @return Timeout in seconds.
+     */
+    public final int getQueryTimeout() {
+        return Integer.getInteger(
+                "db2jnrpe.timeout." + this.name().toLowerCase(Locale.ENGLISH),
+                this.queryTimeout);
+    }
+}
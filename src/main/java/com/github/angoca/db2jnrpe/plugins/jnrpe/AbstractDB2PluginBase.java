@@ -8,7 +8,12 @@ import it.jnrpe.plugins.PluginBase;
 import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
 import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.database.pools.PoolProfile;
 import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
+import com.github.angoca.db2jnrpe.plugins.db2.TargetsWarmUp;
 
 /**
  * This class contains the common methods for all DB2 plugins.
@@ -19,6 +24,37 @@ import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
 @SuppressWarnings("PMD.CommentSize")
 public abstract class AbstractDB2PluginBase extends PluginBase {
 
+    /**
+     * Milliseconds in a minute.
+     */
+    private static final long MILLISECONDS_PER_MINUTE = 60000;
+    /**
+     * Milliseconds in a second.
+     */
+    private static final long MILLISECONDS_PER_SECOND = 1000;
+    /**
+     * Message when a window is given with a member: the time series are for
+     * the whole database.
+     */
+    static final String WINDOW_WITH_MEMBER = "The window is only available "
+            + "for the whole database";
+    /**
+     * Target resolved for {@link #targetLine}.
+     */
+    private transient TargetHandle target;
+    /**
+     * Command line of the resolved target. The same command line is given to
+     * all the phases of a check.
+     */
+    private transient ICommandLine targetLine;
+
+    static {
+        // The databases of the targets file are prepared when the plugin
+        // classes are initialized: when the repository initializes them, or
+        // at the latest when the first plugin is created.
+        TargetsWarmUp.start();
+    }
+
     /**
      * Empty constructor.
      */
@@ -28,7 +64,8 @@ public abstract class AbstractDB2PluginBase extends PluginBase {
 
     /**
      * Given the connection parameters, it returns an object that wraps the
-     * pooled connection.
+     * pooled connection. The pool is configured by the profile of the command
+     * line, or by the default profile.
      *
      * @param line
      *            Handler that contains the parameters.
@@ -40,9 +77,198 @@ public abstract class AbstractDB2PluginBase extends PluginBase {
             final ICommandLine line) throws MetricGatheringException {
         assert line != null;
 
-        final String[] values = AbstractDB2PluginBase.getUrlValues(line);
+        final AbstractDatabaseConnection dbConn = this.getTarget(line)
+                .getConnection();
+        assert dbConn != null;
+        return dbConn;
+    }
+
+    /**
+     * Returns the database of the command line, and it creates it if it does
+     * not exist. The options of the command line that are related to the
+     * database are set.
+     *
+     * @param line
+     *            Command line.
+     * @return Database.
+     * @throws MetricGatheringException
+     *             If the target of the command line cannot be resolved.
+     */
+    protected final DB2Database getDatabase(final ICommandLine line)
+            throws MetricGatheringException {
+        final DB2Database db2Database = this.getTarget(line).getDatabase();
+        db2Database.setQueryTimeout(this.getQueryTimeout(line));
+        final long frequency = this.getFrequency(line);
+        if (frequency > 0) {
+            db2Database.setFrequency(frequency);
+        }
+        return db2Database;
+    }
+
+    /**
+     * Retrieves an ID to identify a database.
+     *
+     * @param line
+     *            Command line.
+     * @return Unique URL to the database.
+     * @throws MetricGatheringException
+     *             If the target of the command line cannot be resolved.
+     */
+    protected final String getId(final ICommandLine line)
+            throws MetricGatheringException {
+        return this.getTarget(line).getId();
+    }
+
+    /**
+     * Returns the frequency to collect the values of the database.
+     *
+     * @param line
+     *            Command line.
+     * @return Frequency in milliseconds, or zero to keep the frequency of the
+     *         database.
+     */
+    protected final long getFrequency(final ICommandLine line) {
+        long ret = 0;
+        final String frequency = line.getOptionValue("frequency");
+        if (frequency != null) {
+            try {
+                ret = Long.parseLong(frequency)
+                        * AbstractDB2PluginBase.MILLISECONDS_PER_SECOND;
+            } catch (final NumberFormatException ne) {
+                this.log.error("Invalid frequency " + frequency);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the member (or database partition) to check.
+     *
+     * @param line
+     *            Command line.
+     * @return Number of the member, or -1 to check the whole database.
+     */
+    protected final int getMember(final ICommandLine line) {
+        int ret = -1;
+        final String member = line.getOptionValue("member");
+        if (member != null) {
+            try {
+                ret = Integer.parseInt(member);
+            } catch (final NumberFormatException ne) {
+                this.log.error("Invalid member " + member);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the maximum time of the queries to the database.
+     *
+     * @param line
+     *            Command line.
+     * @return Timeout in seconds, or zero to use the timeout of each family of
+     *         metrics.
+     */
+    protected final int getQueryTimeout(final ICommandLine line) {
+        int ret = 0;
+        final String timeout = line.getOptionValue("querytimeout");
+        if (timeout != null) {
+            try {
+                ret = Integer.parseInt(timeout);
+            } catch (final NumberFormatException ne) {
+                this.log.error("Invalid query timeout " + timeout);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the maximum time to wait for the first values when the cache is
+     * cold. This value should be lower than the NRPE timeout.
+     *
+     * @param line
+     *            Command line.
+     * @return Time to wait in milliseconds, or zero to not wait.
+     */
+    protected final long getWait(final ICommandLine line) {
+        long ret = 0;
+        final String wait = line.getOptionValue("wait");
+        if (wait != null) {
+            try {
+                ret = Long.parseLong(wait);
+            } catch (final NumberFormatException ne) {
+                this.log.error("Invalid wait time " + wait);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the window of time of the rates. The rates of a window are
+     * calculated from the time series of the database.
+     *
+     * @param line
+     *            Command line.
+     * @return Window in milliseconds, or zero to use the last two reads.
+     */
+    protected final long getWindow(final ICommandLine line) {
+        long ret = 0;
+        final String window = line.getOptionValue("window");
+        if (window != null) {
+            try {
+                ret = Long.parseLong(window)
+                        * AbstractDB2PluginBase.MILLISECONDS_PER_MINUTE;
+            } catch (final NumberFormatException ne) {
+                this.log.error("Invalid window " + window);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the resolved target of a command line. The target is resolved
+     * once per check: the phases of the check receive the same command line,
+     * and the other checks with the same options find it in the cache of the
+     * handles.
+     *
+     * @param line
+     *            Command line.
+     * @return Resolved target.
+     * @throws MetricGatheringException
+     *             If the port is invalid, or if the connection pool cannot be
+     *             created.
+     */
+    final TargetHandle getTarget(final ICommandLine line)
+            throws MetricGatheringException {
+        TargetHandle ret = this.target;
+        if (ret == null || this.targetLine != line || ret.isEvicted()) {
+            final TargetHandle.Key key = new TargetHandle.Key(line);
+            ret = TargetHandle.get(key);
+            if (ret == null) {
+                ret = this.resolve(key);
+                TargetHandle.put(key, ret);
+            }
+            this.target = ret;
+            this.targetLine = line;
+        }
+        return ret;
+    }
+
+    /**
+     * Resolves the target of some options: the connection properties, their
+     * connection pool and the database.
+     *
+     * @param key
+     *            Options of the command line.
+     * @return Resolved target.
+     * @throws MetricGatheringException
+     *             If the port is invalid, or if the connection pool cannot be
+     *             created.
+     */
+    private TargetHandle resolve(final TargetHandle.Key key)
+            throws MetricGatheringException {
         int portNumber;
-        final String portNumberString = values[1];
+        final String portNumberString = key.getPort();
         try {
             portNumber = Integer.valueOf(portNumberString);
         } catch (final NumberFormatException ne) {
@@ -50,71 +276,34 @@ public abstract class AbstractDB2PluginBase extends PluginBase {
             throw new MetricGatheringException(
                     "Invalid format for port number", Status.UNKNOWN, ne);
         }
-        final String hostname = values[0];
-        final String databaseName = values[2];
-        final String username = line.getOptionValue("username");
-        final String password = line.getOptionValue("password");
+        final String hostname = key.getHostname();
+        final String databaseName = key.getDatabase();
+        final String username = key.getUsername();
         this.log.debug("Hostname:" + hostname + ";Port:" + portNumber + ";DB:"
                 + databaseName + ";User:" + username);
 
         @SuppressWarnings("PMD.LawOfDemeter")
         final String dbConnection = DB2Connection.class.getName();
-        @SuppressWarnings("PMD.LawOfDemeter")
-        final String connectionPool = com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari.class
-                .getName();
-        // connectionPool =
-        // com.github.angoca.db2jnrpe.database.pools.c3p0.DbcpC3p0.class
-        // .getName();
-        // connectionPool =
-        // com.github.angoca.db2jnrpe.database.pools.db2direct.DbcpDb2Direct.class
-        // .getName();
-        this.log.debug("Connection pool: " + connectionPool);
+        final PoolProfile profile = PoolProfile.getProfile(key.getProfile());
+        this.log.debug("Connection pool: " + profile);
         AbstractDatabaseConnection dbConn = null;
         try {
             dbConn = DatabaseConnectionsManager.getInstance()
-                    .getDatabaseConnection(connectionPool, dbConnection,
+                    .getDatabaseConnection(profile, dbConnection,
                             hostname, portNumber, databaseName, username,
-                            password);
+                            key.getPassword());
+            // The pool is kept in the connection properties.
+            ConnectionPoolsManager.getInstance().getConnectionPool(dbConn);
         } catch (final DatabaseConnectionException dbe) {
             this.log.fatal("Error while establishing conncetion", dbe);
             throw new MetricGatheringException("Error accesing the database",
                     Status.UNKNOWN, dbe);
         }
-
-        assert dbConn != null;
-        return dbConn;
-    }
-
-    /**
-     * Retrieves an ID to identify a database.
-     *
-     * @param line
-     *            Command line.
-     * @return Unique URL to the database.
-     */
-    protected static final String getId(final ICommandLine line) {
-        String ret;
-        final String[] values = AbstractDB2PluginBase.getUrlValues(line);
-        ret = values[0] + ':' + values[1] + '/' + values[2];
-        return ret;
-    }
-
-    /**
-     * Return the connection values.
-     *
-     * @param line
-     *            Command line.
-     * @return Array with parameters.
-     */
-    private static String[] getUrlValues(final ICommandLine line) {
-        final String[] ret = new String[3];
-        final String hostname = line.getOptionValue("hostname");
-        final String portNumberString = line.getOptionValue("port");
-        final String databaseName = line.getOptionValue("database");
-        ret[0] = hostname;
-        ret[1] = portNumberString;
-        ret[2] = databaseName;
-        return ret;
+        // A warm-up with another profile does not keep its connections.
+        TargetsWarmUp.resolved(key.getId(), dbConn);
+        final DB2Database db2Database = DB2DatabasesManager.getInstance()
+                .getOrCreateDatabase(key.getId());
+        return new TargetHandle(dbConn, db2Database);
     }
 
 }
\ No newline at end of file
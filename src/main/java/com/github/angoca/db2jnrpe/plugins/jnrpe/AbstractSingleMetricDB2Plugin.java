@@ -13,7 +13,6 @@ import java.util.Collection;
 import java.util.List;
 
 import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
-import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
 import com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot;
 import com.github.angoca.db2jnrpe.plugins.db2.UnknownValueException;
 
@@ -39,8 +38,13 @@ public abstract class AbstractSingleMetricDB2Plugin extends
     public final void configureThresholdEvaluatorBuilder(
             final ThresholdsEvaluatorBuilder thrb, final ICommandLine line)
             throws BadThresholdException {
-        final String dbId = AbstractDB2PluginBase.getId(line);
-        this.log.warn("Database: " + dbId);
+        try {
+            this.log.warn("Database: " + this.getId(line));
+        } catch (final MetricGatheringException e) {
+            this.log.fatal("Error while resolving the database", e);
+            throw new BadThresholdException("Problem resolving the database: "
+                    + e.getMessage(), e);
+        }
         setThreshold(thrb, line);
 
         // Metadata
@@ -48,6 +52,7 @@ public abstract class AbstractSingleMetricDB2Plugin extends
         if (metadata) {
             thrb.withLegacyThreshold("Cache-data", null, null, null);
             thrb.withLegacyThreshold("Cache-old", null, null, null);
+            thrb.withLegacyThreshold("Query-timeouts", null, null, null);
         }
     }
 
@@ -75,19 +80,13 @@ public abstract class AbstractSingleMetricDB2Plugin extends
             throws MetricGatheringException {
         final List<Metric> res = new ArrayList<Metric>();
 
-        final String identification = AbstractDB2PluginBase.getId(line);
-        DB2Database db2Database = DB2DatabasesManager.getInstance()
-                .getDatabase(identification);
-        if (db2Database == null) {
-            db2Database = new DB2Database(identification);
-            DB2DatabasesManager.getInstance().add(identification, db2Database);
-        }
-        DatabaseSnapshot snapshot;
+        final String identification = this.getId(line);
+        final DB2Database db2Database = this.getDatabase(line);
         try {
-            snapshot = db2Database.getSnapshotAndRefresh(this
-                    .getConnection(line));
-
-            addMetric(res, snapshot);
+            final DatabaseSnapshot snapshot = db2Database
+                    .getSnapshotAndRefresh(this.getConnection(line),
+                            this.getWait(line));
+            this.addMetrics(res, db2Database, snapshot, line);
         } catch (final UnknownValueException e) {
             this.log.warn(identification + "::No values");
             throw new MetricGatheringException(
@@ -104,6 +103,8 @@ public abstract class AbstractSingleMetricDB2Plugin extends
                     .currentTimeMillis()
                     - db2Database.getSnap().getLastSnapshotRefresh()), null,
                     null));
+            res.add(new Metric("Query-timeouts", "", new BigDecimal(
+                    db2Database.getTimeouts()), null, null));
         }
         return res;
     }
@@ -115,7 +116,39 @@ public abstract class AbstractSingleMetricDB2Plugin extends
      *            List of metrics to return.
      * @param snapshot
      *            Snapshot of the database.
+     * @throws UnknownValueException
+     *             If a rate cannot be calculated.
      */
-    abstract void addMetric(List<Metric> res, DatabaseSnapshot snapshot);
+    abstract void addMetric(List<Metric> res, DatabaseSnapshot snapshot)
+            throws UnknownValueException;
+
+    /**
+     * Sets the values of the command line in the metrics. By default, the
+     * values are the rates of the window of the command line, or the rates
+     * between the last two snapshots.
+     * 
+     * @param res
+     *            List of metrics to return.
+     * @param db2Database
+     *            Database of the command line.
+     * @param snapshot
+     *            Last snapshot of the database.
+     * @param line
+     *            Command line that contain the values.
+     * @throws UnknownValueException
+     *             If there are not enough snapshots.
+     * @throws MetricGatheringException
+     *             If a value of the command line is not valid.
+     */
+    void addMetrics(final List<Metric> res, final DB2Database db2Database,
+            final DatabaseSnapshot snapshot, final ICommandLine line)
+            throws UnknownValueException, MetricGatheringException {
+        DatabaseSnapshot values = snapshot;
+        final long window = this.getWindow(line);
+        if (window > 0) {
+            values = db2Database.getSnapshot(window);
+        }
+        this.addMetric(res, values);
+    }
 
 }
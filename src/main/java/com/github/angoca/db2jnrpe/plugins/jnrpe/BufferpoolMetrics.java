@@ -0,0 +1,150 @@
+package com.github.angoca.db2jnrpe.plugins.jnrpe;
+
+import it.jnrpe.plugins.Metric;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.angoca.db2jnrpe.plugins.db2.BufferpoolRead;
+
+/**
+ * Renders the hit ratio of the bufferpools as metrics. This is executed for
+ * each bufferpool of each check, thus it avoids the temporal objects: the
+ * ratios of the messages are taken from a preallocated table with one
+ * decimal, and the messages are written in the same buffer, without format
+ * parsing. The values of the metrics are the exact ratios, because they are
+ * compared with the thresholds.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+final class BufferpoolMetrics {
+
+    /**
+     * A thousand.
+     */
+    private static final int KILO = 1000;
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(BufferpoolMetrics.class);
+    /**
+     * A million.
+     */
+    private static final int MEGA = 1000000;
+    /**
+     * Initial size of the buffer of the messages.
+     */
+    private static final int MESSAGE_SIZE = 128;
+    /**
+     * Tenths in a unit.
+     */
+    private static final int TENTHS = 10;
+    /**
+     * Ratios from 0.0% to 100.0%, with one decimal.
+     */
+    private static final BigDecimal[] RATIOS = new BigDecimal[100 * BufferpoolMetrics.TENTHS + 1];
+
+    static {
+        for (int i = 0; i < BufferpoolMetrics.RATIOS.length; i++) {
+            BufferpoolMetrics.RATIOS[i] = BigDecimal.valueOf(i, 1);
+        }
+    }
+
+    /**
+     * Creates the metrics of the bufferpools. The detail of the ratios is
+     * logged only when the debug level is enabled.
+     *
+     * @param res
+     *            List of metrics to return.
+     * @param bufferpoolReads
+     *            Reads of each bufferpool.
+     */
+    static void addMetrics(final List<Metric> res,
+            final Map<String, BufferpoolRead> bufferpoolReads) {
+        final boolean debug = BufferpoolMetrics.LOGGER.isDebugEnabled();
+        final StringBuilder message = new StringBuilder(
+                BufferpoolMetrics.MESSAGE_SIZE);
+        StringBuilder logMessage = null;
+        if (debug) {
+            logMessage = new StringBuilder("Metrics: ");
+        }
+        for (final Entry<String, BufferpoolRead> entry : bufferpoolReads
+                .entrySet()) {
+            final String name = entry.getKey();
+            final BufferpoolRead bpDesc = entry.getValue();
+            final double exact = bpDesc.getLastRatio();
+            final BigDecimal ratio = BufferpoolMetrics.getRatio(exact);
+            message.setLength(0);
+            message.append(name).append(" at ");
+            if (bpDesc.getMember() == BufferpoolRead.ALL_MEMBERS) {
+                message.append("all members");
+            } else {
+                message.append(bpDesc.getMember());
+            }
+            message.append(" has ");
+            BufferpoolMetrics.appendSimplified(message,
+                    bpDesc.getLogicalReads());
+            message.append(" LR and ");
+            BufferpoolMetrics.appendSimplified(message,
+                    bpDesc.getPhysicalReads());
+            message.append(" PR, ratio of ").append(ratio).append("%.");
+            res.add(new Metric(name, message.toString(), BigDecimal
+                    .valueOf(exact), null, null));
+            if (debug) {
+                logMessage.append("BP ").append(name).append(": ")
+                        .append(ratio).append("% ");
+            }
+        }
+        if (debug) {
+            BufferpoolMetrics.LOGGER.debug("{} metrics. {}", res.size(),
+                    logMessage);
+        }
+    }
+
+    /**
+     * Writes a value with a simplified notation for big values.
+     *
+     * @param buffer
+     *            Buffer where the value is written.
+     * @param value
+     *            Value with a lot of digits.
+     */
+    static void appendSimplified(final StringBuilder buffer, final long value) {
+        if (value > BufferpoolMetrics.MEGA) {
+            buffer.append(value / BufferpoolMetrics.MEGA).append('M');
+        } else if (value > BufferpoolMetrics.KILO) {
+            buffer.append(value / BufferpoolMetrics.KILO).append('K');
+        } else {
+            buffer.append(value);
+        }
+    }
+
+    /**
+     * Returns a ratio rounded to one decimal, from the preallocated table. It
+     * is only for the messages; the thresholds use the exact ratio.
+     *
+     * @param ratio
+     *            Ratio between 0 and 100.
+     * @return Rounded ratio.
+     */
+    static BigDecimal getRatio(final double ratio) {
+        final int index = (int) Math.round(ratio * BufferpoolMetrics.TENTHS);
+        return BufferpoolMetrics.RATIOS[Math.max(0,
+                Math.min(BufferpoolMetrics.RATIOS.length - 1, index))];
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private BufferpoolMetrics() {
+        // Nothing.
+    }
+}
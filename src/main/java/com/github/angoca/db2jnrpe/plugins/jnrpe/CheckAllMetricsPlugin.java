@@ -0,0 +1,354 @@
+package com.github.angoca.db2jnrpe.plugins.jnrpe;
+
+import it.jnrpe.ICommandLine;
+import it.jnrpe.plugins.Metric;
+import it.jnrpe.plugins.MetricGatheringException;
+import it.jnrpe.utils.BadThresholdException;
+import it.jnrpe.utils.thresholds.ThresholdsEvaluatorBuilder;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+import com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot;
+import com.github.angoca.db2jnrpe.plugins.db2.UnknownValueException;
+
+/**
+ * This plugin evaluates all the metrics of the database snapshot in one
+ * check: the load, the physical IO per transaction, the average sorting time
+ * and the sorting time per transaction. All of them are calculated from the
+ * same snapshot, and the check returns the worst status with the performance
+ * data of all metrics.<br/>
+ * Each metric has its own thresholds, given by the options with the prefix of
+ * the metric: load, io, avgsort and sorttrans; for example, --io-warning.
+ * Without them, the default thresholds of each metric are used.<br/>
+ * In order to execute this plugin, it is necessary to have DB2 in at least one
+ * of the following version:
+ * <ul>
+ * <li>At least v9.7 FP1</li>
+ * <li>At least v9.8 FP2</li>
+ * <li>v10.1 or newer</li>
+ * </ul>
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class CheckAllMetricsPlugin extends AbstractSingleMetricDB2Plugin {
+
+    /**
+     * Command line of a metric. The warning and critical options are read
+     * with the prefix of the metric; the other options are the same.
+     */
+    private static final class MetricCommandLine implements ICommandLine {
+
+        /**
+         * Command line of the check.
+         */
+        private final ICommandLine line;
+        /**
+         * Prefix of the options of the metric.
+         */
+        private final String prefix;
+
+        /**
+         * Creates the command line of a metric.
+         *
+         * @param metric
+         *            Prefix of the options of the metric.
+         * @param commandLine
+         *            Command line of the check.
+         */
+        MetricCommandLine(final String metric, final ICommandLine commandLine) {
+            this.prefix = metric + '-';
+            this.line = commandLine;
+        }
+
+        /**
+         * Returns the name of an option for the metric.
+         *
+         * @param optionName
+         *            Name of the option.
+         * @return Name with the prefix for the thresholds, or the same name.
+         */
+        private String getName(final String optionName) {
+            String ret = optionName;
+            if ("warning".equals(optionName) || "critical".equals(optionName)) {
+                ret = this.prefix + optionName;
+            }
+            return ret;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValue(char)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public String getOptionValue(final char shortOptionName) {
+            return this.line.getOptionValue(shortOptionName);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValue(char, java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public String getOptionValue(final char shortOptionName,
+                final String defaultValue) {
+            return this.line.getOptionValue(shortOptionName, defaultValue);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValue(java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public String getOptionValue(final String optionName) {
+            return this.line.getOptionValue(this.getName(optionName));
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValue(java.lang.String,
+         * java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public String getOptionValue(final String optionName,
+                final String defaultValue) {
+            return this.line.getOptionValue(this.getName(optionName),
+                    defaultValue);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValues(char)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public List<String> getOptionValues(final char shortOptionName) {
+            return this.line.getOptionValues(shortOptionName);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#getOptionValues(java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public List<String> getOptionValues(final String optionName) {
+            return this.line.getOptionValues(this.getName(optionName));
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#hasOption(char)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public boolean hasOption(final char shortOptionName) {
+            return this.line.hasOption(shortOptionName);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see it.jnrpe.ICommandLine#hasOption(java.lang.String)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public boolean hasOption(final String optionName) {
+            return this.line.hasOption(this.getName(optionName));
+        }
+    }
+
+    /**
+     * Tests the complete chain.
+     *
+     * @param args
+     *            Nothing.
+     * @throws Exception
+     *             If any error occur.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        final ICommandLine cl = new ICommandLine() {
+
+            @Override
+            public String getOptionValue(final char shortOptionName) {
+                return null;
+            }
+
+            @Override
+            public String getOptionValue(final char shortOptionName,
+                    final String defaultValue) {
+                return null;
+            }
+
+            @Override
+            public String getOptionValue(final String optionName) {
+                String ret = null;
+                if (optionName.equals("hostname")) {
+                    ret = "localhost";
+                } else if (optionName.equals("port")) {
+                    ret = "50000";
+                } else if (optionName.equals("database")) {
+                    ret = "sample";
+                } else if (optionName.equals("username")) {
+                    ret = "db2inst1";
+                } else if (optionName.equals("password")) {
+                    ret = "db2inst1";
+                }
+                return ret;
+            }
+
+            @Override
+            public String getOptionValue(final String optionName,
+                    final String defaultValue) {
+                return defaultValue;
+            }
+
+            @Override
+            public List<String> getOptionValues(final char shortOptionName) {
+                return null;
+            }
+
+            @Override
+            public List<String> getOptionValues(final String optionName) {
+                return null;
+            }
+
+            @Override
+            public boolean hasOption(final char shortOptionName) {
+                return false;
+            }
+
+            @Override
+            public boolean hasOption(final String optionName) {
+                return false;
+            }
+
+        };
+        final ThresholdsEvaluatorBuilder thrb = new ThresholdsEvaluatorBuilder();
+        Collection<Metric> c;
+        AbstractDB2PluginBase p;
+        p = new CheckAllMetricsPlugin();
+        p.configureThresholdEvaluatorBuilder(thrb, cl);
+        try {
+            p.gatherMetrics(cl);
+        } catch (final Exception e) {
+            System.out.println("First snapshot");
+        }
+        Thread.sleep(2000);
+        try {
+            c = p.gatherMetrics(cl);
+            System.out.println(c.toString() + ':' + c.size());
+        } catch (final Exception e) {
+            System.out.println("Second snapshot");
+        }
+        Thread.sleep(5000);
+        c = p.gatherMetrics(cl);
+        System.out.println(c.toString() + ':' + c.size());
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Plugins of the metrics, by the prefix of their options.
+     */
+    @SuppressWarnings("PMD.FieldDeclarationsShouldBeAtStartOfClass")
+    private final Map<String, AbstractSingleMetricDB2Plugin> metrics;
+
+    /**
+     * Creates the plugin with all the metrics of the snapshot.
+     */
+    public CheckAllMetricsPlugin() {
+        super();
+        this.metrics = new LinkedHashMap<String, AbstractSingleMetricDB2Plugin>();
+        this.metrics.put("load", new CheckDatabaseLoadPlugin());
+        this.metrics.put("io", new CheckPhysicalIOPerTransactionPlugin());
+        this.metrics.put("avgsort", new CheckAverageSortingTimePlugin());
+        this.metrics.put("sorttrans",
+                new CheckSortingTimePerTransactionPlugin());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #addMetric(java.util.List,
+     * com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot)
+     */
+    @Override
+    void addMetric(final List<Metric> res, final DatabaseSnapshot snapshot)
+            throws UnknownValueException {
+        for (final AbstractSingleMetricDB2Plugin plugin : this.metrics
+                .values()) {
+            plugin.addMetric(res, snapshot);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #addMetrics(java.util.List,
+     * com.github.angoca.db2jnrpe.plugins.db2.DB2Database,
+     * com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot,
+     * it.jnrpe.ICommandLine)
+     */
+    @Override
+    void addMetrics(final List<Metric> res, final DB2Database db2Database,
+            final DatabaseSnapshot snapshot, final ICommandLine line)
+            throws UnknownValueException, MetricGatheringException {
+        for (final Entry<String, AbstractSingleMetricDB2Plugin> metric : this.metrics
+                .entrySet()) {
+            metric.getValue().addMetrics(res, db2Database, snapshot,
+                    new MetricCommandLine(metric.getKey(), line));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see it.jnrpe.plugins.PluginBase#getPluginName()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    protected String getPluginName() {
+        return "Check_All_Metrics";
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #setThreshold(it.jnrpe.utils.thresholds.ThresholdsEvaluatorBuilder,
+     * it.jnrpe.ICommandLine)
+     */
+    @Override
+    void setThreshold(final ThresholdsEvaluatorBuilder thrb,
+            final ICommandLine line) throws BadThresholdException {
+        for (final Entry<String, AbstractSingleMetricDB2Plugin> metric : this.metrics
+                .entrySet()) {
+            metric.getValue().setThreshold(thrb,
+                    new MetricCommandLine(metric.getKey(), line));
+        }
+    }
+}
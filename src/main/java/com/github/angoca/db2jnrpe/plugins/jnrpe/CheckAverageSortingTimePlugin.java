@@ -171,7 +171,7 @@ public final class CheckAverageSortingTimePlugin extends
     @Override
     void addMetric(final List<Metric> res, final DatabaseSnapshot snapshot) {
         final String message = String.format(
-                "The average sorting time is %.1f (%d/%d)",
+                "The average sorting time is %.1f (%.3f/%d)",
                 snapshot.getLastAverageSortTime(),
                 snapshot.getLastTotalSortTimeSecs(),
                 snapshot.getLastTotalSorts());
@@ -11,7 +11,6 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,7 +28,9 @@ import com.github.angoca.db2jnrpe.plugins.db2.UnknownValueException;
 
 /**
  * This plugin allows to see the bufferpool hit ratio of the bufferpool or a
- * single bufferpool.
+ * single bufferpool. In a partitioned or pureScale database, the ratio of a
+ * bufferpool is for all members, weighted by the reads of each member; with
+ * the member option, the ratios are for a single member.
  *
  * @author Andres Gomez Casanova (@AngocA)
  * @version 2014-11-03
@@ -41,19 +42,11 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
      * Critical value by default: X < 90%.
      */
     private static final String CRITICAL_VALUE = "90";
-    /**
-     * A thousand.
-     */
-    private static final int KILO = 1000;
     /**
      * Logger.
      */
     private static final org.slf4j.Logger LOGGER = LoggerFactory
             .getLogger(CheckBufferPoolHitRatioPlugin.class);
-    /**
-     * A hundred.
-     */
-    private static final int MEGA = 1000000;
     /**
      * Warning value by default: X < 95%.
      */
@@ -77,15 +70,20 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
                         com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari.class
                                 .getName(), DB2Connection.class.getName(),
                         "localhost", 50000, "sample", "db2inst1", "db2inst1");
-        final String id = "localhost:50000/sample";
+        final DB2Database database = DB2DatabasesManager.getInstance()
+                .getOrCreateDatabase("localhost:50000/sample");
 
-        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(id, dbConn);
+        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(database, dbConn, 0,
+                BufferpoolRead.ALL_MEMBERS, 0);
         Thread.sleep(5000);
-        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(id, dbConn);
+        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(database, dbConn, 0,
+                BufferpoolRead.ALL_MEMBERS, 0);
         Thread.sleep(5000);
-        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(id, dbConn);
+        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(database, dbConn, 0,
+                BufferpoolRead.ALL_MEMBERS, 0);
         Thread.sleep(5000);
-        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(id, dbConn);
+        new CheckBufferPoolHitRatioPlugin().getBufferpoolNames(database, dbConn, 0,
+                BufferpoolRead.ALL_MEMBERS, 0);
         // CHECKSTYLE:ON
     }
 
@@ -93,6 +91,10 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
      * List of bufferpools.
      */
     private transient Map<String, BufferpoolRead> bufferpoolReads;
+    /**
+     * Reason why the bufferpool reads were not retrieved, or null.
+     */
+    private transient String missingReason;
 
     /*
      * (non-Javadoc)
@@ -107,24 +109,29 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
             final ThresholdsEvaluatorBuilder thrb, final ICommandLine line)
             throws BadThresholdException {
         Set<String> bufferpoolNames;
-        final String dbId = AbstractDB2PluginBase.getId(line);
-        this.log.warn("Database: " + dbId);
+        final int member = this.getMember(line);
         try {
-            bufferpoolNames = this.getBufferpoolNames(dbId,
-                    this.getConnection(line));
+            this.log.warn("Database: " + this.getId(line));
+            // Creates the database with the options of the command line.
+            final DB2Database db2Database = this.getDatabase(line);
+            bufferpoolNames = this.getBufferpoolNames(db2Database,
+                    this.getConnection(line), this.getWait(line), member,
+                    this.getWindow(line));
         } catch (final MetricGatheringException e) {
             this.log.fatal("Error while retrieving names", e);
             throw new BadThresholdException("Problem retrieving the values "
                     + "for threshold from the database: " + e.getMessage(), e);
         }
+        if (this.bufferpoolReads != null && this.bufferpoolReads.isEmpty()
+                && member != BufferpoolRead.ALL_MEMBERS) {
+            this.log.error("The member " + member + " does not exist");
+            throw new BadThresholdException("The given member does not "
+                    + "exist in the database.");
+        }
         if (this.bufferpoolReads != null) {
             final String bufferpoolName = line.getOptionValue("bufferpool");
             if (bufferpoolName == null || bufferpoolName.compareTo("") == 0) {
-                final StringBuffer logMessage = new StringBuffer(
-                        "Threshold for BPs: ");
-                for (final String string : bufferpoolNames) {
-                    final String bpName = string;
-                    logMessage.append(bpName).append(' ');
+                for (final String bpName : bufferpoolNames) {
                     thrb.withLegacyThreshold(
                             bpName,
                             null,
@@ -134,7 +141,10 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
                                     "critical",
                                     CheckBufferPoolHitRatioPlugin.CRITICAL_VALUE));
                 }
-                this.log.debug(logMessage.toString());
+                if (CheckBufferPoolHitRatioPlugin.LOGGER.isDebugEnabled()) {
+                    CheckBufferPoolHitRatioPlugin.LOGGER.debug(
+                            "Threshold for BPs: {}", bufferpoolNames);
+                }
             } else if (bufferpoolNames.contains(bufferpoolName)) {
                 this.log.debug("Threshold for bufferpool: " + bufferpoolName);
                 thrb.withLegacyThreshold(bufferpoolName, null, line
@@ -156,6 +166,7 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
         if (metadata) {
             thrb.withLegacyThreshold("Cache-data", null, null, null);
             thrb.withLegacyThreshold("Cache-old", null, null, null);
+            thrb.withLegacyThreshold("Query-timeouts", null, null, null);
         }
     }
 
@@ -165,59 +176,44 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
      * @see it.jnrpe.plugins.PluginBase#gatherMetrics(it.jnrpe.ICommandLine)
      */
     @Override
-    @SuppressWarnings({ "PMD.CommentRequired",
-            "PMD.AvoidInstantiatingObjectsInLoops" })
+    @SuppressWarnings("PMD.CommentRequired")
     public Collection<Metric> gatherMetrics(final ICommandLine line)
             throws MetricGatheringException {
-        final String dbId = AbstractDB2PluginBase.getId(line);
+        final String dbId = this.getId(line);
         this.log.warn("Database: " + dbId);
-        final List<Metric> res = new ArrayList<Metric>();
+        final DB2Database db2Database = this.getTarget(line).getDatabase();
         if (this.bufferpoolReads == null) {
             this.log.warn(dbId + "::No values");
-            throw new MetricGatheringException("Values have not been gathered",
-                    Status.UNKNOWN, null);
+            String message = "Values have not been gathered";
+            if (this.missingReason != null) {
+                message += ": " + this.missingReason;
+            }
+            throw new MetricGatheringException(message, Status.UNKNOWN, null);
         }
-        if (DB2DatabasesManager.getInstance().getDatabase(dbId)
-                .getBufferpools().isRecentBufferpoolRead()) {
+        if (db2Database.getBufferpools().isRecentBufferpoolRead()) {
             this.log.warn("Values are old: "
-                    + new Timestamp(DB2DatabasesManager.getInstance()
-                            .getDatabase(dbId).getBufferpools()
+                    + new Timestamp(db2Database.getBufferpools()
                             .getLastBufferpoolRefresh()));
             throw new MetricGatheringException("Values are not recent",
                     Status.UNKNOWN, null);
         }
-        // Converts result to arrays and create metrics.
-        BigDecimal ratio;
-        final Iterator<String> iter = this.bufferpoolReads.keySet().iterator();
-        final StringBuffer logMessage = new StringBuffer("Metrics: ");
-        while (iter.hasNext()) {
-            final String name = iter.next();
-            final BufferpoolRead bpDesc = this.bufferpoolReads.get(name);
-            ratio = new BigDecimal(bpDesc.getLastRatio());
-            logMessage.append(String.format("BP %s: %.1f%% ", name, ratio));
-            final String logStr = CheckBufferPoolHitRatioPlugin
-                    .getSimplifiedValue(bpDesc.getLogicalReads());
-            final String phyStr = CheckBufferPoolHitRatioPlugin
-                    .getSimplifiedValue(bpDesc.getPhysicalReads());
-            final String message = String.format(
-                    "%s at %d has %s LR and %s PR, ratio of %.1f%%.", name,
-                    bpDesc.getMember(), logStr, phyStr, ratio);
-
-            res.add(new Metric(name, message, ratio, null, null));
-        }
-        this.log.debug(res.size() + " metrics. " + logMessage);
+        // The metrics of the bufferpools and the metadata.
+        final List<Metric> res = new ArrayList<Metric>(
+                this.bufferpoolReads.size() + 3);
+        // Converts result to metrics.
+        BufferpoolMetrics.addMetrics(res, this.bufferpoolReads);
 
         // Metadata
         final boolean metadata = line.hasOption("metadata");
         if (metadata) {
-            final DB2Database db2Database = DB2DatabasesManager.getInstance()
-                    .getDatabase(AbstractDB2PluginBase.getId(line));
             res.add(new Metric("Cache-data", "", new BigDecimal(db2Database
                     .getBufferpools().getLastBufferpoolRefresh()), null, null));
             res.add(new Metric("Cache-old", "", new BigDecimal(System
                     .currentTimeMillis()
                     - db2Database.getBufferpools().getLastBufferpoolRefresh()),
                     null, null));
+            res.add(new Metric("Query-timeouts", "", new BigDecimal(
+                    db2Database.getTimeouts()), null, null));
         }
 
         return res;
@@ -226,34 +222,51 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
     /**
      * Returns the names of the bufferpoools.
      *
-     * @param identification
-     *            Database id.
+     * @param db2Database
+     *            Database.
      * @param conn
      *            Connection to the database.
+     * @param wait
+     *            Maximum time to wait for the first values.
+     * @param member
+     *            Member of the database, or {@link BufferpoolRead#ALL_MEMBERS}
+     *            for the cluster-wide reads.
+     * @param window
+     *            Window of time of the cluster-wide ratios in milliseconds, or
+     *            zero to use the last two reads.
      * @return Set of bufferpool names.
      * @throws BadThresholdException
      *             If there is an error retrieving the values.
      */
-    private Set<String> getBufferpoolNames(final String identification,
-            final AbstractDatabaseConnection conn) throws BadThresholdException {
-        DB2Database db2Database = DB2DatabasesManager.getInstance()
-                .getDatabase(identification);
-        if (db2Database == null) {
-            db2Database = new DB2Database(identification);
-            DB2DatabasesManager.getInstance().add(identification, db2Database);
-        }
+    private Set<String> getBufferpoolNames(final DB2Database db2Database,
+            final AbstractDatabaseConnection conn, final long wait,
+            final int member, final long window) throws BadThresholdException {
         Set<String> bufferpoolNames = null;
+        this.bufferpoolReads = null;
+        this.missingReason = null;
         try {
             final Bufferpools bufferpools = db2Database
-                    .getBufferpoolsAndRefresh(conn);
-            if (bufferpools != null) {
-                this.bufferpoolReads = bufferpools.getBufferpoolReads();
+                    .getBufferpoolsAndRefresh(conn, wait);
+            if (member != BufferpoolRead.ALL_MEMBERS && window > 0) {
+                this.missingReason = AbstractDB2PluginBase.WINDOW_WITH_MEMBER;
+            } else if (bufferpools != null) {
+                if (window > 0) {
+                    // The time series are for the whole database.
+                    this.bufferpoolReads = db2Database.getBufferpools(window)
+                            .getBufferpoolReads();
+                } else if (member == BufferpoolRead.ALL_MEMBERS) {
+                    this.bufferpoolReads = bufferpools.getBufferpoolReads();
+                } else {
+                    this.bufferpoolReads = bufferpools
+                            .getBufferpoolReads(member);
+                }
                 bufferpoolNames = this.bufferpoolReads.keySet();
             }
         } catch (final UnknownValueException e) {
-            // There are not values in the cache. Do nothing.
+            // There are not values in the cache, or not for the window.
             CheckBufferPoolHitRatioPlugin.LOGGER
                     .info("Values have not been read");
+            this.missingReason = e.getMessage();
         }
         return bufferpoolNames;
     }
@@ -269,23 +282,4 @@ public final class CheckBufferPoolHitRatioPlugin extends AbstractDB2PluginBase {
         return "Check_Bufferpool_Hit_Ratio";
     }
 
-    /**
-     * Returns a simplified value for long values.
-     *
-     * @param value
-     *            Value with a log of digits.
-     * @return Metrical notation to simplify big values.
-     */
-    private static String getSimplifiedValue(final long value) {
-        String logStr;
-        if (value > CheckBufferPoolHitRatioPlugin.MEGA) {
-            logStr = value / CheckBufferPoolHitRatioPlugin.MEGA + "M";
-        } else if (value > CheckBufferPoolHitRatioPlugin.KILO) {
-            logStr = value / CheckBufferPoolHitRatioPlugin.KILO + "K";
-        } else {
-            logStr = Long.toString(value);
-        }
-        return logStr;
-    }
-
 }
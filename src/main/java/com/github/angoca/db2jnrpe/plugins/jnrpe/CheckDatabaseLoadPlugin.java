@@ -8,18 +8,18 @@ import it.jnrpe.utils.BadThresholdException;
 import it.jnrpe.utils.thresholds.ThresholdsEvaluatorBuilder;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
-import com.github.angoca.db2jnrpe.plugins.db2.DB2DatabasesManager;
 import com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot;
 import com.github.angoca.db2jnrpe.plugins.db2.UnknownValueException;
 
 /**
  * This plugin allows to monitor the load of the database by the quantity of
- * commits, selects and modifications per second.<br/>
+ * commits, selects and modifications per second. By default, the load is for
+ * the whole database; with the member option, it is for a member (or database
+ * partition) of a partitioned or pureScale database.<br/>
  * In order to execute this plugin, it is necessary to have DB2 in at least one
  * of the following version:
  * <ul>
@@ -32,7 +32,8 @@ import com.github.angoca.db2jnrpe.plugins.db2.UnknownValueException;
  * @version 2014-11-21
  */
 @SuppressWarnings("PMD.CommentSize")
-public final class CheckDatabaseLoadPlugin extends AbstractDB2PluginBase {
+public final class CheckDatabaseLoadPlugin extends
+        AbstractSingleMetricDB2Plugin {
 
     /**
      * Label for the metric for the quantity of commits.
@@ -156,100 +157,94 @@ public final class CheckDatabaseLoadPlugin extends AbstractDB2PluginBase {
         super();
     }
 
+    /**
+     * Sets the rates of the load in the metrics.
+     *
+     * @param res
+     *            List of metrics to return.
+     * @param snapshot
+     *            Last snapshot of the database.
+     * @param location
+     *            Description of the window or of the member of the rates.
+     * @param rates
+     *            Rates of modifications, selects and commits.
+     */
+    private static void addLoad(final List<Metric> res,
+            final DatabaseSnapshot snapshot, final String location,
+            final double[] rates) {
+        String message;
+        message = "The UID load" + location + " is " + rates[0] + '('
+                + snapshot.getUIDs() + "UID)" + '.';
+        res.add(new Metric(CheckDatabaseLoadPlugin.UID_LOAD, message,
+                new BigDecimal(rates[0]), null, null));
+        message = "The Select load" + location + " is " + rates[1] + '('
+                + snapshot.getSelects() + "S)" + '.';
+        res.add(new Metric(CheckDatabaseLoadPlugin.SELECT_LOAD, message,
+                new BigDecimal(rates[1]), null, null));
+        message = "The Commit load" + location + " is " + rates[2] + '('
+                + snapshot.getCommits() + "C)" + '.' + " Last refresh "
+                + snapshot.getLastSeconds() + 's';
+        res.add(new Metric(CheckDatabaseLoadPlugin.COMMIT_LOAD, message,
+                new BigDecimal(rates[2]), null, null));
+    }
+
     /*
      * (non-Javadoc)
      * 
      * @see
-     * it.jnrpe.plugins.PluginBase#configureThresholdEvaluatorBuilder(it.jnrpe
-     * .utils.thresholds.ThresholdsEvaluatorBuilder, it.jnrpe.ICommandLine)
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #addMetric(java.util.List,
+     * com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot)
      */
     @Override
-    @SuppressWarnings("PMD.CommentRequired")
-    public void configureThresholdEvaluatorBuilder(
-            final ThresholdsEvaluatorBuilder thrb, final ICommandLine line)
-            throws BadThresholdException {
-        final String dbId = AbstractDB2PluginBase.getId(line);
-        this.log.warn("Database: " + dbId);
-        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.UID_LOAD, null, line
-                .getOptionValue("warning",
-                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
-                .getOptionValue("critical",
-                        CheckDatabaseLoadPlugin.CRITICAL_VALUE));
-        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.SELECT_LOAD, null,
-                line.getOptionValue("warning",
-                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
-                        .getOptionValue("critical",
-                                CheckDatabaseLoadPlugin.CRITICAL_VALUE));
-        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.COMMIT_LOAD, null,
-                line.getOptionValue("warning",
-                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
-                        .getOptionValue("critical",
-                                CheckDatabaseLoadPlugin.CRITICAL_VALUE));
-
-        // Metadata
-        final boolean metadata = line.hasOption("metadata");
-        if (metadata) {
-            thrb.withLegacyThreshold("Cache-data", null, null, null);
-            thrb.withLegacyThreshold("Cache-old", null, null, null);
-        }
+    void addMetric(final List<Metric> res, final DatabaseSnapshot snapshot)
+            throws UnknownValueException {
+        CheckDatabaseLoadPlugin.addLoad(res, snapshot, "",
+                new double[] { snapshot.getLastUIDRate(),
+                        snapshot.getLastSelectRate(),
+                        snapshot.getLastCommitRate() });
     }
 
     /*
      * (non-Javadoc)
      * 
-     * @see it.jnrpe.plugins.PluginBase#gatherMetrics(it.jnrpe.ICommandLine)
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #addMetrics(java.util.List,
+     * com.github.angoca.db2jnrpe.plugins.db2.DB2Database,
+     * com.github.angoca.db2jnrpe.plugins.db2.DatabaseSnapshot,
+     * it.jnrpe.ICommandLine)
      */
     @Override
-    @SuppressWarnings("PMD.CommentRequired")
-    public Collection<Metric> gatherMetrics(final ICommandLine line)
-            throws MetricGatheringException {
-        final List<Metric> res = new ArrayList<Metric>();
-
-        final String identification = AbstractDB2PluginBase.getId(line);
-        DB2Database db2Database = DB2DatabasesManager.getInstance()
-                .getDatabase(identification);
-        if (db2Database == null) {
-            db2Database = new DB2Database(identification);
-            DB2DatabasesManager.getInstance().add(identification, db2Database);
-        }
-        DatabaseSnapshot snapshot;
-        try {
-            snapshot = db2Database.getSnapshotAndRefresh(this
-                    .getConnection(line));
-
-            String message;
-            message = "The UID load is " + snapshot.getLastUIDRate() + '('
-                    + snapshot.getUIDs() + "UID)" + '.';
-            res.add(new Metric(CheckDatabaseLoadPlugin.UID_LOAD, message,
-                    new BigDecimal(snapshot.getLastUIDRate()), null, null));
-            message = "The Select load is " + snapshot.getLastSelectRate()
-                    + '(' + snapshot.getSelects() + "S)" + '.';
-            res.add(new Metric(CheckDatabaseLoadPlugin.SELECT_LOAD, message,
-                    new BigDecimal(snapshot.getLastSelectRate()), null, null));
-            message = "The Commit load is " + snapshot.getLastCommitRate()
-                    + '(' + snapshot.getCommits() + "C)" + '.'
-                    + " Last refresh " + snapshot.getLastSeconds() + 's';
-            res.add(new Metric(CheckDatabaseLoadPlugin.COMMIT_LOAD, message,
-                    new BigDecimal(snapshot.getLastCommitRate()), null, null));
-        } catch (final UnknownValueException e) {
-            this.log.warn(identification + "::No values");
+    void addMetrics(final List<Metric> res, final DB2Database db2Database,
+            final DatabaseSnapshot snapshot, final ICommandLine line)
+            throws UnknownValueException, MetricGatheringException {
+        final int member = this.getMember(line);
+        final long window = this.getWindow(line);
+        if (member >= 0 && window > 0) {
             throw new MetricGatheringException(
-                    "Not enough values have been gathered: " + e.getMessage(),
-                    Status.UNKNOWN, e);
-        }
-
-        // Metadata
-        final boolean metadata = line.hasOption("metadata");
-        if (metadata) {
-            res.add(new Metric("Cache-data", "", new BigDecimal(db2Database
-                    .getSnap().getLastSnapshotRefresh()), null, null));
-            res.add(new Metric("Cache-old", "", new BigDecimal(System
-                    .currentTimeMillis()
-                    - db2Database.getSnap().getLastSnapshotRefresh()), null,
-                    null));
+                    AbstractDB2PluginBase.WINDOW_WITH_MEMBER, Status.UNKNOWN,
+                    null);
+        } else if (window > 0) {
+            // The time series are for the whole database.
+            final DatabaseSnapshot windowed = db2Database.getSnapshot(window);
+            CheckDatabaseLoadPlugin.addLoad(res, snapshot, " in "
+                    + windowed.getLastSeconds() + 's', new double[] {
+                    windowed.getLastUIDRate(), windowed.getLastSelectRate(),
+                    windowed.getLastCommitRate() });
+        } else if (member < 0) {
+            this.addMetric(res, snapshot);
+        } else {
+            final int index = snapshot.getMemberIndex(member);
+            if (index < 0) {
+                throw new MetricGatheringException("Member " + member
+                        + " has not been read", Status.UNKNOWN, null);
+            }
+            CheckDatabaseLoadPlugin.addLoad(res, snapshot, " at member "
+                    + member, new double[] { snapshot.getLastUIDRate(index),
+                    snapshot.getLastSelectRate(index),
+                    snapshot.getLastCommitRate(index) });
         }
-        return res;
-
     }
 
     /*
@@ -263,4 +258,31 @@ public final class CheckDatabaseLoadPlugin extends AbstractDB2PluginBase {
         return "Check_Database_Load";
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.plugins.jnrpe.AbstractSingleMetricDB2Plugin
+     * #setThreshold(it.jnrpe.utils.thresholds.ThresholdsEvaluatorBuilder,
+     * it.jnrpe.ICommandLine)
+     */
+    @Override
+    void setThreshold(final ThresholdsEvaluatorBuilder thrb,
+            final ICommandLine line) throws BadThresholdException {
+        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.UID_LOAD, null, line
+                .getOptionValue("warning",
+                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
+                .getOptionValue("critical",
+                        CheckDatabaseLoadPlugin.CRITICAL_VALUE));
+        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.SELECT_LOAD, null,
+                line.getOptionValue("warning",
+                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
+                        .getOptionValue("critical",
+                                CheckDatabaseLoadPlugin.CRITICAL_VALUE));
+        thrb.withLegacyThreshold(CheckDatabaseLoadPlugin.COMMIT_LOAD, null,
+                line.getOptionValue("warning",
+                        CheckDatabaseLoadPlugin.WARNING_VALUE), line
+                        .getOptionValue("critical",
+                                CheckDatabaseLoadPlugin.CRITICAL_VALUE));
+    }
 }
@@ -0,0 +1,322 @@
+package com.github.angoca.db2jnrpe.plugins.jnrpe;
+
+import it.jnrpe.ICommandLine;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.plugins.db2.DB2Database;
+
+/**
+ * Resolved target of a command line: the connection properties, with their
+ * connection pool, and the database, kept together. The handles are cached by
+ * the options that identify the target, thus the next checks of the same
+ * command line find them with one lookup, without parsing the port nor
+ * building the keys of the other managers.
+ * <p>
+ * A handle is discarded when its database is evicted because it was idle, or
+ * when a handle of the same user, database and profile is resolved with
+ * another password. The checks of the same database with other profiles keep
+ * their own handles.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+final class TargetHandle {
+
+    /**
+     * Options of a command line that identify a target. The hash is
+     * calculated once.
+     */
+    static final class Key {
+
+        /**
+         * Name of the database.
+         */
+        private final String database;
+        /**
+         * Hash of the options.
+         */
+        private final int hash;
+        /**
+         * Name of the server.
+         */
+        private final String hostname;
+        /**
+         * Password.
+         */
+        private final String password;
+        /**
+         * Port of the instance, as given.
+         */
+        private final String port;
+        /**
+         * Profile of the connection pool, or null for the default one.
+         */
+        private final String profile;
+        /**
+         * User to connect to the database.
+         */
+        private final String username;
+
+        /**
+         * Reads the options of a command line.
+         *
+         * @param line
+         *            Command line.
+         */
+        Key(final ICommandLine line) {
+            this.hostname = line.getOptionValue("hostname");
+            this.port = line.getOptionValue("port");
+            this.database = line.getOptionValue("database");
+            this.username = line.getOptionValue("username");
+            this.password = line.getOptionValue("password");
+            this.profile = line.getOptionValue("profile");
+            int value = 1;
+            for (final String option : new String[] { this.hostname,
+                    this.port, this.database, this.username, this.password,
+                    this.profile }) {
+                value = 31 * value + (option == null ? 0 : option.hashCode());
+            }
+            this.hash = value;
+        }
+
+        /**
+         * Compares two options, that could be null.
+         *
+         * @param first
+         *            First option.
+         * @param second
+         *            Second option.
+         * @return True if both are equal.
+         */
+        private static boolean same(final String first, final String second) {
+            return first == null ? second == null : first.equals(second);
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public boolean equals(final Object obj) {
+            boolean ret = this == obj;
+            if (!ret && obj instanceof Key) {
+                final Key other = (Key) obj;
+                ret = this.hash == other.hash
+                        && Key.same(this.hostname, other.hostname)
+                        && Key.same(this.port, other.port)
+                        && Key.same(this.database, other.database)
+                        && Key.same(this.username, other.username)
+                        && Key.same(this.password, other.password)
+                        && Key.same(this.profile, other.profile);
+            }
+            return ret;
+        }
+
+        /**
+         * Checks if other options identify the same user, database and
+         * profile, maybe with another password.
+         *
+         * @param other
+         *            Other options.
+         * @return True if the hostname, the port, the database, the user and
+         *         the profile are the same.
+         */
+        boolean isSameTarget(final Key other) {
+            return Key.same(this.hostname, other.hostname)
+                    && Key.same(this.port, other.port)
+                    && Key.same(this.database, other.database)
+                    && Key.same(this.username, other.username)
+                    && Key.same(this.profile, other.profile);
+        }
+
+        /**
+         * Returns the name of the database.
+         *
+         * @return Database.
+         */
+        String getDatabase() {
+            return this.database;
+        }
+
+        /**
+         * Returns the name of the server.
+         *
+         * @return Hostname.
+         */
+        String getHostname() {
+            return this.hostname;
+        }
+
+        /**
+         * Returns the identification of the database, as used by the
+         * database manager.
+         *
+         * @return Hostname, port and database.
+         */
+        String getId() {
+            return this.hostname + ':' + this.port + '/' + this.database;
+        }
+
+        /**
+         * Returns the password.
+         *
+         * @return Password.
+         */
+        String getPassword() {
+            return this.password;
+        }
+
+        /**
+         * Returns the port, as given in the command line.
+         *
+         * @return Port.
+         */
+        String getPort() {
+            return this.port;
+        }
+
+        /**
+         * Returns the name of the profile of the connection pool.
+         *
+         * @return Profile, or null for the default one.
+         */
+        String getProfile() {
+            return this.profile;
+        }
+
+        /**
+         * Returns the user to connect to the database.
+         *
+         * @return Username.
+         */
+        String getUsername() {
+            return this.username;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Resolved handles by the options of their command lines.
+     */
+    private static final ConcurrentMap<Key, TargetHandle> HANDLES = new ConcurrentHashMap<Key, TargetHandle>();
+
+    /**
+     * Returns the cached handle of some options.
+     *
+     * @param key
+     *            Options of the command line.
+     * @return Handle, or null if it has not been resolved or if its database
+     *         was evicted.
+     */
+    static TargetHandle get(final Key key) {
+        TargetHandle ret = TargetHandle.HANDLES.get(key);
+        if (ret != null && ret.isEvicted()) {
+            TargetHandle.HANDLES.remove(key, ret);
+            ret = null;
+        }
+        return ret;
+    }
+
+    /**
+     * Caches a resolved handle. The handles of evicted databases are
+     * discarded, because they are not used anymore, and also the handles of
+     * the same user, database and profile with another password: they keep
+     * an old password.
+     *
+     * @param key
+     *            Options of the command line.
+     * @param handle
+     *            Resolved handle.
+     */
+    static void put(final Key key, final TargetHandle handle) {
+        final Iterator<Map.Entry<Key, TargetHandle>> iter = TargetHandle.HANDLES
+                .entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<Key, TargetHandle> entry = iter.next();
+            if (entry.getValue().isEvicted()
+                    || entry.getKey().isSameTarget(key)) {
+                iter.remove();
+            }
+        }
+        TargetHandle.HANDLES.put(key, handle);
+    }
+
+    /**
+     * Connection properties.
+     */
+    private final AbstractDatabaseConnection connection;
+    /**
+     * Database.
+     */
+    private final DB2Database database;
+
+    /**
+     * Creates a resolved handle.
+     *
+     * @param dbConn
+     *            Connection properties, with their connection pool.
+     * @param db2Database
+     *            Database.
+     */
+    TargetHandle(final AbstractDatabaseConnection dbConn,
+            final DB2Database db2Database) {
+        this.connection = dbConn;
+        this.database = db2Database;
+    }
+
+    /**
+     * Returns the connection properties. Their connection pool has been
+     * retrieved, and it is kept in them.
+     *
+     * @return Connection properties.
+     */
+    AbstractDatabaseConnection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * Returns the database.
+     *
+     * @return Database.
+     */
+    DB2Database getDatabase() {
+        return this.database;
+    }
+
+    /**
+     * Checks if the database of this handle was evicted, thus the handle
+     * should be resolved again.
+     *
+     * @return True if the database was evicted.
+     */
+    boolean isEvicted() {
+        return this.database.isEvicted();
+    }
+
+    /**
+     * Returns the identification of the database.
+     *
+     * @return Hostname, port and database.
+     */
+    String getId() {
+        return this.database.getId();
+    }
+}
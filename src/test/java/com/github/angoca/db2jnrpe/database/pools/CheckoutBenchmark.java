@@ -0,0 +1,126 @@
+package com.github.angoca.db2jnrpe.database.pools;
+
+import java.sql.Connection;
+import java.util.Arrays;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.c3p0.DbcpC3p0;
+import com.github.angoca.db2jnrpe.database.pools.db2direct.DbcpDb2Direct;
+import com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
+
+/**
+ * Measures the latency to borrow and to return a connection with each
+ * connection pool: the direct connection, Hikari and c3p0. The first
+ * connection is established before measuring, thus only the checkout is
+ * measured, as done by each collection.
+ * <p>
+ * It needs a database: hostname, port, database, username and password are
+ * given as arguments, and optionally the quantity of checkouts.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class CheckoutBenchmark {
+
+    /**
+     * Quantity of checkouts to measure, by default.
+     */
+    private static final int CHECKOUTS = 10000;
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1000.0;
+    /**
+     * Quantity of checkouts before measuring.
+     */
+    private static final int WARM_UP = 1000;
+
+    /**
+     * Borrows and returns a connection of the pool the given times.
+     *
+     * @param pool
+     *            Connection pool.
+     * @param dbConn
+     *            Properties of the connection.
+     * @param times
+     *            Array where the time of each checkout is written, in
+     *            nanoseconds.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    private static void checkout(final AbstractConnectionPool pool,
+            final AbstractDatabaseConnection dbConn, final long[] times)
+            throws Exception {
+        for (int i = 0; i < times.length; i++) {
+            final long start = System.nanoTime();
+            final Connection connection = pool.getConnection(dbConn);
+            pool.closeConnection(dbConn, connection);
+            times[i] = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Executes the benchmark.
+     *
+     * @param args
+     *            Hostname, port, database, username, password, and optionally
+     *            the quantity of checkouts.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        if (args.length < 5) {
+            System.out.println("Usage: CheckoutBenchmark hostname port "
+                    + "database username password [checkouts]");
+            return;
+        }
+        int checkouts = CheckoutBenchmark.CHECKOUTS;
+        if (args.length > 5) {
+            checkouts = Integer.parseInt(args[5]);
+        }
+        final String[] pools = { DbcpDb2Direct.class.getName(),
+                DbcpHikari.class.getName(), DbcpC3p0.class.getName() };
+        for (final String poolName : pools) {
+            final AbstractDatabaseConnection dbConn = DatabaseConnectionsManager
+                    .getInstance().getDatabaseConnection(
+                            PoolProfile.DEFAULT.withImplementation(poolName),
+                            DB2Connection.class.getName(), args[0],
+                            Integer.parseInt(args[1]), args[2], args[3],
+                            args[4]);
+            final AbstractConnectionPool pool = ConnectionPoolsManager
+                    .getInstance().getConnectionPool(dbConn);
+            CheckoutBenchmark.checkout(pool, dbConn,
+                    new long[CheckoutBenchmark.WARM_UP]);
+            final long[] times = new long[checkouts];
+            CheckoutBenchmark.checkout(pool, dbConn, times);
+            pool.close(dbConn);
+
+            long total = 0;
+            for (final long time : times) {
+                total += time;
+            }
+            Arrays.sort(times);
+            System.out.println(String.format(
+                    "%-14s avg %8.2f us, p50 %8.2f us, p99 %8.2f us",
+                    poolName.substring(poolName.lastIndexOf('.') + 1),
+                    total / CheckoutBenchmark.NANOS_PER_MICRO / checkouts,
+                    times[checkouts / 2] / CheckoutBenchmark.NANOS_PER_MICRO,
+                    times[checkouts * 99 / 100]
+                            / CheckoutBenchmark.NANOS_PER_MICRO));
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private CheckoutBenchmark() {
+        // Nothing.
+    }
+}
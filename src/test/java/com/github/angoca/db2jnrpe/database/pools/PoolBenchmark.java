@@ -0,0 +1,423 @@
+package com.github.angoca.db2jnrpe.database.pools;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.c3p0.DbcpC3p0;
+import com.github.angoca.db2jnrpe.database.pools.db2direct.DbcpDb2Direct;
+import com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari;
+import com.github.angoca.db2jnrpe.database.rdbms.stub.StubConnection;
+import com.github.angoca.db2jnrpe.database.rdbms.stub.StubDriver;
+
+/**
+ * Measures the throughput and the latency of each connection pool under
+ * concurrency: the direct connection, Hikari and c3p0. Each operation
+ * retrieves the pool from the manager, borrows a connection, executes a
+ * query, and returns the connection, as done by each collection. The
+ * operations are executed by 1, 2, 4... up to 64 threads.
+ * <p>
+ * It does not need a database: the connections are established with the
+ * stub driver, that simulates the latency of the connection and of the
+ * query. The arguments are optional: the seconds to measure each iteration,
+ * the connection latency and the query latency in microseconds, the maximal
+ * quantity of threads, the profile of the pools, the seconds of warm-up of
+ * each case, and the quantity of measured iterations of each case.
+ * <p>
+ * Each case is warmed up and then measured several times; the throughput is
+ * reported as the mean and the standard deviation of the iterations, thus
+ * the noise of a run is visible.
+ * <p>
+ * The latencies of all the operations are counted in a histogram of fixed
+ * buckets per thread, with a resolution of 1/64 of each power of two; thus,
+ * the percentiles are within 2% whatever the duration of the measure.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class PoolBenchmark {
+
+    /**
+     * Operations executed by a thread.
+     */
+    private static final class Worker extends Thread {
+
+        /**
+         * Properties of the connection.
+         */
+        private final AbstractDatabaseConnection dbConn;
+        /**
+         * Duration of the measure, in nanoseconds.
+         */
+        private final long duration;
+        /**
+         * Quantity of failed operations.
+         */
+        private int errors;
+        /**
+         * Quantity of successful operations.
+         */
+        private int operations;
+        /**
+         * Signal to start.
+         */
+        private final CountDownLatch start;
+        /**
+         * Quantity of operations per bucket of latency.
+         */
+        private final long[] histogram = new long[PoolBenchmark.BUCKETS];
+
+        /**
+         * Creates a thread.
+         *
+         * @param name
+         *            Name of the thread.
+         * @param connection
+         *            Properties of the connection.
+         * @param startSignal
+         *            Signal to start.
+         * @param nanos
+         *            Duration of the measure, in nanoseconds.
+         */
+        Worker(final String name, final AbstractDatabaseConnection connection,
+                final CountDownLatch startSignal, final long nanos) {
+            super(name);
+            this.dbConn = connection;
+            this.start = startSignal;
+            this.duration = nanos;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Thread#run()
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public void run() {
+            try {
+                this.start.await();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            final long end = now + this.duration;
+            while (now < end) {
+                try {
+                    PoolBenchmark.operate(this.dbConn);
+                    final long time = System.nanoTime();
+                    this.histogram[PoolBenchmark.bucket(time - now)]++;
+                    this.operations++;
+                    now = time;
+                } catch (final DatabaseConnectionException e) {
+                    this.errors++;
+                    now = System.nanoTime();
+                } catch (final SQLException e) {
+                    this.errors++;
+                    now = System.nanoTime();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bits of the buckets of each power of two.
+     */
+    private static final int SUB_BITS = 6;
+    /**
+     * Quantity of buckets of each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << PoolBenchmark.SUB_BITS;
+    /**
+     * Quantity of buckets of the histograms: the values lower than
+     * {@link #SUB_BUCKETS}, and then the buckets of each power of two up to
+     * 2^62.
+     */
+    private static final int BUCKETS = PoolBenchmark.SUB_BUCKETS
+            * (Long.SIZE - 1 - PoolBenchmark.SUB_BITS + 1);
+    /**
+     * Quantity of measured iterations of each case, by default.
+     */
+    private static final int ITERATIONS = 5;
+    /**
+     * Quantity of measured threads at most, by default.
+     */
+    private static final int MAX_THREADS = 64;
+    /**
+     * Nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1000.0;
+    /**
+     * Nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    /**
+     * Percent.
+     */
+    private static final int PERCENT = 100;
+    /**
+     * Seconds to measure each iteration, by default.
+     */
+    private static final int SECONDS = 2;
+    /**
+     * Seconds of warm-up of each case, by default.
+     */
+    private static final int WARM_UP = 2;
+
+    /**
+     * Returns the bucket of a latency.
+     *
+     * @param nanos
+     *            Latency in nanoseconds.
+     * @return Index of the bucket.
+     */
+    private static int bucket(final long nanos) {
+        final long value = Math.max(0, nanos);
+        int ret;
+        if (value < PoolBenchmark.SUB_BUCKETS) {
+            ret = (int) value;
+        } else {
+            final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value)
+                    - PoolBenchmark.SUB_BITS;
+            ret = PoolBenchmark.SUB_BUCKETS * (shift + 1)
+                    + (int) (value >>> shift) - PoolBenchmark.SUB_BUCKETS;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the lowest latency of a bucket.
+     *
+     * @param index
+     *            Index of the bucket.
+     * @return Latency in nanoseconds.
+     */
+    private static long bucketValue(final int index) {
+        long ret;
+        if (index < PoolBenchmark.SUB_BUCKETS) {
+            ret = index;
+        } else {
+            final int shift = index / PoolBenchmark.SUB_BUCKETS - 1;
+            ret = (long) (index % PoolBenchmark.SUB_BUCKETS
+                    + PoolBenchmark.SUB_BUCKETS) << shift;
+        }
+        return ret;
+    }
+
+    /**
+     * Executes the benchmark.
+     *
+     * @param args
+     *            Seconds per iteration, connection latency, query latency,
+     *            maximal threads, profile, seconds of warm-up and
+     *            iterations; all of them optional.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        final int seconds = args.length > 0 ? Integer.parseInt(args[0])
+                : PoolBenchmark.SECONDS;
+        if (args.length > 1) {
+            StubDriver.setConnectLatency(Long.parseLong(args[1]));
+        }
+        if (args.length > 2) {
+            StubDriver.setQueryLatency(Long.parseLong(args[2]));
+        }
+        final int maxThreads = args.length > 3 ? Integer.parseInt(args[3])
+                : PoolBenchmark.MAX_THREADS;
+        final PoolProfile profile = PoolProfile.getProfile(args.length > 4 ? args[4]
+                : null);
+        final int warmUp = args.length > 5 ? Integer.parseInt(args[5])
+                : PoolBenchmark.WARM_UP;
+        final int iterations = args.length > 6 ? Integer.parseInt(args[6])
+                : PoolBenchmark.ITERATIONS;
+        Class.forName(StubDriver.class.getName());
+        System.out.println("Profile " + profile + "; warm-up " + warmUp
+                + " s; " + iterations + " iterations of " + seconds + " s");
+        System.out.println(String.format("%-14s %7s %12s %10s %10s %10s %10s"
+                + " %10s %7s %7s", "Pool", "Threads", "ops/s", "+/- ops/s",
+                "p50 us", "p90 us", "p99 us", "max us", "errors", "opened"));
+
+        final String[] pools = { DbcpDb2Direct.class.getName(),
+                DbcpHikari.class.getName(), DbcpC3p0.class.getName() };
+        for (final String poolName : pools) {
+            final AbstractDatabaseConnection dbConn = DatabaseConnectionsManager
+                    .getInstance().getDatabaseConnection(
+                            profile.withImplementation(poolName),
+                            StubConnection.class.getName(), "localhost",
+                            50000, "bench", "db2inst1", "db2inst1");
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                // Warm-up, not measured.
+                PoolBenchmark.run(dbConn, threads, warmUp);
+                final int opened = StubDriver.getOpened();
+                final Worker[][] runs = new Worker[iterations][];
+                for (int i = 0; i < iterations; i++) {
+                    runs[i] = PoolBenchmark.run(dbConn, threads, seconds);
+                }
+                PoolBenchmark.report(poolName, runs, seconds
+                        * PoolBenchmark.NANOS_PER_SECOND,
+                        StubDriver.getOpened() - opened);
+            }
+            ConnectionPoolsManager.getInstance().close(dbConn);
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Borrows a connection, executes a query, and returns the connection.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @throws DatabaseConnectionException
+     *             If the connection cannot be borrowed.
+     * @throws SQLException
+     *             If the query fails.
+     */
+    static void operate(final AbstractDatabaseConnection dbConn)
+            throws DatabaseConnectionException, SQLException {
+        final AbstractConnectionPool pool = ConnectionPoolsManager
+                .getInstance().getConnectionPool(dbConn);
+        final Connection connection = pool.getConnection(dbConn);
+        try {
+            final Statement stmt = connection.createStatement();
+            final ResultSet res = stmt.executeQuery("SELECT 1 FROM "
+                    + "SYSIBM.SYSDUMMY1");
+            res.next();
+            res.close();
+            stmt.close();
+        } finally {
+            pool.closeConnection(dbConn, connection);
+        }
+    }
+
+    /**
+     * Prints the result of a case. The throughput is the mean of the
+     * iterations, with their standard deviation; the latencies are the
+     * percentiles of all the iterations.
+     *
+     * @param poolName
+     *            Name of the pool.
+     * @param runs
+     *            Finished threads of each iteration.
+     * @param elapsed
+     *            Measured time of each iteration, in nanoseconds.
+     * @param opened
+     *            Quantity of established connections.
+     */
+    @SuppressWarnings("PMD.SystemPrintln")
+    private static void report(final String poolName, final Worker[][] runs,
+            final long elapsed, final int opened) {
+        long operations = 0;
+        int errors = 0;
+        final long[] histogram = new long[PoolBenchmark.BUCKETS];
+        final double[] rates = new double[runs.length];
+        for (int r = 0; r < runs.length; r++) {
+            long runOperations = 0;
+            for (final Worker worker : runs[r]) {
+                runOperations += worker.operations;
+                errors += worker.errors;
+                for (int i = 0; i < PoolBenchmark.BUCKETS; i++) {
+                    histogram[i] += worker.histogram[i];
+                }
+            }
+            operations += runOperations;
+            rates[r] = runOperations
+                    * (double) PoolBenchmark.NANOS_PER_SECOND / elapsed;
+        }
+        double mean = 0;
+        for (final double rate : rates) {
+            mean += rate;
+        }
+        mean /= rates.length;
+        double variance = 0;
+        for (final double rate : rates) {
+            variance += (rate - mean) * (rate - mean);
+        }
+        if (rates.length > 1) {
+            variance /= rates.length - 1;
+        }
+        System.out.println(String.format("%-14s %7d %12.0f %10.0f %10.2f"
+                + " %10.2f %10.2f %10.2f %7d %7d",
+                poolName.substring(poolName.lastIndexOf('.') + 1),
+                runs[0].length, mean, Math.sqrt(variance),
+                PoolBenchmark.percentile(histogram, operations, 50),
+                PoolBenchmark.percentile(histogram, operations, 90),
+                PoolBenchmark.percentile(histogram, operations, 99),
+                PoolBenchmark.percentile(histogram, operations,
+                        PoolBenchmark.PERCENT), errors, opened));
+    }
+
+    /**
+     * Returns a percentile of the latencies of a histogram.
+     *
+     * @param histogram
+     *            Quantity of operations per bucket.
+     * @param count
+     *            Quantity of operations in the histogram.
+     * @param percent
+     *            Percentile.
+     * @return Latency in microseconds, or zero if there are not latencies.
+     */
+    private static double percentile(final long[] histogram,
+            final long count, final int percent) {
+        double ret = 0;
+        if (count > 0) {
+            final long rank = Math.min(count - 1, count * percent
+                    / PoolBenchmark.PERCENT);
+            long seen = 0;
+            int index = 0;
+            while (seen + histogram[index] <= rank) {
+                seen += histogram[index];
+                index++;
+            }
+            ret = PoolBenchmark.bucketValue(index)
+                    / PoolBenchmark.NANOS_PER_MICRO;
+        }
+        return ret;
+    }
+
+    /**
+     * Executes the operations with several threads during a time.
+     *
+     * @param dbConn
+     *            Properties of the connection.
+     * @param threads
+     *            Quantity of threads.
+     * @param seconds
+     *            Duration.
+     * @return Finished threads.
+     * @throws InterruptedException
+     *             If the wait is interrupted.
+     */
+    private static Worker[] run(final AbstractDatabaseConnection dbConn,
+            final int threads, final int seconds) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Worker[] workers = new Worker[threads];
+        // All the threads are created before the start signal.
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker("bench-" + i, dbConn, start, seconds
+                    * PoolBenchmark.NANOS_PER_SECOND);
+            workers[i].start();
+        }
+        start.countDown();
+        for (final Worker worker : workers) {
+            worker.join();
+        }
+        return workers;
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private PoolBenchmark() {
+        // Nothing.
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.angoca.db2jnrpe.database.rdbms.stub;
+
+import java.util.Properties;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+
+/**
+ * Description of a connection to the stub driver, that does not access any
+ * database. It is used to measure the connection pools.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+public final class StubConnection extends AbstractDatabaseConnection {
+
+    /**
+     * Creates an object that describes a stub connection.
+     *
+     * @param connectionsPool
+     *            Associate connection pool.
+     * @param defaultProperties
+     *            Properties to connect to the database.
+     * @param host
+     *            Name of the server.
+     * @param port
+     *            Port of the instance.
+     * @param dbName
+     *            database.
+     * @param username
+     *            Connection user.
+     * @param password
+     *            Password.
+     */
+    public StubConnection(final String connectionsPool,
+            final Properties defaultProperties, final String host,
+            final int port, final String dbName, final String username,
+            final String password) {
+        // The default properties are specific to each driver.
+        super(connectionsPool, new Properties(), username, password);
+        this.setUrl(StubDriver.PREFIX + "//" + host + ":" + port + "/"
+                + dbName);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection#getDriverClass
+     * ()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public String getDriverClass() {
+        return StubDriver.class.getName();
+    }
+}
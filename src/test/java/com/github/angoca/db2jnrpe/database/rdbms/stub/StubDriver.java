@@ -0,0 +1,316 @@
+package com.github.angoca.db2jnrpe.database.rdbms.stub;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * In-process JDBC driver that does not access any database. It accepts the
+ * URLs that start with jdbc:stub:, and it simulates the latency of
+ * establishing a connection and of executing a query. The queries do not
+ * return rows.
+ * <p>
+ * The latencies are given in microseconds by the system properties
+ * db2jnrpe.stub.connect and db2jnrpe.stub.query, or by the setters.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class StubDriver implements Driver {
+
+    /**
+     * Simulated JDBC object: connection, statement or result set. The
+     * methods that are not simulated return the default value of their type.
+     */
+    private static final class Stub implements InvocationHandler {
+
+        /**
+         * Indicates that the object was closed.
+         */
+        private volatile boolean closed;
+
+        /**
+         * Empty constructor.
+         */
+        Stub() {
+            // Nothing.
+        }
+
+        /**
+         * Returns the default value of a type: false, zero or null.
+         *
+         * @param type
+         *            Returned type.
+         * @return Default value.
+         */
+        private static Object getDefault(final Class<?> type) {
+            Object ret = null;
+            if (type == Boolean.TYPE) {
+                ret = Boolean.FALSE;
+            } else if (type == Integer.TYPE) {
+                ret = 0;
+            } else if (type == Long.TYPE) {
+                ret = 0L;
+            } else if (type.isPrimitive() && type != Void.TYPE) {
+                ret = (byte) 0;
+            }
+            return ret;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+         * java.lang.reflect.Method, java.lang.Object[])
+         */
+        @Override
+        @SuppressWarnings({ "PMD.CommentRequired",
+                "PMD.SignatureDeclareThrowsException" })
+        public Object invoke(final Object proxy, final Method method,
+                final Object[] args) throws Throwable {
+            final String name = method.getName();
+            final Class<?> type = method.getReturnType();
+            Object ret;
+            if ("close".equals(name)) {
+                this.closed = true;
+                ret = null;
+            } else if ("isClosed".equals(name)) {
+                ret = this.closed;
+            } else if ("isValid".equals(name)) {
+                ret = !this.closed;
+            } else if ("equals".equals(name)) {
+                ret = proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                ret = System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                ret = "Stub"
+                        + proxy.getClass().getInterfaces()[0].getSimpleName()
+                        + '@'
+                        + Integer.toHexString(System.identityHashCode(proxy));
+            } else if (this.closed) {
+                throw new SQLException("Object closed");
+            } else if ("getAutoCommit".equals(name)) {
+                ret = Boolean.TRUE;
+            } else if ("getTransactionIsolation".equals(name)) {
+                ret = Connection.TRANSACTION_READ_COMMITTED;
+            } else if ("getHoldability".equals(name)) {
+                ret = ResultSet.HOLD_CURSORS_OVER_COMMIT;
+            } else if (name.startsWith("execute")) {
+                StubDriver.pause(StubDriver.queryLatency);
+                ret = StubDriver.Stub.getDefault(type);
+                if (type == ResultSet.class) {
+                    ret = StubDriver.newStub(ResultSet.class);
+                }
+            } else if (type == Statement.class
+                    || Statement.class.isAssignableFrom(type)
+                    || type == ResultSet.class) {
+                ret = StubDriver.newStub(type);
+            } else {
+                ret = StubDriver.Stub.getDefault(type);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Prefix of the accepted URLs.
+     */
+    public static final String PREFIX = "jdbc:stub:";
+    /**
+     * System property with the latency to establish a connection, in
+     * microseconds.
+     */
+    public static final String PROPERTY_CONNECT = "db2jnrpe.stub.connect";
+    /**
+     * System property with the latency to execute a query, in microseconds.
+     */
+    public static final String PROPERTY_QUERY = "db2jnrpe.stub.query";
+    /**
+     * Latency to establish a connection, in microseconds.
+     */
+    private static volatile long connectLatency = Long.getLong(
+            StubDriver.PROPERTY_CONNECT, 0);
+    /**
+     * Quantity of established connections.
+     */
+    private static final AtomicInteger OPENED = new AtomicInteger();
+    /**
+     * Latency to execute a query, in microseconds.
+     */
+    private static volatile long queryLatency = Long.getLong(
+            StubDriver.PROPERTY_QUERY, 0);
+
+    static {
+        try {
+            DriverManager.registerDriver(new StubDriver());
+        } catch (final SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Returns the quantity of connections established since the driver was
+     * loaded.
+     *
+     * @return Quantity of connections.
+     */
+    public static int getOpened() {
+        return StubDriver.OPENED.get();
+    }
+
+    /**
+     * Creates a simulated JDBC object.
+     *
+     * @param type
+     *            Interface of the object.
+     * @return Simulated object.
+     */
+    static Object newStub(final Class<?> type) {
+        return Proxy.newProxyInstance(StubDriver.class.getClassLoader(),
+                new Class<?>[] { type }, new Stub());
+    }
+
+    /**
+     * Simulates a latency.
+     *
+     * @param micros
+     *            Latency in microseconds.
+     * @throws SQLException
+     *             If the thread is interrupted.
+     */
+    static void pause(final long micros) throws SQLException {
+        if (micros > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(micros);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException(e);
+            }
+        }
+    }
+
+    /**
+     * Establishes the latency to establish a connection.
+     *
+     * @param micros
+     *            Latency in microseconds.
+     */
+    public static void setConnectLatency(final long micros) {
+        StubDriver.connectLatency = micros;
+    }
+
+    /**
+     * Establishes the latency to execute a query.
+     *
+     * @param micros
+     *            Latency in microseconds.
+     */
+    public static void setQueryLatency(final long micros) {
+        StubDriver.queryLatency = micros;
+    }
+
+    /**
+     * Empty constructor.
+     */
+    public StubDriver() {
+        super();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#acceptsURL(java.lang.String)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public boolean acceptsURL(final String url) {
+        return url != null && url.startsWith(StubDriver.PREFIX);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#connect(java.lang.String, java.util.Properties)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public Connection connect(final String url, final Properties info)
+            throws SQLException {
+        Connection ret = null;
+        if (this.acceptsURL(url)) {
+            StubDriver.pause(StubDriver.connectLatency);
+            StubDriver.OPENED.incrementAndGet();
+            ret = (Connection) StubDriver.newStub(Connection.class);
+        }
+        return ret;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#getMajorVersion()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#getMinorVersion()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#getParentLogger()
+     */
+    @SuppressWarnings("PMD.CommentRequired")
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#getPropertyInfo(java.lang.String,
+     * java.util.Properties)
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public DriverPropertyInfo[] getPropertyInfo(final String url,
+            final Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.sql.Driver#jdbcCompliant()
+     */
+    @Override
+    @SuppressWarnings("PMD.CommentRequired")
+    public boolean jdbcCompliant() {
+        return false;
+    }
+}
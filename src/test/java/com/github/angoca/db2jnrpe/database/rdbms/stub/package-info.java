@@ -0,0 +1,4 @@
+/**
+ * Stub JDBC driver, without database, to measure the connection pools.
+ */
+package com.github.angoca.db2jnrpe.database.rdbms.stub;
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the memory allocated by the readers of the published values. It
+ * compares the current behavior, where the readers receive the published
+ * immutable objects, with a deep copy per read, that was the previous
+ * behavior.
+ * <p>
+ * The allocated bytes are measured per thread, thus the JVM should support
+ * com.sun.management.ThreadMXBean.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class PublicationBenchmark {
+
+    /**
+     * Quantity of bufferpools in the database.
+     */
+    private static final int BUFFERPOOLS = 10;
+    /**
+     * Quantity of reads to measure.
+     */
+    private static final int READS = 1000000;
+    /**
+     * Quantity of reads before measuring.
+     */
+    private static final int WARM_UP = 100000;
+
+    /**
+     * Returns the bytes allocated by the current thread.
+     *
+     * @param bean
+     *            Bean of the threads.
+     * @return Allocated bytes, or -1 if the JVM does not support it.
+     */
+    private static long allocated(final ThreadMXBean bean) {
+        long ret = -1;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            ret = ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return ret;
+    }
+
+    /**
+     * Copies the bufferpools as the readers did before the publication.
+     *
+     * @param bufferpools
+     *            Published bufferpools.
+     * @return Deep copy.
+     */
+    private static Bufferpools copy(final Bufferpools bufferpools) {
+        final List<BufferpoolRead> reads = new ArrayList<BufferpoolRead>();
+        for (final BufferpoolRead read : bufferpools.getBufferpoolReads()
+                .values()) {
+            reads.add(new BufferpoolRead(read.getName(),
+                    read.getLogicalReads(), read.getTotalReads(),
+                    read.getMember()));
+        }
+        return new Bufferpools(null, reads,
+                bufferpools.getLastBufferpoolRefresh(),
+                bufferpools.getLastNanos());
+    }
+
+    /**
+     * Copies the snapshot as the readers did before the publication.
+     *
+     * @param snap
+     *            Published snapshot.
+     * @return Deep copy.
+     */
+    private static DatabaseSnapshot copy(final DatabaseSnapshot snap) {
+        final int rows = snap.getMemberCount();
+        final int[] members = new int[rows];
+        final long[] values = new long[rows * DatabaseSnapshot.COUNTERS];
+        for (int i = 0; i < rows; i++) {
+            members[i] = snap.getMember(i);
+            values[i * DatabaseSnapshot.COUNTERS + DatabaseSnapshot.COMMITS] = snap
+                    .getCommits(i);
+        }
+        return new DatabaseSnapshot(null, null, members, values, rows,
+                snap.getLastSnapshotRefresh(), snap.getLastNanos());
+    }
+
+    /**
+     * Executes the benchmark.
+     *
+     * @param args
+     *            Arguments
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        final DB2Database database = new DB2Database("benchmark");
+        final List<BufferpoolRead> reads = new ArrayList<BufferpoolRead>();
+        for (int i = 0; i < PublicationBenchmark.BUFFERPOOLS; i++) {
+            reads.add(new BufferpoolRead("BP" + i, 900 + i, 1000 + i, 0));
+        }
+        database.setBufferpools(new Bufferpools(database, reads, System
+                .currentTimeMillis(), System.nanoTime()));
+        database.setSnap(new DatabaseSnapshot(database, null, new int[] { 0 },
+                new long[] { 10, 20, 30, 40, 50, 60, 70, 80000, 90 }, 1, System
+                        .currentTimeMillis(), System.nanoTime()));
+
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (PublicationBenchmark.allocated(bean) < 0) {
+            System.out.println("Allocated bytes are not supported by the JVM");
+            return;
+        }
+        long checksum = 0;
+        for (int i = 0; i < PublicationBenchmark.WARM_UP; i++) {
+            checksum += PublicationBenchmark.copy(database.getSnap())
+                    .getCommits();
+            checksum += PublicationBenchmark.copy(database.getBufferpools())
+                    .getBufferpoolReads().size();
+            checksum += database.getSnap().getCommits();
+            checksum += database.getBufferpools().getBufferpoolReads().size();
+        }
+
+        long start = PublicationBenchmark.allocated(bean);
+        for (int i = 0; i < PublicationBenchmark.READS; i++) {
+            checksum += PublicationBenchmark.copy(database.getSnap())
+                    .getCommits();
+            checksum += PublicationBenchmark.copy(database.getBufferpools())
+                    .getBufferpoolReads().size();
+        }
+        final long copied = PublicationBenchmark.allocated(bean) - start;
+
+        start = PublicationBenchmark.allocated(bean);
+        for (int i = 0; i < PublicationBenchmark.READS; i++) {
+            checksum += database.getSnap().getCommits();
+            checksum += database.getBufferpools().getBufferpoolReads().size();
+        }
+        final long published = PublicationBenchmark.allocated(bean) - start;
+
+        System.out.println("Reads: " + PublicationBenchmark.READS
+                + " (checksum " + checksum + ')');
+        System.out.println("Deep copy per read: " + copied
+                / PublicationBenchmark.READS + " bytes/read");
+        System.out.println("Published values: " + published
+                / PublicationBenchmark.READS + " bytes/read");
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private PublicationBenchmark() {
+        // Nothing.
+    }
+}
@@ -0,0 +1,324 @@
+package com.github.angoca.db2jnrpe.plugins.db2;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionException;
+import com.github.angoca.db2jnrpe.database.DatabaseConnectionsManager;
+import com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool;
+import com.github.angoca.db2jnrpe.database.pools.ConnectionPoolsManager;
+import com.github.angoca.db2jnrpe.database.pools.c3p0.DbcpC3p0;
+import com.github.angoca.db2jnrpe.database.pools.hikari.DbcpHikari;
+import com.github.angoca.db2jnrpe.database.rdbms.db2.DB2Connection;
+import com.github.angoca.db2jnrpe.database.rdbms.stub.StubConnection;
+import com.github.angoca.db2jnrpe.database.rdbms.stub.StubDriver;
+
+/**
+ * Stress test of the registries under contention. Several threads are
+ * released at the same time, and all of them ask for the same databases,
+ * connection objects and connection pool. At the end, there should be only
+ * one instance of each one per target, and the pool should have been
+ * initialized only once.
+ * <p>
+ * Then, the threads borrow connections at the same time from the pools that
+ * keep data sources (HikariCP and c3p0), and there should be only one data
+ * source per pool key.
+ * <p>
+ * It does not need a database: the registries use a fake pool that only
+ * counts its initializations, and the data sources use the stub driver.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class RegistryStress {
+
+    /**
+     * Pool that does not connect to any database, and counts how many times
+     * it is initialized.
+     */
+    public static final class CountingPool extends AbstractConnectionPool {
+
+        /**
+         * Quantity of initializations of this pool.
+         */
+        private static final AtomicInteger INITIALIZATIONS = new AtomicInteger();
+
+        /**
+         * Empty constructor.
+         */
+        public CountingPool() {
+            super();
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#
+         * closeConnection
+         * (com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection,
+         * java.sql.Connection)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public void closeConnection(final AbstractDatabaseConnection dbConn,
+                final Connection connection) {
+            // Nothing.
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#
+         * getConnection
+         * (com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public Connection getConnection(final AbstractDatabaseConnection dbConn) {
+            return null;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see
+         * com.github.angoca.db2jnrpe.database.pools.AbstractConnectionPool#initialize
+         * ( com.github.angoca.db2jnrpe.database.AbstractDatabaseConnection)
+         */
+        @Override
+        @SuppressWarnings("PMD.CommentRequired")
+        public AbstractConnectionPool initialize(
+                final AbstractDatabaseConnection dbConn) {
+            CountingPool.INITIALIZATIONS.incrementAndGet();
+            return this;
+        }
+    }
+
+    /**
+     * Quantity of different targets.
+     */
+    private static final int TARGETS = 4;
+    /**
+     * Quantity of concurrent threads.
+     */
+    private static final int THREADS = 64;
+
+    /**
+     * Checks that a set of instances has only one element.
+     *
+     * @param name
+     *            Name of the registry.
+     * @param instances
+     *            Instances received by the threads.
+     * @return True if there is only one instance.
+     */
+    @SuppressWarnings("PMD.SystemPrintln")
+    private static boolean check(final String name, final Set<Object> instances) {
+        final boolean ret = instances.size() == 1;
+        System.out.println(name + ": " + instances.size()
+                + (ret ? " instance" : " instances - FAILED"));
+        return ret;
+    }
+
+    /**
+     * Returns the data sources of a pool implementation, by pool key.
+     *
+     * @param poolName
+     *            Name of the class of the pool.
+     * @return Map of the data sources of the pool.
+     * @throws Exception
+     *             If the map cannot be read.
+     */
+    private static Map<?, ?> getDataSources(final String poolName)
+            throws Exception {
+        final Field field = Class.forName(poolName).getDeclaredField("pools");
+        field.setAccessible(true);
+        return (Map<?, ?>) field.get(null);
+    }
+
+    /**
+     * Borrows connections from several threads at the same time, and checks
+     * that there is only one data source per pool key, and that it is closed
+     * with its connection object.
+     *
+     * @param poolName
+     *            Name of the class of the pool.
+     * @return True if each target had only one data source.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    private static boolean race(final String poolName) throws Exception {
+        // CHECKSTYLE:OFF
+        final Map<?, ?> dataSources = RegistryStress.getDataSources(poolName);
+        final List<Set<Object>> connections = new ArrayList<Set<Object>>();
+        final List<Set<Object>> instances = new ArrayList<Set<Object>>();
+        for (int t = 0; t < RegistryStress.TARGETS; t++) {
+            connections.add(Collections.newSetFromMap(Collections
+                    .synchronizedMap(new IdentityHashMap<Object, Boolean>())));
+            instances.add(Collections.newSetFromMap(Collections
+                    .synchronizedMap(new IdentityHashMap<Object, Boolean>())));
+        }
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(RegistryStress.THREADS);
+
+        for (int i = 0; i < RegistryStress.THREADS; i++) {
+            final int target = i % RegistryStress.TARGETS;
+            new Thread("race-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        final AbstractDatabaseConnection dbConn = DatabaseConnectionsManager
+                                .getInstance().getDatabaseConnection(poolName,
+                                        StubConnection.class.getName(),
+                                        "host" + target, 50000, "race",
+                                        "db2inst1", "db2inst1");
+                        connections.get(target).add(dbConn);
+                        final AbstractConnectionPool pool = ConnectionPoolsManager
+                                .getInstance().getConnectionPool(dbConn);
+                        final Connection connection = pool
+                                .getConnection(dbConn);
+                        instances.get(target).add(
+                                dataSources.get(dbConn.getPoolKey()));
+                        pool.closeConnection(dbConn, connection);
+                    } catch (final InterruptedException e) {
+                        error.compareAndSet(null, e);
+                    } catch (final DatabaseConnectionException e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        end.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        end.await();
+
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        boolean ok = true;
+        for (int t = 0; t < RegistryStress.TARGETS; t++) {
+            ok &= RegistryStress.check(poolName + " connections of target "
+                    + t, connections.get(t));
+            ok &= RegistryStress.check(poolName + " data sources of target "
+                    + t, instances.get(t));
+        }
+        System.out.println(poolName + " pool keys: " + dataSources.size());
+        ok &= dataSources.size() == RegistryStress.TARGETS;
+        for (final Set<Object> dbConns : connections) {
+            for (final Object dbConn : dbConns) {
+                ConnectionPoolsManager.getInstance().close(
+                        (AbstractDatabaseConnection) dbConn);
+            }
+        }
+        System.out.println(poolName + " pool keys after close: "
+                + dataSources.size());
+        ok &= dataSources.isEmpty();
+        return ok;
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Executes the stress test.
+     *
+     * @param args
+     *            Arguments
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        final List<Set<Object>> databases = new ArrayList<Set<Object>>();
+        final List<Set<Object>> connections = new ArrayList<Set<Object>>();
+        for (int t = 0; t < RegistryStress.TARGETS; t++) {
+            databases.add(Collections.newSetFromMap(Collections
+                    .synchronizedMap(new IdentityHashMap<Object, Boolean>())));
+            connections.add(Collections.newSetFromMap(Collections
+                    .synchronizedMap(new IdentityHashMap<Object, Boolean>())));
+        }
+        final Set<Object> pools = Collections.newSetFromMap(Collections
+                .synchronizedMap(new IdentityHashMap<Object, Boolean>()));
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(RegistryStress.THREADS);
+
+        for (int i = 0; i < RegistryStress.THREADS; i++) {
+            final int target = i % RegistryStress.TARGETS;
+            new Thread("stress-" + i) {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        final String id = "host" + target + ":50000/db";
+                        databases.get(target).add(
+                                DB2DatabasesManager.getInstance()
+                                        .getOrCreateDatabase(id));
+                        final AbstractDatabaseConnection dbConn = DatabaseConnectionsManager
+                                .getInstance().getDatabaseConnection(
+                                        CountingPool.class.getName(),
+                                        DB2Connection.class.getName(),
+                                        "host" + target, 50000, "db",
+                                        "db2inst1", "db2inst1");
+                        connections.get(target).add(dbConn);
+                        pools.add(ConnectionPoolsManager.getInstance()
+                                .getConnectionPool(dbConn));
+                    } catch (final InterruptedException e) {
+                        error.compareAndSet(null, e);
+                    } catch (final DatabaseConnectionException e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        end.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        end.await();
+
+        if (error.get() != null) {
+            throw new Exception(error.get());
+        }
+        boolean ok = true;
+        for (int t = 0; t < RegistryStress.TARGETS; t++) {
+            ok &= RegistryStress.check("Databases of target " + t,
+                    databases.get(t));
+            ok &= RegistryStress.check("Connections of target " + t,
+                    connections.get(t));
+        }
+        ok &= RegistryStress.check("Connection pools", pools);
+        final int initializations = CountingPool.INITIALIZATIONS.get();
+        System.out.println("Pool initializations: " + initializations);
+        ok &= initializations == 1;
+
+        Class.forName(StubDriver.class.getName());
+        ok &= RegistryStress.race(DbcpHikari.class.getName());
+        ok &= RegistryStress.race(DbcpC3p0.class.getName());
+        System.out.println(ok ? "OK" : "FAILED");
+        if (!ok) {
+            System.exit(1);
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private RegistryStress() {
+        // Nothing.
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.angoca.db2jnrpe.plugins.jnrpe;
+
+import it.jnrpe.plugins.Metric;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.angoca.db2jnrpe.plugins.db2.BufferpoolRead;
+
+/**
+ * Measures the memory allocated to render the metrics of the bufferpools in
+ * each check, and compares it with the previous rendering based on
+ * String.format. The check fails if the allocation per bufferpool is greater
+ * than the budget. The budget is not part of the build; the benchmark is
+ * executed by hand after changing the rendering.
+ * <p>
+ * It does not need a database. The arguments are optional: the quantity of
+ * bufferpools and the quantity of measured calls. The allocated bytes are
+ * measured per thread, thus the JVM should support
+ * com.sun.management.ThreadMXBean; otherwise, only the time is measured.
+ *
+ * @author Andres Gomez Casanova (@AngocA)
+ * @version 2026-10-17
+ */
+@SuppressWarnings("PMD.CommentSize")
+public final class RenderingBenchmark {
+
+    /**
+     * Maximal bytes allocated per bufferpool: the metric and its message.
+     */
+    private static final int BUDGET = 512;
+    /**
+     * Quantity of bufferpools, by default.
+     */
+    private static final int BUFFERPOOLS = 40;
+    /**
+     * Quantity of measured calls, by default.
+     */
+    private static final int CALLS = 100000;
+    /**
+     * Quantity of calls before measuring.
+     */
+    private static final int WARM_UP = 20000;
+
+    /**
+     * Returns the bytes allocated by the current thread.
+     *
+     * @param bean
+     *            Bean of the threads.
+     * @return Allocated bytes, or -1 if the JVM does not support it.
+     */
+    private static long allocated(final ThreadMXBean bean) {
+        long ret = -1;
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            ret = ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return ret;
+    }
+
+    /**
+     * Renders the metrics as it was done before the preallocated table.
+     *
+     * @param res
+     *            List of metrics to return.
+     * @param reads
+     *            Reads of each bufferpool.
+     * @return Length of the log message.
+     */
+    @SuppressWarnings("PMD")
+    private static int legacy(final List<Metric> res,
+            final Map<String, BufferpoolRead> reads) {
+        final StringBuffer logMessage = new StringBuffer("Metrics: ");
+        for (final String name : reads.keySet()) {
+            final BufferpoolRead bpDesc = reads.get(name);
+            final BigDecimal ratio = new BigDecimal(bpDesc.getLastRatio());
+            logMessage.append(String.format("BP %s: %.1f%% ", name, ratio));
+            final StringBuilder logStr = new StringBuilder();
+            BufferpoolMetrics.appendSimplified(logStr,
+                    bpDesc.getLogicalReads());
+            final StringBuilder phyStr = new StringBuilder();
+            BufferpoolMetrics.appendSimplified(phyStr,
+                    bpDesc.getPhysicalReads());
+            final String location;
+            if (bpDesc.getMember() == BufferpoolRead.ALL_MEMBERS) {
+                location = "all members";
+            } else {
+                location = Integer.toString(bpDesc.getMember());
+            }
+            final String message = String.format(
+                    "%s at %s has %s LR and %s PR, ratio of %.1f%%.", name,
+                    location, logStr.toString(), phyStr.toString(), ratio);
+            res.add(new Metric(name, message, ratio, null, null));
+        }
+        final String log = res.size() + " metrics. " + logMessage;
+        return log.length();
+    }
+
+    /**
+     * Executes the benchmark.
+     *
+     * @param args
+     *            Quantity of bufferpools and of calls; both optional.
+     * @throws Exception
+     *             Any exception.
+     */
+    @SuppressWarnings("PMD")
+    public static void main(final String[] args) throws Exception {
+        // CHECKSTYLE:OFF
+        final int bufferpools = args.length > 0 ? Integer.parseInt(args[0])
+                : RenderingBenchmark.BUFFERPOOLS;
+        final int calls = args.length > 1 ? Integer.parseInt(args[1])
+                : RenderingBenchmark.CALLS;
+        final Map<String, BufferpoolRead> reads = new LinkedHashMap<String, BufferpoolRead>();
+        for (int i = 0; i < bufferpools; i++) {
+            final String name = "BP_" + i;
+            final BufferpoolRead first = new BufferpoolRead(name, 1000L * i,
+                    1100L * i + 1, i % 2 == 0 ? BufferpoolRead.ALL_MEMBERS : i);
+            reads.put(name, new BufferpoolRead(first, 1000L * i + 987654321L,
+                    1100L * i + 987999999L));
+        }
+
+        final long[] legacy = RenderingBenchmark.measure(false, reads, calls);
+        final long[] current = RenderingBenchmark.measure(true, reads, calls);
+        System.out.println(String.format("%-8s %12s %14s %10s", "Render",
+                "bytes/call", "bytes/bufferpool", "ns/call"));
+        System.out.println(String.format("%-8s %12d %14d %10d", "Legacy",
+                legacy[0], legacy[0] / bufferpools, legacy[1]));
+        System.out.println(String.format("%-8s %12d %14d %10d", "Current",
+                current[0], current[0] / bufferpools, current[1]));
+        final boolean ok;
+        if (current[0] < 0) {
+            ok = true;
+            System.out.println("Allocations are not supported by the JVM:"
+                    + " the budget is not checked");
+        } else {
+            ok = current[0] <= (long) RenderingBenchmark.BUDGET * bufferpools;
+            System.out.println((ok ? "OK" : "FAILED") + ": budget of "
+                    + RenderingBenchmark.BUDGET + " bytes per bufferpool");
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * Measures a rendering.
+     *
+     * @param current
+     *            True for the current rendering, false for the legacy one.
+     * @param reads
+     *            Reads of each bufferpool.
+     * @param calls
+     *            Quantity of measured calls.
+     * @return Allocated bytes and nanoseconds per call. The allocated bytes
+     *         are -1 if the JVM does not support their measurement.
+     */
+    private static long[] measure(final boolean current,
+            final Map<String, BufferpoolRead> reads, final int calls) {
+        int metrics = 0;
+        for (int i = 0; i < RenderingBenchmark.WARM_UP; i++) {
+            metrics += RenderingBenchmark.render(current, reads);
+        }
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        final long bytes = RenderingBenchmark.allocated(bean);
+        final long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            metrics += RenderingBenchmark.render(current, reads);
+        }
+        final long time = System.nanoTime() - start;
+        final long after = RenderingBenchmark.allocated(bean);
+        if (metrics == 0) {
+            // Avoids the elimination of the calls.
+            System.out.println(metrics);
+        }
+        long allocated = -1;
+        if (bytes >= 0) {
+            allocated = (after - bytes) / calls;
+        }
+        return new long[] { allocated, time / calls };
+    }
+
+    /**
+     * Renders the metrics of all the bufferpools once, as done by a check.
+     *
+     * @param current
+     *            True for the current rendering, false for the legacy one.
+     * @param reads
+     *            Reads of each bufferpool.
+     * @return Quantity of metrics, and length of the log message.
+     */
+    private static int render(final boolean current,
+            final Map<String, BufferpoolRead> reads) {
+        final List<Metric> res = new ArrayList<Metric>(reads.size() + 3);
+        int ret = 0;
+        if (current) {
+            BufferpoolMetrics.addMetrics(res, reads);
+        } else {
+            ret = RenderingBenchmark.legacy(res, reads);
+        }
+        return res.size() + ret;
+    }
+
+    /**
+     * Hidden constructor.
+     */
+    private RenderingBenchmark() {
+        // Nothing.
+    }
+}